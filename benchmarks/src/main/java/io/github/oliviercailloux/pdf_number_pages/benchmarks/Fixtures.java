@@ -0,0 +1,97 @@
+package io.github.oliviercailloux.pdf_number_pages.benchmarks;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+
+/**
+ * Builds the labels and outlines the benchmarks work on, shaped like a book: a
+ * roman numbered front matter, a decimal numbered body in parts, and a lettered
+ * appendix; an outline of chapters of ten sections. The documents come from the
+ * corpus.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+class Fixtures {
+	/**
+	 * Makes the forks log only warnings, instead of using the debug configuration
+	 * that comes with PDF-p, which would dominate the measures.
+	 */
+	static final String QUIET_LOGS = "-Dlogback.configurationFile=logback-benchmarks.xml";
+
+	/**
+	 * @param nbPages
+	 *            at least one.
+	 * @return one range for the front matter, one per thousand pages of body,
+	 *         and one for the appendix.
+	 */
+	static LabelRangesByIndex newLabelRanges(int nbPages) {
+		checkArgument(nbPages >= 1);
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		ranges.put(0, newRange(RangeStyle.ROMAN_LOWER, null));
+		final int appendixStart = nbPages - nbPages / 10;
+		for (int start = 10; start < appendixStart; start += 1000) {
+			ranges.put(start, newRange(RangeStyle.DECIMAL, "P" + (start / 1000 + 1) + "-"));
+		}
+		if (appendixStart > 10 && appendixStart < nbPages) {
+			ranges.put(appendixStart, newRange(RangeStyle.UPPER, null));
+		}
+		return ranges;
+	}
+
+	/**
+	 * @param nbNodes
+	 *            the number of bookmarks, one in ten being a chapter.
+	 * @param nbPages
+	 *            at least one, the bookmarks point to the pages in turn.
+	 */
+	static Outline newOutline(int nbNodes, int nbPages) {
+		final Outline outline = new Outline();
+		outline.addCopies(newRoot(nbNodes, nbPages).getChildren());
+		return outline;
+	}
+
+	/**
+	 * @return a node that has as children the chapters of an outline as built by
+	 *         {@link #newOutline(int, int)}, thus, that has the given number of
+	 *         descendants.
+	 */
+	static OutlineNode newRoot(int nbNodes, int nbPages) {
+		checkArgument(nbPages >= 1);
+		final OutlineNode root = OutlineNode.newOutline(new PdfBookmark("Root", 0));
+		OutlineNode chapter = null;
+		for (int i = 0; i < nbNodes; ++i) {
+			final OutlineNode node = OutlineNode.newOutline(new PdfBookmark("Bookmark " + i, i % nbPages));
+			if (i % 10 == 0) {
+				/** The previous chapter is complete: attaching it now posts no event. */
+				if (chapter != null) {
+					root.addAsLastChild(chapter);
+				}
+				chapter = node;
+			} else {
+				chapter.addAsLastChild(node);
+			}
+		}
+		if (chapter != null) {
+			root.addAsLastChild(chapter);
+		}
+		return root;
+	}
+
+	private static PDPageLabelRangeWithEquals newRange(RangeStyle style, String prefix) {
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(style.toPdfBoxStyle());
+		range.setPrefix(prefix);
+		return range;
+	}
+
+	private Fixtures() {
+		/** Static methods only. */
+	}
+}
@@ -0,0 +1,74 @@
+package io.github.oliviercailloux.pdf_number_pages.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfPageLabelComputer;
+
+/**
+ * Measures the computation of the label of one page, as the outline view does
+ * for each bookmark it shows. The pages asked for walk through the whole
+ * document, so that all ranges and styles take part. Compares creating a string
+ * per label with appending to a reused builder.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Fixtures.QUIET_LOGS)
+public class LabelComputerBenchmark {
+	/**
+	 * A prime step, so that the pages asked for cover the document without
+	 * following its order.
+	 */
+	private static final int STEP = 7919;
+
+	@Param({ "100", "10000", "1000000" })
+	public int nbPages;
+
+	private StringBuilder builder;
+
+	private PdfPageLabelComputer computer;
+
+	private LabelRangesByIndex labelRangesByIndex;
+
+	private int pageIndex;
+
+	@Benchmark
+	public StringBuilder appendLabelFromPageIndex() {
+		pageIndex = (pageIndex + STEP) % nbPages;
+		builder.setLength(0);
+		computer.appendLabelFromPageIndex(builder, pageIndex, labelRangesByIndex);
+		return builder;
+	}
+
+	@Benchmark
+	public String getLabelFromPageIndex() {
+		pageIndex = (pageIndex + STEP) % nbPages;
+		return computer.getLabelFromPageIndex(pageIndex, labelRangesByIndex);
+	}
+
+	@Setup
+	public void setUp() {
+		computer = new PdfPageLabelComputer();
+		builder = new StringBuilder();
+		labelRangesByIndex = Fixtures.newLabelRanges(nbPages);
+		pageIndex = 0;
+	}
+}
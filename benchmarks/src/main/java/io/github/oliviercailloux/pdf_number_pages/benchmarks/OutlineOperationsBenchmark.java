@@ -0,0 +1,162 @@
+package io.github.oliviercailloux.pdf_number_pages.benchmarks;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Iterables;
+import com.google.common.eventbus.Subscribe;
+
+import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineSnapshot;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+
+/**
+ * Measures the operations on outlines that the editor and the save jobs
+ * perform, on outlines of chapters of ten sections, where the number of
+ * bookmarks varies.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Fixtures.QUIET_LOGS)
+public class OutlineOperationsBenchmark {
+	@Param({ "1000", "10000", "100000" })
+	public int nbNodes;
+
+	/**
+	 * Equal to the outline except for the bookmark of its last section, as after
+	 * an edit.
+	 */
+	private Outline differentOutline;
+
+	/**
+	 * Equal to the outline, but made of distinct nodes.
+	 */
+	private Outline equalOutline;
+
+	/**
+	 * A chapter to insert then remove, without parent between two invocations.
+	 */
+	private OutlineNode extraChapter;
+
+	/**
+	 * A section of the outline, whose bookmark changes at each invocation.
+	 */
+	private OutlineNode leaf;
+
+	private int leafPage;
+
+	/**
+	 * The position among the chapters where to insert.
+	 */
+	private int middle;
+
+	/**
+	 * The number of events the listener of the outline received.
+	 */
+	private long nbEvents;
+
+	private Outline outline;
+
+	/**
+	 * Has the chapters of the outline as children.
+	 */
+	private OutlineNode root;
+
+	/**
+	 * Inserts a chapter in the middle of the top level of the outline, which
+	 * renumbers the following chapters, then removes it.
+	 */
+	@Benchmark
+	public Outline addChildThenRemove() {
+		outline.addChild(middle, extraChapter);
+		outline.remove(middle);
+		return outline;
+	}
+
+	@Benchmark
+	public OutlineNode copyOf() {
+		return OutlineNode.copyOf(root);
+	}
+
+	@Benchmark
+	public boolean differentOutlines() {
+		return outline.equals(differentOutline);
+	}
+
+	@Benchmark
+	public boolean equalOutlines() {
+		return outline.equals(equalOutline);
+	}
+
+	@Benchmark
+	public int hashCodeOfOutline() {
+		return outline.hashCode();
+	}
+
+	/**
+	 * Changes the bookmark of a section, as editing a title does, which delivers
+	 * an event to the listener of the outline.
+	 */
+	@Benchmark
+	public long setBookmarkOfLeaf() {
+		leafPage = leafPage == 0 ? 1 : 0;
+		leaf.setBookmark(new PdfBookmark("Edited", leafPage));
+		return nbEvents;
+	}
+
+	/**
+	 * Changes the bookmark of a section then takes a snapshot of the outline, as a
+	 * save job does after an edit.
+	 */
+	@Benchmark
+	public OutlineSnapshot snapshotAfterEdit() {
+		setBookmarkOfLeaf();
+		return Outline.snapshotOf(outline);
+	}
+
+	@Setup
+	public void setUp() {
+		outline = Fixtures.newOutline(nbNodes, nbNodes);
+		equalOutline = Fixtures.newOutline(nbNodes, nbNodes);
+		checkState(outline.equals(equalOutline));
+		differentOutline = Fixtures.newOutline(nbNodes, nbNodes);
+		final List<OutlineNode> lastChapterSections = Iterables.getLast(differentOutline.getChildren()).getChildren();
+		Iterables.getLast(lastChapterSections).setBookmark(new PdfBookmark("Edited", 0));
+		checkState(!outline.equals(differentOutline));
+		root = Fixtures.newRoot(nbNodes, nbNodes);
+		middle = outline.getChildren().size() / 2;
+		extraChapter = OutlineNode.copyOf(outline.getChildren().get(0));
+		extraChapter.setBookmark(new PdfBookmark("Extra", 0));
+		leaf = outline.getChildren().get(middle).getChildren().get(0);
+		leafPage = 0;
+		nbEvents = 0;
+		outline.register(new Object() {
+			@Subscribe
+			public void modelChanged(@SuppressWarnings("unused") ModelChanged event) {
+				++nbEvents;
+			}
+		});
+	}
+}
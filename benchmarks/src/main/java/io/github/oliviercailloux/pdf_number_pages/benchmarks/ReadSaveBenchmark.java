@@ -0,0 +1,111 @@
+package io.github.oliviercailloux.pdf_number_pages.benchmarks;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.oliviercailloux.pdf_number_pages.corpus.Corpus;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfReader;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.OutlineToPdf;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.PdfSaver;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveJob;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * Measures reading the labels and outline of a document, saving a document
+ * with new labels, outline and crop box, one bookmark per page, and converting
+ * such an outline to the one of a loaded document, for documents of the corpus
+ * of several sizes and page tree shapes. Reading and saving use the default
+ * settings, thus, no document cache.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = Fixtures.QUIET_LOGS)
+public class ReadSaveBenchmark {
+	@Param({ "FLAT_100", "FLAT_10K", "BALANCED_10K", "DEGENERATE_10K" })
+	public Corpus document;
+
+	private Path directory;
+
+	private Path input;
+
+	private SaveJob job;
+
+	/**
+	 * The input, loaded.
+	 */
+	private PDDocument loaded;
+
+	private Path output;
+
+	@Benchmark
+	public LabelRangesByIndex readLabelRanges() {
+		final PdfReader reader = new PdfReader();
+		final LabelRangesByIndex labelRangesByIndex = reader.readLabelRanges(input);
+		checkState(reader.succeeded() && reader.getOutline().isPresent());
+		return labelRangesByIndex;
+	}
+
+	@Benchmark
+	public PdfSaver save() {
+		final PdfSaver saver = new PdfSaver();
+		saver.save(job);
+		checkState(saver.succeeded(), saver.getErrorMessage());
+		return saver;
+	}
+
+	/**
+	 * Converts the outline of the job, without the time of loading the document.
+	 */
+	@Benchmark
+	public PDDocumentOutline writeOutline() {
+		final OutlineToPdf outlineToPdf = new OutlineToPdf();
+		outlineToPdf.setDocument(loaded);
+		return outlineToPdf.asDocumentOutline(job.getOutline().get());
+	}
+
+	@Setup
+	public void setUp() throws IOException {
+		input = document.get();
+		final int nbPages = document.newGenerator().getNbPages();
+		directory = Files.createTempDirectory("pdf-p-benchmark");
+		output = directory.resolve("output.pdf");
+		job = new SaveJob(Fixtures.newLabelRanges(nbPages), Optional.of(Fixtures.newOutline(nbPages, nbPages)),
+				Optional.of(new BBox(new BBPoint(0f, 0f), new BBPoint(300f, 400f))), input, output, true);
+		loaded = PDDocument.load(input.toFile());
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		loaded.close();
+		Files.deleteIfExists(output);
+		Files.delete(directory);
+	}
+}
@@ -0,0 +1,221 @@
+package io.github.oliviercailloux.pdf_number_pages.benchmarks;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.oliviercailloux.pdf_number_pages.corpus.Corpus;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.services.Reader;
+import io.github.oliviercailloux.pdf_number_pages.services.StatusComputer;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.PdfSaver;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveJob;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.Saver;
+
+/**
+ * <p>
+ * Measures the time an edit of the outline takes on the thread that modifies
+ * the model, which delays the repaint, including the listeners of the model
+ * and the status computer:
+ * </p>
+ * <ul>
+ * <li>when the status computer compares on that thread;</li>
+ * <li>when it compares on a dedicated thread, which is idle when the edit
+ * starts, not counting the comparisons;</li>
+ * <li>when it compares on a dedicated thread, until the comparisons are done,
+ * thus until the statuses are up to date again;</li>
+ * <li>when it takes its snapshot but drops the comparisons, the least an edit
+ * takes whichever thread compares.</li>
+ * </ul>
+ * <p>
+ * One edit in two restores the content that was read, so that the comparisons
+ * must compare contents. The time the dedicated thread takes depends on
+ * whether it has a core of its own.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = Fixtures.QUIET_LOGS)
+public class StatusComputerBenchmark {
+	/**
+	 * A model read from a document, with the status computer and its services.
+	 */
+	private static class Editor {
+		/**
+		 * <code>true</code> iff the leaf has the edited bookmark.
+		 */
+		private boolean edited;
+
+		/**
+		 * A section of the outline, whose bookmark changes at each edit.
+		 */
+		private final OutlineNode leaf;
+
+		private final PdfBookmark readBookmark;
+
+		private final PdfPart pdf;
+
+		private final Reader reader;
+
+		private final StatusComputer statusComputer;
+
+		/**
+		 * Reads the given document, delivering the read result on the calling thread,
+		 * which thus plays the UI thread.
+		 */
+		Editor(Path input) throws InterruptedException {
+			pdf = new PdfPart();
+			final Outline outline = new Outline();
+			pdf.setOutline(outline);
+			reader = new Reader();
+			reader.setLabelRangesByIndex(pdf.getLabelRangesByIndex());
+			reader.setOutline(outline);
+			final BlockingQueue<Runnable> uiQueue = new LinkedBlockingQueue<>();
+			reader.setReadEventsFiringExecutor(uiQueue::add);
+			final Saver saver = new Saver();
+			saver.setPdf(pdf);
+			saver.setReader(reader);
+			statusComputer = new StatusComputer();
+			statusComputer.setPdf(pdf);
+			statusComputer.setReader(reader);
+			statusComputer.setSaver(saver);
+			reader.setInputPath(input);
+			while (!reader.getLastReadEvent().isPresent()) {
+				uiQueue.take().run();
+			}
+			checkState(reader.getLastReadEvent().get().succeeded());
+			final Outline read = pdf.getOutline().get();
+			leaf = read.getChildren().get(read.getChildren().size() / 2).getChildren().get(0);
+			readBookmark = leaf.getBookmark().get();
+			edited = false;
+		}
+
+		long edit() {
+			edited = !edited;
+			leaf.setBookmark(edited ? new PdfBookmark("Edited", 0) : readBookmark);
+			return pdf.getRevision();
+		}
+	}
+
+	@Param({ "1000", "10000", "100000" })
+	public int nbNodes;
+
+	/**
+	 * Compares on a dedicated thread.
+	 */
+	private Editor background;
+
+	private ExecutorService comparisons;
+
+	/**
+	 * Compares on the thread that edits.
+	 */
+	private Editor direct;
+
+	private Path directory;
+
+	private Path input;
+
+	/**
+	 * Takes its snapshots but never compares.
+	 */
+	private Editor withoutComparisons;
+
+	@Benchmark
+	public long editWithBackgroundComparisons() {
+		return background.edit();
+	}
+
+	@Benchmark
+	public long editWithBackgroundComparisonsUntilDone() throws InterruptedException, ExecutionException {
+		final long revision = background.edit();
+		waitForComparisons();
+		return revision;
+	}
+
+	@Benchmark
+	public long editWithDirectComparisons() {
+		return direct.edit();
+	}
+
+	@Benchmark
+	public long editWithoutComparisons() {
+		return withoutComparisons.edit();
+	}
+
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		final Corpus document = Corpus.FLAT_100;
+		final int nbPages = document.newGenerator().getNbPages();
+		directory = Files.createTempDirectory("pdf-p-benchmark");
+		input = directory.resolve("input.pdf");
+		final PdfSaver saver = new PdfSaver();
+		saver.save(new SaveJob(Fixtures.newLabelRanges(nbPages), Optional.of(Fixtures.newOutline(nbNodes, nbPages)),
+				Optional.empty(), document.get(), input, true));
+		checkState(saver.succeeded(), saver.getErrorMessage());
+		direct = new Editor(input);
+		background = new Editor(input);
+		comparisons = Executors.newSingleThreadExecutor();
+		background.statusComputer.setComparisonsExecutor(comparisons);
+		withoutComparisons = new Editor(input);
+		withoutComparisons.statusComputer.setComparisonsExecutor(r -> {
+			/** Drops the comparisons. */
+		});
+	}
+
+	@TearDown
+	public void tearDown() throws IOException, InterruptedException {
+		comparisons.shutdown();
+		comparisons.awaitTermination(1, TimeUnit.MINUTES);
+		checkState(background.statusComputer.hasChangedSinceLastRead() == background.edited);
+		checkState(direct.statusComputer.hasChangedSinceLastRead() == direct.edited);
+		direct.reader.close();
+		background.reader.close();
+		withoutComparisons.reader.close();
+		Files.delete(input);
+		Files.delete(directory);
+	}
+
+	/**
+	 * Lets the dedicated thread finish the comparisons of the previous edit, so
+	 * that they neither pile up nor compete with the measured edit.
+	 */
+	@Setup(Level.Invocation)
+	public void waitForComparisons() throws InterruptedException, ExecutionException {
+		comparisons.submit(() -> {
+			/** Runs once the comparisons submitted before are done. */
+		}).get();
+	}
+}
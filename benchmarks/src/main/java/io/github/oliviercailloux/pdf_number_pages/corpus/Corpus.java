@@ -0,0 +1,155 @@
+package io.github.oliviercailloux.pdf_number_pages.corpus;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * The documents that the benchmarks share, generated by
+ * {@link CorpusGenerator} from a fixed seed, thus identical on every machine.
+ * </p>
+ * <p>
+ * A document missing from the directory of the corpus is generated when first
+ * asked for. Run {@link #main(String[])} to generate them all beforehand.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public enum Corpus {
+	BALANCED_100K(PageTreeShape.BALANCED, 10, 100_000, 4, 10, 200, 10_000, 10),
+	BALANCED_10K(PageTreeShape.BALANCED, 10, 10_000, 3, 10, 20, 1000, 10),
+	/**
+	 * A thousand levels deep. With ten times more levels, walking the tree
+	 * recursively, as PDFBox does, sometimes overflows the default stack.
+	 */
+	DEGENERATE_100K(PageTreeShape.DEGENERATE, 100, 100_000, 4, 10, 200, 10_000, 10),
+	DEGENERATE_10K(PageTreeShape.DEGENERATE, 10, 10_000, 3, 10, 20, 1000, 10),
+	FLAT_100(PageTreeShape.FLAT, 10, 100, 2, 5, 3, 10, 2),
+	FLAT_100K(PageTreeShape.FLAT, 10, 100_000, 4, 10, 200, 10_000, 10),
+	FLAT_10K(PageTreeShape.FLAT, 10, 10_000, 3, 10, 20, 1000, 10);
+
+	/**
+	 * Relative to the working directory, which is the benchmarks directory when
+	 * running its build.
+	 */
+	public static final String DEFAULT_DIRECTORY = "target/corpus";
+
+	/**
+	 * The system property that, if set, gives the directory of the corpus instead
+	 * of {@link #DEFAULT_DIRECTORY}.
+	 */
+	public static final String DIRECTORY_PROPERTY = "pdfp.corpus";
+
+	public static final int IMAGE_SIDE = 256;
+
+	public static final long SEED = 20171030L;
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(Corpus.class);
+
+	public static Path getDirectory() {
+		return Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY));
+	}
+
+	/**
+	 * Generates the documents of the corpus that are missing.
+	 *
+	 * @param args
+	 *            empty, or the directory of the corpus.
+	 */
+	public static void main(String[] args) throws IOException {
+		final Path directory = args.length == 0 ? getDirectory() : Paths.get(args[0]);
+		for (Corpus document : values()) {
+			document.generateIfAbsent(directory);
+		}
+	}
+
+	private final int fanOut;
+
+	private final int nbImages;
+
+	private final int nbLabelRanges;
+
+	private final int nbNamedDestinations;
+
+	private final int nbPages;
+
+	private final int outlineBreadth;
+
+	private final int outlineDepth;
+
+	private final PageTreeShape pageTreeShape;
+
+	private Corpus(PageTreeShape pageTreeShape, int fanOut, int nbPages, int outlineDepth, int outlineBreadth,
+			int nbLabelRanges, int nbNamedDestinations, int nbImages) {
+		this.pageTreeShape = pageTreeShape;
+		this.fanOut = fanOut;
+		this.nbPages = nbPages;
+		this.outlineDepth = outlineDepth;
+		this.outlineBreadth = outlineBreadth;
+		this.nbLabelRanges = nbLabelRanges;
+		this.nbNamedDestinations = nbNamedDestinations;
+		this.nbImages = nbImages;
+	}
+
+	/**
+	 * @return the path of this document in the given directory, after generating
+	 *         it there if it is missing. Generates in a temporary file then
+	 *         moves it, so that the document, if present, is complete.
+	 */
+	public Path generateIfAbsent(Path directory) throws IOException {
+		final Path path = getPath(directory);
+		if (!Files.exists(path)) {
+			Files.createDirectories(directory);
+			final Path temporary = Files.createTempFile(directory, name(), ".tmp");
+			try {
+				newGenerator().generate(temporary);
+				Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temporary);
+			}
+			LOGGER.info("Generated {}.", path);
+		}
+		return path;
+	}
+
+	/**
+	 * @return the path of this document, in the directory of the corpus, after
+	 *         generating it if it is missing.
+	 */
+	public Path get() throws IOException {
+		return generateIfAbsent(getDirectory());
+	}
+
+	public Path getPath(Path directory) {
+		requireNonNull(directory);
+		return directory.resolve(name().toLowerCase() + ".pdf");
+	}
+
+	/**
+	 * @return a generator set to generate this document.
+	 */
+	public CorpusGenerator newGenerator() {
+		final CorpusGenerator generator = new CorpusGenerator();
+		generator.setSeed(SEED);
+		generator.setPageTreeShape(pageTreeShape);
+		generator.setFanOut(fanOut);
+		generator.setNbPages(nbPages);
+		generator.setOutlineDepth(outlineDepth);
+		generator.setOutlineBreadth(outlineBreadth);
+		generator.setNbLabelRanges(nbLabelRanges);
+		generator.setNbNamedDestinations(nbNamedDestinations);
+		generator.setNbImages(nbImages);
+		generator.setImageSide(IMAGE_SIDE);
+		return generator;
+	}
+}
@@ -0,0 +1,523 @@
+package io.github.oliviercailloux.pdf_number_pages.corpus;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDPageContentStream.AppendMode;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDNamedDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+import com.google.common.math.LongMath;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+
+/**
+ * <p>
+ * Writes synthetic documents, to measure and test PDF-p on documents of any
+ * size without shipping real ones. The settings choose the number of pages,
+ * the shape of the page tree, the size of the outline, the number of page label
+ * ranges, of named destinations and of embedded images, and the size of these
+ * images.
+ * </p>
+ * <p>
+ * The document is entirely determined by the settings, including the seed
+ * that drives the choices made at random: the start index, style and prefix of
+ * the label ranges, the pages the named destinations target, which bookmarks go
+ * through a named destination, and the pixels of the images. Generating twice
+ * with the same settings writes the same bytes: the trailer identifier, that
+ * PDFBox otherwise derives from the current time, is derived from the seed.
+ * </p>
+ * <p>
+ * The outline is complete: each bookmark above the last level has as many
+ * children as the breadth. Bookmarks target pages spread evenly through the
+ * document, in the order of the outline, except that about half of them, if the
+ * document has named destinations, target a named destination chosen at random
+ * instead. The first label range starts at the first page; the others start at
+ * distinct pages chosen at random. The images are spread evenly through the
+ * document, each drawn once, and are made of random pixels so that they
+ * compress poorly, as photographs do: each image adds about three bytes per
+ * pixel to the file.
+ * </p>
+ * <p>
+ * Not thread safe.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class CorpusGenerator {
+	/**
+	 * The number of names in each leaf of the name tree of the named destinations.
+	 */
+	private static final int NAMES_PER_LEAF = 64;
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(CorpusGenerator.class);
+
+	/**
+	 * Sets the entries that a node of a page tree must have, given its kids,
+	 * which may be pages or intermediate nodes.
+	 */
+	private static void setKids(COSDictionary node, List<COSDictionary> kids) {
+		final COSArray kidsArray = new COSArray();
+		int count = 0;
+		for (COSDictionary kid : kids) {
+			kid.setItem(COSName.PARENT, node);
+			kidsArray.add(kid);
+			count += COSName.PAGES.equals(kid.getCOSName(COSName.TYPE)) ? kid.getInt(COSName.COUNT) : 1;
+		}
+		node.setItem(COSName.TYPE, COSName.PAGES);
+		node.setItem(COSName.KIDS, kidsArray);
+		node.setItem(COSName.COUNT, COSInteger.get(count));
+	}
+
+	private int fanOut;
+
+	private int imageSide;
+
+	private int nbImages;
+
+	private int nbLabelRanges;
+
+	private int nbNamedDestinations;
+
+	private int nbPages;
+
+	private int outlineBreadth;
+
+	private int outlineDepth;
+
+	private PageTreeShape pageTreeShape;
+
+	private long seed;
+
+	public CorpusGenerator() {
+		seed = 0;
+		nbPages = 1;
+		pageTreeShape = PageTreeShape.FLAT;
+		fanOut = 10;
+		outlineDepth = 0;
+		outlineBreadth = 0;
+		nbLabelRanges = 0;
+		nbNamedDestinations = 0;
+		nbImages = 0;
+		imageSide = 64;
+	}
+
+	/**
+	 * Writes a document according to the current settings, replacing the given
+	 * file if it exists.
+	 *
+	 * @throws IllegalStateException
+	 *             if there are more label ranges than pages, or more bookmarks
+	 *             than an <code>int</code> can count.
+	 */
+	public void generate(Path output) throws IOException {
+		requireNonNull(output);
+		checkState(nbLabelRanges <= nbPages, "More label ranges than pages.");
+		final long nbBookmarks = getNbBookmarks();
+		checkState(nbBookmarks <= Integer.MAX_VALUE, "Too many bookmarks.");
+		final Random random = new Random(seed);
+		try (PDDocument document = new PDDocument()) {
+			final List<PDPage> pages = addPages(document);
+			setIdentifier(document, random);
+			addLabelRanges(document, random);
+			final List<String> names = addNamedDestinations(document, pages, random);
+			addOutline(document, pages, names, (int) nbBookmarks, random);
+			addImages(document, pages, random);
+			document.save(output.toFile());
+		}
+		LOGGER.debug("Generated {}.", output);
+	}
+
+	public int getFanOut() {
+		return fanOut;
+	}
+
+	public int getImageSide() {
+		return imageSide;
+	}
+
+	/**
+	 * @return a short description of the settings, that can serve as a file
+	 *         name.
+	 */
+	public String getName() {
+		final StringBuilder name = new StringBuilder();
+		name.append(pageTreeShape.name().toLowerCase()).append('-').append(nbPages).append('p');
+		if (pageTreeShape != PageTreeShape.FLAT) {
+			name.append('-').append(fanOut).append('f');
+		}
+		name.append('-').append(outlineDepth).append('x').append(outlineBreadth).append('o');
+		name.append('-').append(nbLabelRanges).append('l');
+		name.append('-').append(nbNamedDestinations).append('d');
+		name.append('-').append(nbImages).append('x').append(imageSide).append('i');
+		name.append('-').append(seed).append('s');
+		return name.toString();
+	}
+
+	/**
+	 * @return the number of bookmarks in the outline: the breadth, plus the
+	 *         breadth to the power of two, and so on up to the depth.
+	 * @throws ArithmeticException
+	 *             if that number does not fit in a <code>long</code>.
+	 */
+	public long getNbBookmarks() {
+		long nbBookmarks = 0;
+		for (int level = 1; level <= outlineDepth; ++level) {
+			nbBookmarks = LongMath.checkedAdd(nbBookmarks, LongMath.checkedPow(outlineBreadth, level));
+		}
+		return nbBookmarks;
+	}
+
+	public int getNbImages() {
+		return nbImages;
+	}
+
+	public int getNbLabelRanges() {
+		return nbLabelRanges;
+	}
+
+	public int getNbNamedDestinations() {
+		return nbNamedDestinations;
+	}
+
+	public int getNbPages() {
+		return nbPages;
+	}
+
+	public int getOutlineBreadth() {
+		return outlineBreadth;
+	}
+
+	public int getOutlineDepth() {
+		return outlineDepth;
+	}
+
+	public PageTreeShape getPageTreeShape() {
+		return pageTreeShape;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * @param fanOut
+	 *            the number of kids of the nodes of the page tree, as described
+	 *            in {@link PageTreeShape}; at least two. Ignored for flat page
+	 *            trees.
+	 */
+	public void setFanOut(int fanOut) {
+		checkArgument(fanOut >= 2);
+		this.fanOut = fanOut;
+	}
+
+	/**
+	 * @param imageSide
+	 *            the width and height, in pixels, of the images; at least one.
+	 */
+	public void setImageSide(int imageSide) {
+		checkArgument(imageSide >= 1);
+		this.imageSide = imageSide;
+	}
+
+	/**
+	 * @param nbImages
+	 *            non negative.
+	 */
+	public void setNbImages(int nbImages) {
+		checkArgument(nbImages >= 0);
+		this.nbImages = nbImages;
+	}
+
+	/**
+	 * @param nbLabelRanges
+	 *            non negative, and at most the number of pages when generating;
+	 *            zero for a document without page labels.
+	 */
+	public void setNbLabelRanges(int nbLabelRanges) {
+		checkArgument(nbLabelRanges >= 0);
+		this.nbLabelRanges = nbLabelRanges;
+	}
+
+	/**
+	 * @param nbNamedDestinations
+	 *            non negative.
+	 */
+	public void setNbNamedDestinations(int nbNamedDestinations) {
+		checkArgument(nbNamedDestinations >= 0);
+		this.nbNamedDestinations = nbNamedDestinations;
+	}
+
+	/**
+	 * @param nbPages
+	 *            at least one.
+	 */
+	public void setNbPages(int nbPages) {
+		checkArgument(nbPages >= 1);
+		this.nbPages = nbPages;
+	}
+
+	/**
+	 * @param outlineBreadth
+	 *            the number of children of each bookmark above the last level,
+	 *            and of top level bookmarks; non negative.
+	 */
+	public void setOutlineBreadth(int outlineBreadth) {
+		checkArgument(outlineBreadth >= 0);
+		this.outlineBreadth = outlineBreadth;
+	}
+
+	/**
+	 * @param outlineDepth
+	 *            the number of levels of bookmarks; non negative. With a depth or
+	 *            a breadth of zero, the document has no outline.
+	 */
+	public void setOutlineDepth(int outlineDepth) {
+		checkArgument(outlineDepth >= 0);
+		this.outlineDepth = outlineDepth;
+	}
+
+	public void setPageTreeShape(PageTreeShape pageTreeShape) {
+		this.pageTreeShape = requireNonNull(pageTreeShape);
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Name", getName()).toString();
+	}
+
+	private void addImages(PDDocument document, List<PDPage> pages, Random random) throws IOException {
+		for (int i = 0; i < nbImages; ++i) {
+			final BufferedImage pixels = new BufferedImage(imageSide, imageSide, BufferedImage.TYPE_INT_RGB);
+			for (int y = 0; y < imageSide; ++y) {
+				for (int x = 0; x < imageSide; ++x) {
+					pixels.setRGB(x, y, random.nextInt(1 << 24));
+				}
+			}
+			final PDImageXObject image = LosslessFactory.createFromImage(document, pixels);
+			final PDPage page = pages.get((int) ((long) i * nbPages / nbImages));
+			try (PDPageContentStream content = new PDPageContentStream(document, page, AppendMode.APPEND, true)) {
+				content.drawImage(image, 0, 0);
+			}
+		}
+	}
+
+	private void addLabelRanges(PDDocument document, Random random) {
+		if (nbLabelRanges == 0) {
+			return;
+		}
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		ranges.put(0, newLabelRange(0, random));
+		/**
+		 * Selection sampling: each page after the first starts a range with the
+		 * probability that leaves the number of ranges exactly right.
+		 */
+		int needed = nbLabelRanges - 1;
+		for (int index = 1; index < nbPages && needed > 0; ++index) {
+			if (random.nextInt(nbPages - index) < needed) {
+				ranges.put(index, newLabelRange(ranges.size(), random));
+				--needed;
+			}
+		}
+		assert ranges.size() == nbLabelRanges;
+		ranges.addToDocument(document);
+	}
+
+	/**
+	 * @return the names, in order.
+	 */
+	private List<String> addNamedDestinations(PDDocument document, List<PDPage> pages, Random random) {
+		final List<String> names = new ArrayList<>(nbNamedDestinations);
+		if (nbNamedDestinations == 0) {
+			return names;
+		}
+		/** Padded so that the alphabetical order, that the name tree requires, is the numerical one. */
+		final int width = String.valueOf(nbNamedDestinations - 1).length();
+		final List<PDDestinationNameTreeNode> leaves = new ArrayList<>();
+		SortedMap<String, PDPageDestination> leafNames = new TreeMap<>();
+		for (int i = 0; i < nbNamedDestinations; ++i) {
+			final String name = "dest-" + Strings.padStart(String.valueOf(i), width, '0');
+			names.add(name);
+			final PDPageDestination destination = new PDPageFitDestination();
+			destination.setPage(pages.get(random.nextInt(nbPages)));
+			leafNames.put(name, destination);
+			if (leafNames.size() == NAMES_PER_LEAF || i == nbNamedDestinations - 1) {
+				final PDDestinationNameTreeNode leaf = new PDDestinationNameTreeNode();
+				leaf.setNames(leafNames);
+				leaves.add(leaf);
+				leafNames = new TreeMap<>();
+			}
+		}
+		final PDDestinationNameTreeNode tree = new PDDestinationNameTreeNode();
+		/** Setting the kids sets the limits of the leaves. */
+		tree.setKids(leaves);
+		final PDDocumentCatalog catalog = document.getDocumentCatalog();
+		final PDDocumentNameDictionary nameDictionary = new PDDocumentNameDictionary(catalog);
+		nameDictionary.setDests(tree);
+		catalog.setNames(nameDictionary);
+		return names;
+	}
+
+	/**
+	 * Walks the outline in pre-order, as an odometer whose digits are the
+	 * positions of the bookmark being added and of its ascendants, thus without
+	 * recursion, whatever the depth.
+	 */
+	private void addOutline(PDDocument document, List<PDPage> pages, List<String> names, int nbBookmarks,
+			Random random) {
+		if (nbBookmarks == 0) {
+			return;
+		}
+		final PDDocumentOutline outline = new PDDocumentOutline();
+		final PDOutlineNode[] parents = new PDOutlineNode[outlineDepth];
+		final int[] positions = new int[outlineDepth];
+		parents[0] = outline;
+		int level = 0;
+		for (int k = 0; k < nbBookmarks; ++k) {
+			final PDOutlineItem item = new PDOutlineItem();
+			final StringBuilder title = new StringBuilder("Section ");
+			for (int l = 0; l <= level; ++l) {
+				if (l > 0) {
+					title.append('.');
+				}
+				title.append(positions[l] + 1);
+			}
+			item.setTitle(title.toString());
+			if (!names.isEmpty() && random.nextBoolean()) {
+				item.setDestination(new PDNamedDestination(names.get(random.nextInt(names.size()))));
+			} else {
+				final PDPageDestination destination = new PDPageFitDestination();
+				destination.setPage(pages.get((int) ((long) k * nbPages / nbBookmarks)));
+				item.setDestination(destination);
+			}
+			parents[level].addLast(item);
+			if (level + 1 < outlineDepth) {
+				++level;
+				parents[level] = item;
+				positions[level] = 0;
+			} else {
+				while (level >= 0 && positions[level] == outlineBreadth - 1) {
+					--level;
+				}
+				if (level >= 0) {
+					++positions[level];
+				}
+			}
+		}
+		assert level == -1;
+		document.getDocumentCatalog().setDocumentOutline(outline);
+	}
+
+	/**
+	 * @return the pages, in order.
+	 */
+	private List<PDPage> addPages(PDDocument document) {
+		final List<PDPage> pages = new ArrayList<>(nbPages);
+		final List<COSDictionary> pageDictionaries = new ArrayList<>(nbPages);
+		for (int i = 0; i < nbPages; ++i) {
+			final PDPage page = new PDPage();
+			pages.add(page);
+			pageDictionaries.add(page.getCOSObject());
+		}
+		final COSDictionary root = document.getPages().getCOSObject();
+		switch (pageTreeShape) {
+		case FLAT:
+			setKids(root, pageDictionaries);
+			break;
+		case BALANCED:
+			List<COSDictionary> level = pageDictionaries;
+			while (level.size() > fanOut) {
+				final List<COSDictionary> upperLevel = new ArrayList<>();
+				for (int start = 0; start < level.size(); start += fanOut) {
+					final COSDictionary node = new COSDictionary();
+					setKids(node, level.subList(start, Math.min(start + fanOut, level.size())));
+					upperLevel.add(node);
+				}
+				level = upperLevel;
+			}
+			setKids(root, level);
+			break;
+		case DEGENERATE:
+			/** Built from the last pages up. */
+			final int lastStart = (nbPages - 1) / fanOut * fanOut;
+			COSDictionary next = null;
+			for (int start = lastStart; start >= 0; start -= fanOut) {
+				final List<COSDictionary> kids = new ArrayList<>(
+						pageDictionaries.subList(start, Math.min(start + fanOut, nbPages)));
+				if (next != null) {
+					kids.add(next);
+				}
+				final COSDictionary node = start == 0 ? root : new COSDictionary();
+				setKids(node, kids);
+				next = node;
+			}
+			break;
+		default:
+			throw new AssertionError();
+		}
+		return pages;
+	}
+
+	private PDPageLabelRangeWithEquals newLabelRange(int rangeNumber, Random random) {
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		final RangeStyle[] styles = RangeStyle.values();
+		range.setStyle(styles[random.nextInt(styles.length)].toPdfBoxStyle());
+		range.setStart(1 + random.nextInt(100));
+		if (random.nextInt(4) == 0) {
+			range.setPrefix("R" + (rangeNumber + 1) + "-");
+		}
+		return range;
+	}
+
+	/**
+	 * Sets the two parts of the trailer identifier to bytes drawn from the given
+	 * source.
+	 */
+	private void setIdentifier(PDDocument document, Random random) {
+		final byte[] identifier = new byte[16];
+		random.nextBytes(identifier);
+		final COSArray identifiers = new COSArray();
+		identifiers.add(new COSString(identifier));
+		identifiers.add(new COSString(identifier));
+		document.getDocument().getTrailer().setItem(COSName.ID, identifiers);
+	}
+}
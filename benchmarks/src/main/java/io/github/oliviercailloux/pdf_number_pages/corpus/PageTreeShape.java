@@ -0,0 +1,29 @@
+package io.github.oliviercailloux.pdf_number_pages.corpus;
+
+/**
+ * The ways {@link CorpusGenerator} arranges the pages of a document in its page
+ * tree, given a fan-out: the number of pages or intermediate nodes that a node
+ * of the tree holds.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public enum PageTreeShape {
+	/**
+	 * The fan-out is at most reached by every node, and the tree is as shallow as
+	 * possible: its depth grows with the logarithm of the number of pages, as
+	 * with the page trees that most PDF writers produce for large documents.
+	 */
+	BALANCED,
+	/**
+	 * Each node holds a fan-out of pages then the next node: the depth of the
+	 * tree grows with the number of pages divided by the fan-out. Stresses the
+	 * walks over the page tree that are recursive.
+	 */
+	DEGENERATE,
+	/**
+	 * The root holds all the pages, whatever the fan-out, as PDFBox does when
+	 * adding pages to a document.
+	 */
+	FLAT;
+}
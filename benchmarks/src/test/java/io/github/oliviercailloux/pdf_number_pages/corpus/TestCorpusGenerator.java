@@ -0,0 +1,92 @@
+package io.github.oliviercailloux.pdf_number_pages.corpus;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.github.oliviercailloux.pdf_number_pages.model.IOutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfReader;
+
+public class TestCorpusGenerator {
+	private static int countNodes(IOutlineNode node) {
+		int count = node.getChildren().size();
+		for (IOutlineNode child : node.getChildren()) {
+			count += countNodes(child);
+		}
+		return count;
+	}
+
+	private static int getTreeDepth(PDPage page) {
+		int depth = 0;
+		for (COSDictionary node = page.getCOSObject(); node.containsKey(COSName.PARENT); node = (COSDictionary) node
+				.getDictionaryObject(COSName.PARENT)) {
+			++depth;
+		}
+		return depth;
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testDeterministic() throws Exception {
+		final CorpusGenerator generator = Corpus.FLAT_100.newGenerator();
+		final Path first = folder.getRoot().toPath().resolve("first.pdf");
+		final Path second = folder.getRoot().toPath().resolve("second.pdf");
+		final Path otherSeed = folder.getRoot().toPath().resolve("other.pdf");
+		generator.generate(first);
+		generator.generate(second);
+		generator.setSeed(Corpus.SEED + 1);
+		generator.generate(otherSeed);
+		assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+		assertFalse(Arrays.equals(Files.readAllBytes(first), Files.readAllBytes(otherSeed)));
+	}
+
+	@Test
+	public void testShapes() throws Exception {
+		final CorpusGenerator generator = new CorpusGenerator();
+		generator.setNbPages(1001);
+		generator.setFanOut(10);
+		generator.setOutlineDepth(3);
+		generator.setOutlineBreadth(4);
+		generator.setNbLabelRanges(7);
+		generator.setNbNamedDestinations(100);
+		generator.setNbImages(2);
+		generator.setImageSide(8);
+		assertEquals(4 + 16 + 64, generator.getNbBookmarks());
+		final int[] expectedDepths = { 1, 4, 101 };
+		final PageTreeShape[] shapes = { PageTreeShape.FLAT, PageTreeShape.BALANCED, PageTreeShape.DEGENERATE };
+		for (int i = 0; i < shapes.length; ++i) {
+			generator.setPageTreeShape(shapes[i]);
+			final Path path = folder.getRoot().toPath().resolve(generator.getName() + ".pdf");
+			generator.generate(path);
+			try (PDDocument document = PDDocument.load(path.toFile())) {
+				assertEquals(1001, document.getNumberOfPages());
+				assertEquals(expectedDepths[i], getTreeDepth(document.getPage(1000)));
+			}
+			final PdfReader reader = new PdfReader();
+			final LabelRangesByIndex ranges = reader.readLabelRanges(path);
+			assertTrue(reader.succeeded());
+			assertEquals(7, ranges.size());
+			final Outline outline = reader.getOutline().get();
+			assertEquals(84, countNodes(outline));
+			assertEquals("Section 4.4.4", outline.getChildren().get(3).getChildren().get(3).getChildren().get(3)
+					.getBookmark().get().getTitle());
+		}
+	}
+}
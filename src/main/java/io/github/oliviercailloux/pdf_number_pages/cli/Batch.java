@@ -0,0 +1,260 @@
+package io.github.oliviercailloux.pdf_number_pages.cli;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfReader;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveEngine;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveJob;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaverFinishedEvent;
+import io.github.oliviercailloux.pdf_number_pages.services.spec.DocumentSpec;
+import io.github.oliviercailloux.pdf_number_pages.services.spec.SpecFormatException;
+import io.github.oliviercailloux.pdf_number_pages.services.spec.SpecParser;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * <p>
+ * Applies page labels, an outline and a crop box to many documents, without any
+ * user interface.
+ * </p>
+ * <p>
+ * The labels and outline of each input are read from a template, which is
+ * either a PDF document or a spec file (see {@link DocumentSpec}), recognized
+ * by its extension {@value #SPEC_EXTENSION}. The template of an input named
+ * NAME is the first that exists among: the spec file NAME{@value #SPEC_EXTENSION}
+ * beside the input; the spec file NAME{@value #SPEC_EXTENSION} then the
+ * document NAME in the templates directory; the shared template; the input
+ * itself (so that cropping alone keeps the existing labels and outline). A
+ * spec that has no labels keeps those of the input, one that has no outline
+ * keeps the outline of the input, and one that has a crop box overrides the
+ * crop box of the batch. Inputs are read concurrently, then saved by a
+ * {@link SaveEngine}, which bounds the number of documents in memory.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class Batch {
+	public static final String SPEC_EXTENSION = ".spec";
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(Batch.class);
+
+	private static boolean isSpec(Path path) {
+		return path.getFileName().toString().endsWith(SPEC_EXTENSION);
+	}
+
+	/**
+	 * <code>null</code> iff the crop boxes are left alone.
+	 */
+	private BBox cropBox;
+
+	private final SaveEngine engine;
+
+	private boolean overwrite;
+
+	/**
+	 * <code>null</code> iff there is no shared template.
+	 */
+	private Path template;
+
+	/**
+	 * <code>null</code> iff there are no per-input templates.
+	 */
+	private Path templatesDirectory;
+
+	public Batch(SaveEngine engine) {
+		this.engine = requireNonNull(engine);
+		cropBox = null;
+		overwrite = false;
+		template = null;
+		templatesDirectory = null;
+	}
+
+	/**
+	 * Processes the given inputs, each one into the output directory under its
+	 * own file name, and returns when all are done. Failures are reported in the
+	 * summary.
+	 *
+	 * @param inputs
+	 *            with distinct file names.
+	 */
+	public BatchSummary run(List<Path> inputs, Path outputDirectory) throws InterruptedException {
+		final Set<Path> names = Sets.newHashSet();
+		for (Path input : inputs) {
+			checkArgument(names.add(input.getFileName()), "Two inputs named " + input.getFileName() + ".");
+		}
+		final long start = System.nanoTime();
+		final ExecutorService readers = Executors.newFixedThreadPool(engine.getParallelism(),
+				new ThreadFactoryBuilder().setNameFormat("Batch reader %d").build());
+		final List<Future<DocumentOutcome>> futures = Lists.newArrayList();
+		try {
+			for (Path input : inputs) {
+				futures.add(readers.submit(() -> process(input, outputDirectory.resolve(input.getFileName()))));
+			}
+			final List<DocumentOutcome> outcomes = Lists.newArrayList();
+			for (Future<DocumentOutcome> future : futures) {
+				try {
+					outcomes.add(future.get());
+				} catch (ExecutionException e) {
+					throw new IllegalStateException(e.getCause());
+				}
+			}
+			return new BatchSummary(outcomes, System.nanoTime() - start);
+		} finally {
+			readers.shutdownNow();
+		}
+	}
+
+	/**
+	 * @param cropBox
+	 *            <code>null</code> to leave the crop boxes alone.
+	 */
+	public void setCropBox(BBox cropBox) {
+		this.cropBox = cropBox;
+	}
+
+	public void setOverwrite(boolean overwrite) {
+		this.overwrite = overwrite;
+	}
+
+	/**
+	 * @param template
+	 *            the document or spec file to take the labels and outline from,
+	 *            for the inputs that have no template of their own;
+	 *            <code>null</code> for none.
+	 */
+	public void setTemplate(Path template) {
+		this.template = template;
+	}
+
+	/**
+	 * @param templatesDirectory
+	 *            a directory containing, for some inputs, a spec file or a
+	 *            document named after the input to take the labels and outline
+	 *            from; <code>null</code> for none.
+	 */
+	public void setTemplatesDirectory(Path templatesDirectory) {
+		this.templatesDirectory = templatesDirectory;
+	}
+
+	private Path getTemplate(Path input) {
+		final String name = input.getFileName().toString();
+		final Path sidecar = input.resolveSibling(name + SPEC_EXTENSION);
+		if (Files.exists(sidecar)) {
+			return sidecar;
+		}
+		if (templatesDirectory != null) {
+			final Path ownSpec = templatesDirectory.resolve(name + SPEC_EXTENSION);
+			if (Files.exists(ownSpec)) {
+				return ownSpec;
+			}
+			final Path own = templatesDirectory.resolve(name);
+			if (Files.exists(own)) {
+				return own;
+			}
+		}
+		return template == null ? input : template;
+	}
+
+	private DocumentOutcome process(Path input, Path output) throws InterruptedException {
+		final long start = System.nanoTime();
+		long inputBytes = 0;
+		String errorMessage;
+		try {
+			inputBytes = Files.size(input);
+			final Path template = getTemplate(input);
+			final DocumentSpec spec;
+			/** <code>null</code> iff not read. */
+			LabelRangesByIndex inputLabels = null;
+			if (isSpec(template)) {
+				/**
+				 * The spec may refer to pages by their labels in the input, and must not
+				 * refer to pages beyond its end.
+				 */
+				final PdfReader inputReader = new PdfReader();
+				inputLabels = readSpec(inputReader, input, false).getLabelRangesByIndex().get();
+				final SpecParser parser = new SpecParser();
+				parser.setDocumentLabels(inputLabels);
+				parser.setPageCount(inputReader.getPageCount());
+				spec = parser.parse(template);
+			} else {
+				/**
+				 * The input as its own template need not have a readable outline: it then
+				 * keeps its outline as is, and gets only new labels or crop box.
+				 */
+				spec = readSpec(new PdfReader(), template, !template.equals(input));
+			}
+			final LabelRangesByIndex labelRangesByIndex;
+			if (spec.getLabelRangesByIndex().isPresent()) {
+				labelRangesByIndex = spec.getLabelRangesByIndex().get();
+			} else if (inputLabels != null) {
+				labelRangesByIndex = inputLabels;
+			} else {
+				labelRangesByIndex = readSpec(new PdfReader(), input, false).getLabelRangesByIndex().get();
+			}
+			final Optional<BBox> jobCropBox = spec.getCropBox().isPresent() ? spec.getCropBox()
+					: Optional.ofNullable(cropBox);
+			final SaveJob job = new SaveJob(labelRangesByIndex, spec.getOutline(), jobCropBox, input, output,
+					overwrite);
+			final SaverFinishedEvent event = engine.submit(job).get();
+			errorMessage = event.getErrorMessage();
+		} catch (SpecFormatException e) {
+			errorMessage = "Reading the spec of " + input + ": " + e.getMessage();
+		} catch (IOException e) {
+			errorMessage = e.getMessage() + " (" + e.getClass().getSimpleName() + ")";
+		} catch (ExecutionException | CancellationException e) {
+			errorMessage = String.valueOf(e.getMessage());
+		} catch (RuntimeException e) {
+			/** PDFBox may fail this way on malformed input: the other inputs go on. */
+			LOGGER.error("Problem while processing " + input + ".", e);
+			errorMessage = e.getMessage() + " (" + e.getClass().getSimpleName() + ")";
+		}
+		final long latency = System.nanoTime() - start;
+		if (errorMessage.isEmpty()) {
+			LOGGER.info("Processed {} in {} ms.", input, latency / 1_000_000);
+		} else {
+			LOGGER.warn("Failed {} in {} ms: {}.", input, latency / 1_000_000, errorMessage);
+		}
+		return new DocumentOutcome(input, inputBytes, latency, errorMessage);
+	}
+
+	/**
+	 * Reads the labels and outline of the given document with the given reader,
+	 * which then tells about this read.
+	 *
+	 * @param outlineRequired
+	 *            whether failing to read the outline fails, rather than giving a
+	 *            spec with no outline.
+	 */
+	private DocumentSpec readSpec(PdfReader reader, Path pdf, boolean outlineRequired) throws IOException {
+		final LabelRangesByIndex labelRangesByIndex = reader.readLabelRanges(pdf);
+		if (!reader.succeeded()) {
+			throw new IOException("Reading " + pdf + ": " + reader.getErrorMessage());
+		}
+		if (outlineRequired && !reader.outlineReadSucceeded()) {
+			throw new IOException("Reading the outline of " + pdf + ": " + reader.getOutlineErrorMessage());
+		}
+		return new DocumentSpec(Optional.of(labelRangesByIndex), reader.getOutline(), Optional.empty());
+	}
+}
@@ -0,0 +1,184 @@
+package io.github.oliviercailloux.pdf_number_pages.cli;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.bridge.SLF4JBridgeHandler;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Lists;
+
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveEngine;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * The command line entry point, to process many documents without a display.
+ * Run without arguments for usage.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class BatchMain {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchMain.class);
+
+	private static final String USAGE = String.join(System.lineSeparator(),
+			"Usage: BatchMain --output DIR [options] INPUT...",
+			"  INPUT               a PDF file, a directory (its PDF files), or @FILE (one input per line).",
+			"  --output DIR        the directory to write to, under the input file names.",
+			"  --template FILE     a PDF or a .spec file whose page labels and outline are applied to the inputs.",
+			"  --templates DIR     per-input templates: DIR/NAME.spec or DIR/NAME applies to the input named NAME.",
+			"  --crop X0,Y0,X1,Y1  a crop box to apply to all pages.",
+			"  --threads N         the number of documents processed concurrently (default: cores).",
+			"  --overwrite         replace existing outputs.",
+			"  --incremental       append the changes to the original bytes instead of rewriting.",
+			"An input NAME with a spec file NAME.spec beside it takes its labels and outline from that file.",
+			"Without template, the inputs keep their own labels and outline.");
+
+	public static void main(String[] args) throws Exception {
+		SLF4JBridgeHandler.removeHandlersForRootLogger();
+		SLF4JBridgeHandler.install();
+		final BatchMain main = new BatchMain();
+		try {
+			main.parse(args);
+		} catch (IllegalArgumentException | IOException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		final BatchSummary summary = main.run();
+		System.out.print(summary);
+		System.exit(summary.getFailures().isEmpty() ? 0 : 1);
+	}
+
+	private static BBox parseCropBox(String spec) {
+		final List<String> coordinates = Splitter.on(',').trimResults().splitToList(spec);
+		checkArgument(coordinates.size() == 4, "Expected four coordinates: " + spec + ".");
+		final float[] values = new float[4];
+		for (int i = 0; i < 4; ++i) {
+			values[i] = Float.parseFloat(coordinates.get(i));
+		}
+		return new BBox(new BBPoint(values[0], values[1]), new BBPoint(values[2], values[3]));
+	}
+
+	private static String value(String[] args, int i, String option) {
+		checkArgument(i < args.length, "Missing value for " + option + ".");
+		return args[i];
+	}
+
+	private BBox cropBox;
+
+	private boolean incremental;
+
+	private final List<Path> inputs;
+
+	private Path outputDirectory;
+
+	private boolean overwrite;
+
+	private Path template;
+
+	private Path templatesDirectory;
+
+	private int threads;
+
+	public BatchMain() {
+		cropBox = null;
+		incremental = false;
+		inputs = Lists.newArrayList();
+		outputDirectory = null;
+		overwrite = false;
+		template = null;
+		templatesDirectory = null;
+		threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the arguments are invalid.
+	 * @throws IOException
+	 *             if listing a directory or reading a list of inputs fails.
+	 */
+	public void parse(String[] args) throws IOException {
+		for (int i = 0; i < args.length; ++i) {
+			final String arg = args[i];
+			switch (arg) {
+			case "--output":
+				outputDirectory = Paths.get(value(args, ++i, arg));
+				break;
+			case "--template":
+				template = Paths.get(value(args, ++i, arg));
+				break;
+			case "--templates":
+				templatesDirectory = Paths.get(value(args, ++i, arg));
+				break;
+			case "--crop":
+				cropBox = parseCropBox(value(args, ++i, arg));
+				break;
+			case "--threads":
+				threads = Integer.parseInt(value(args, ++i, arg));
+				checkArgument(threads >= 1, "At least one thread is required.");
+				break;
+			case "--overwrite":
+				overwrite = true;
+				break;
+			case "--incremental":
+				incremental = true;
+				break;
+			default:
+				checkArgument(!arg.startsWith("--"), "Unknown option: " + arg + ".");
+				addInputs(arg);
+			}
+		}
+		checkArgument(outputDirectory != null, "Missing output directory.");
+		checkArgument(Files.isDirectory(outputDirectory), "Not a directory: " + outputDirectory + ".");
+		checkArgument(!inputs.isEmpty(), "No input.");
+	}
+
+	public BatchSummary run() throws InterruptedException {
+		final SaveEngine engine = new SaveEngine(threads, Runtime.getRuntime().maxMemory() / 2);
+		engine.setIncremental(incremental);
+		try {
+			final Batch batch = new Batch(engine);
+			batch.setCropBox(cropBox);
+			batch.setOverwrite(overwrite);
+			batch.setTemplate(template);
+			batch.setTemplatesDirectory(templatesDirectory);
+			return batch.run(inputs, outputDirectory);
+		} finally {
+			engine.close();
+		}
+	}
+
+	private void addInputs(String arg) throws IOException {
+		if (arg.startsWith("@")) {
+			for (String line : Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)) {
+				if (!line.trim().isEmpty()) {
+					addInputs(line.trim());
+				}
+			}
+			return;
+		}
+		final Path path = Paths.get(arg);
+		if (Files.isDirectory(path)) {
+			try (Stream<Path> files = Files.list(path)) {
+				inputs.addAll(files.filter((p) -> p.getFileName().toString().toLowerCase().endsWith(".pdf"))
+						.sorted().collect(Collectors.toList()));
+			}
+		} else {
+			checkArgument(Files.exists(path), "Not found: " + path + ".");
+			inputs.add(path);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package io.github.oliviercailloux.pdf_number_pages.cli;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The throughput and latency of a batch. Immutable.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class BatchSummary {
+	private static String asMillis(long nanos) {
+		return String.format(Locale.ENGLISH, "%.1f ms", nanos / 1e6d);
+	}
+
+	private final long elapsedNanos;
+
+	/**
+	 * The latencies of all outcomes, in increasing order.
+	 */
+	private final long[] latencies;
+
+	private final ImmutableList<DocumentOutcome> outcomes;
+
+	/**
+	 * @param elapsedNanos
+	 *            the wall-clock duration of the whole batch.
+	 */
+	public BatchSummary(List<DocumentOutcome> outcomes, long elapsedNanos) {
+		checkArgument(elapsedNanos >= 0);
+		this.outcomes = ImmutableList.copyOf(requireNonNull(outcomes));
+		this.elapsedNanos = elapsedNanos;
+		latencies = outcomes.stream().mapToLong(DocumentOutcome::getLatencyNanos).sorted().toArray();
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	public ImmutableList<DocumentOutcome> getFailures() {
+		return outcomes.stream().filter((o) -> !o.succeeded()).collect(ImmutableList.toImmutableList());
+	}
+
+	public long getInputBytes() {
+		return outcomes.stream().mapToLong(DocumentOutcome::getInputBytes).sum();
+	}
+
+	/**
+	 * @param quantile
+	 *            in [0, 1].
+	 * @return the latency below which this quantile of the outcomes lie (nearest
+	 *         rank), or zero if there are no outcomes.
+	 */
+	public long getLatencyNanos(double quantile) {
+		checkArgument(quantile >= 0d && quantile <= 1d);
+		if (latencies.length == 0) {
+			return 0;
+		}
+		final int rank = (int) Math.ceil(quantile * latencies.length);
+		return latencies[Math.max(rank, 1) - 1];
+	}
+
+	public int getNbSucceeded() {
+		return (int) outcomes.stream().filter(DocumentOutcome::succeeded).count();
+	}
+
+	public ImmutableList<DocumentOutcome> getOutcomes() {
+		return outcomes;
+	}
+
+	/**
+	 * @return the number of documents processed per second, successfully or not.
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0d : outcomes.size() / (elapsedNanos / 1e9d);
+	}
+
+	/**
+	 * @return a human readable report, on several lines.
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder report = new StringBuilder();
+		final double seconds = elapsedNanos / 1e9d;
+		report.append(String.format(Locale.ENGLISH, "Processed %d files (%d succeeded, %d failed) in %.2f s.%n",
+				outcomes.size(), getNbSucceeded(), outcomes.size() - getNbSucceeded(), seconds));
+		final double megabytesPerSecond = seconds == 0d ? 0d : getInputBytes() / 1e6d / seconds;
+		report.append(String.format(Locale.ENGLISH, "Throughput: %.2f files/s, %.2f MB/s.%n", getThroughput(),
+				megabytesPerSecond));
+		report.append(String.format(Locale.ENGLISH, "Latency: p50 %s, p90 %s, p99 %s, max %s.%n",
+				asMillis(getLatencyNanos(0.5d)), asMillis(getLatencyNanos(0.9d)), asMillis(getLatencyNanos(0.99d)),
+				asMillis(getLatencyNanos(1d))));
+		for (DocumentOutcome failure : getFailures()) {
+			report.append(String.format("Failed: %s: %s%n", failure.getInput(), failure.getErrorMessage()));
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,70 @@
+package io.github.oliviercailloux.pdf_number_pages.cli;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * What happened to one input of a batch. Immutable.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DocumentOutcome {
+	private final String errorMessage;
+
+	private final Path input;
+
+	private final long inputBytes;
+
+	private final long latencyNanos;
+
+	/**
+	 * @param errorMessage
+	 *            empty string iff the document has been saved.
+	 */
+	public DocumentOutcome(Path input, long inputBytes, long latencyNanos, String errorMessage) {
+		this.input = requireNonNull(input);
+		checkArgument(inputBytes >= 0);
+		checkArgument(latencyNanos >= 0);
+		this.inputBytes = inputBytes;
+		this.latencyNanos = latencyNanos;
+		this.errorMessage = requireNonNull(errorMessage);
+	}
+
+	/**
+	 * @return empty string iff the document has been saved.
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+
+	public Path getInput() {
+		return input;
+	}
+
+	public long getInputBytes() {
+		return inputBytes;
+	}
+
+	/**
+	 * @return the time from the moment the batch started working on this input
+	 *         until its output was written or it failed.
+	 */
+	public long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	public boolean succeeded() {
+		return errorMessage.isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Input", input).add("Latency (ns)", latencyNanos)
+				.add("Error message", errorMessage).toString();
+	}
+}
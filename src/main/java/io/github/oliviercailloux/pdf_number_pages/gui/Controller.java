@@ -19,11 +19,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.bridge.SLF4JBridgeHandler;
 
+import com.google.common.eventbus.Subscribe;
+
 import io.github.oliviercailloux.pdf_number_pages.gui.label_ranges_component.LabelRangesComponent;
 import io.github.oliviercailloux.pdf_number_pages.gui.outline_component.OutlineComponent;
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.ReadEvent;
 import io.github.oliviercailloux.pdf_number_pages.services.Reader;
 import io.github.oliviercailloux.pdf_number_pages.services.StatusComputer;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.AutoSaver;
@@ -64,8 +68,15 @@ public class Controller {
 
 	private AutoSaver autoSaver;
 
+	/**
+	 * Whether to switch auto save on when the first read finishes.
+	 */
+	private boolean autoSaveOnFirstRead;
+
 	private final CropComponent cropComponent;
 
+	private final DocumentCache documentCache;
+
 	private Image icon;
 
 	private final InputOutputComponent inputOutputComponent;
@@ -96,20 +107,30 @@ public class Controller {
 		pdf.setOutline(outline);
 		final LabelRangesByIndex labelRangesByIndex = pdf.getLabelRangesByIndex();
 
+		documentCache = new DocumentCache();
+
 		reader = new Reader();
+		reader.setDocumentCache(documentCache);
 		reader.setLabelRangesByIndex(labelRangesByIndex);
 		reader.setOutline(outline);
+		reader.setReadEventsFiringExecutor((r) -> display.asyncExec(r));
 
 		saver = new Saver();
 		saver.setPdf(pdf);
 		saver.setReader(reader);
+		saver.setDocumentCache(documentCache);
 		saver.setSavedEventsFiringExecutor((r) -> display.asyncExec(r));
 
 		autoSaver = new AutoSaver();
 		autoSaver.setPdf(pdf);
 		autoSaver.setReader(reader);
 		autoSaver.setSaver(saver);
+		autoSaver.setAutoSavesExecutor((r) -> display.asyncExec(r));
 
+		/**
+		 * Compares on the UI thread: comparing on another one would spare it at most
+		 * some tens of microseconds per edit, and leave the statuses stale meanwhile.
+		 */
 		statusComputer = new StatusComputer();
 		statusComputer.setPdf(pdf);
 		statusComputer.setReader(reader);
@@ -142,6 +163,7 @@ public class Controller {
 		prudentActor.setLabelRangesByIndex(labelRangesByIndex);
 
 		icon = null;
+		autoSaveOnFirstRead = false;
 	}
 
 	public void fireView() {
@@ -184,7 +206,10 @@ public class Controller {
 		});
 
 		display.disposeExec(() -> {
+			reader.close();
+			autoSaver.close();
 			saver.close();
+			documentCache.invalidateAll();
 			icon.dispose();
 		});
 
@@ -209,18 +234,13 @@ public class Controller {
 	public void proceed() {
 		LOGGER.info("Start proceed.");
 		/**
-		 * At this stage, the model and services are initialized. We change the model
-		 * here. So that the change events are not processed by the GUI. When the GUI is
-		 * initialized (just after), it sees the right values from the start, thus
-		 * avoiding a refresh that would be visible by the end-user.
+		 * At this stage, the model and services are initialized. We start reading here,
+		 * so that the document is parsed while the GUI initializes. The model is
+		 * changed on the UI thread when the read finishes, and the GUI then refreshes.
 		 */
+		autoSaveOnFirstRead = true;
 		reader.setInputPath(Paths.get(
 				"/home/olivier/Biblio/Fishburn - Utility Theory for Decision Making (1970) - With manual TOC.pdf"));
-		if (!pdf.getLabelRangesByIndex().isEmpty()) {
-			LOGGER.debug("Setting auto save.");
-			saver.setOverwrite(true);
-			autoSaver.setAutoSave(true);
-		}
 
 		LOGGER.info("Start init.");
 		initGui();
@@ -229,6 +249,19 @@ public class Controller {
 		/** TODO check how fast it starts in target env. */
 	}
 
+	@Subscribe
+	public void readEvent(@SuppressWarnings("unused") ReadEvent event) {
+		if (!autoSaveOnFirstRead) {
+			return;
+		}
+		autoSaveOnFirstRead = false;
+		if (!pdf.getLabelRangesByIndex().isEmpty()) {
+			LOGGER.debug("Setting auto save.");
+			saver.setOverwrite(true);
+			autoSaver.setAutoSave(true);
+		}
+	}
+
 	public void register(Object listener) {
 		pdf.getLabelRangesByIndex().register(listener);
 		pdf.getOutline().get().register(listener);
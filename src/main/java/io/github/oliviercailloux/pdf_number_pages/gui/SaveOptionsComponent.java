@@ -24,6 +24,7 @@ import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineChanged;
 import io.github.oliviercailloux.pdf_number_pages.services.InputPathChanged;
 import io.github.oliviercailloux.pdf_number_pages.services.ReadEvent;
+import io.github.oliviercailloux.pdf_number_pages.services.ReadProgressEvent;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.AutoSaveChanged;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.AutoSaver;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.OutputPathChanged;
@@ -41,6 +42,12 @@ public class SaveOptionsComponent {
 
 	private LabelRangesByIndex labelRangesByIndex;
 
+	/**
+	 * <code>true</code> iff a read is ongoing, in which case the model does not
+	 * correspond to the input path and must not be saved.
+	 */
+	private boolean reading;
+
 	private Button saveButton;
 
 	Button autoSaveButton;
@@ -59,6 +66,7 @@ public class SaveOptionsComponent {
 		saver = null;
 		autoSaver = null;
 		labelRangesByIndex = null;
+		reading = false;
 	}
 
 	@Subscribe
@@ -130,6 +138,8 @@ public class SaveOptionsComponent {
 
 	@Subscribe
 	public void inputPathChanged(@SuppressWarnings("unused") InputPathChanged event) {
+		reading = true;
+		setSaveButtonsEnabled();
 		setReadText("Reading…", true);
 	}
 
@@ -161,9 +171,31 @@ public class SaveOptionsComponent {
 	@Subscribe
 	public void readEvent(ReadEvent event) {
 		LOGGER.debug("Read event: {}.", event);
+		reading = false;
+		setSaveButtonsEnabled();
 		setReadText(event.getErrorMessage(), event.succeeded());
 	}
 
+	@Subscribe
+	public void readProgress(ReadProgressEvent event) {
+		assert Display.getCurrent() != null;
+		final String text;
+		switch (event.getStage()) {
+		case LOADING:
+			text = "Loading…";
+			break;
+		case READING_LABELS:
+			text = "Reading labels…";
+			break;
+		case READING_OUTLINE:
+			text = "Reading outline…";
+			break;
+		default:
+			throw new IllegalStateException();
+		}
+		setReadText(text, true);
+	}
+
 	@Subscribe
 	public void saverFinished(SaverFinishedEvent event) {
 		setSaveText(event.getErrorMessage(), event.getErrorMessage().isEmpty());
@@ -184,8 +216,8 @@ public class SaveOptionsComponent {
 
 	public void setSaveButtonsEnabled() {
 		checkState(saveButton != null);
-		saveButton.setEnabled(!autoSaver.autoSaves() && !labelRangesByIndex.isEmpty());
-		autoSaveButton.setEnabled(!labelRangesByIndex.isEmpty());
+		saveButton.setEnabled(!reading && !autoSaver.autoSaves() && !labelRangesByIndex.isEmpty());
+		autoSaveButton.setEnabled(!reading && !labelRangesByIndex.isEmpty());
 	}
 
 	public void setSaver(Saver saver) {
@@ -13,7 +13,8 @@ import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
-import io.github.oliviercailloux.pdf_number_pages.services.PdfPageLabelComputer;
+import io.github.oliviercailloux.pdf_number_pages.services.PageLabelCache;
+import io.github.oliviercailloux.pdf_number_pages.services.PageLabelIndex;
 import io.github.oliviercailloux.swt_tools.TextEditingSupport;
 
 public class EditingSupportPageLabel extends TextEditingSupport<OutlineNode> {
@@ -21,21 +22,28 @@ public class EditingSupportPageLabel extends TextEditingSupport<OutlineNode> {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(EditingSupportPageLabel.class);
 
+	/**
+	 * <code>null</code> iff the label ranges are not set. Listens to the ranges
+	 * from when they are set, which happens when the viewer is built, before the
+	 * outline component itself listens to them: thus, when the ranges change, the
+	 * cache is up to date before the component refreshes the viewer.
+	 */
+	private PageLabelCache labelCache;
+
 	private LabelRangesByIndex labelRangesByIndex;
 
 	private Outline outline;
 
-	private final PdfPageLabelComputer pdfPageLabelComputer = new PdfPageLabelComputer();
-
 	public EditingSupportPageLabel(ColumnViewer viewer) {
 		super(viewer, OutlineNode.class);
 		labelRangesByIndex = null;
+		labelCache = null;
 		outline = null;
 	}
 
 	@Override
 	public boolean canEditTyped(OutlineNode element) {
-		return false;
+		return element.getBookmark().isPresent();
 	}
 
 	public LabelRangesByIndex getLabelRangesByIndex() {
@@ -54,11 +62,23 @@ public class EditingSupportPageLabel extends TextEditingSupport<OutlineNode> {
 		final Optional<PdfBookmark> bookmarkOpt = element.getBookmark();
 		checkState(bookmarkOpt.isPresent());
 		final PdfBookmark bookmark = bookmarkOpt.get();
-		return pdfPageLabelComputer.getLabelFromPageIndex(bookmark.getPhysicalPageNumber(), labelRangesByIndex);
+		return labelCache.getLabel(bookmark.getPhysicalPageNumber());
 	}
 
+	/**
+	 * Keeps the cache if given the ranges already set, otherwise replaces it with
+	 * one that listens to the given ranges only.
+	 */
 	public void setLabelRangesByIndex(LabelRangesByIndex labelRangesByIndex) {
-		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
+		requireNonNull(labelRangesByIndex);
+		if (labelRangesByIndex == this.labelRangesByIndex) {
+			return;
+		}
+		if (labelCache != null) {
+			this.labelRangesByIndex.unregister(labelCache);
+		}
+		this.labelRangesByIndex = labelRangesByIndex;
+		labelCache = PageLabelCache.newPageLabelCache(labelRangesByIndex);
 	}
 
 	public void setOutline(Outline outline) {
@@ -67,7 +87,21 @@ public class EditingSupportPageLabel extends TextEditingSupport<OutlineNode> {
 
 	@Override
 	public void setValueTyped(OutlineNode element, String value) {
-		throw new UnsupportedOperationException("Not implemented: set value.");
+		assert element != null;
+		final Optional<PdfBookmark> bookmarkOpt = element.getBookmark();
+		checkState(bookmarkOpt.isPresent());
+		final PdfBookmark bookmark = bookmarkOpt.get();
+		/**
+		 * Built for each edit, thus always reflects the current ranges. The number of
+		 * pages is unknown here: the last range is considered unbounded.
+		 */
+		final int pageIndex = new PageLabelIndex(labelRangesByIndex, -1).indexOf(value.trim());
+		if (pageIndex == -1) {
+			LOGGER.info("No page labelled {}, ignoring.", value);
+			return;
+		}
+		element.setBookmark(new PdfBookmark(bookmark.getTitle(), pageIndex));
+		LOGGER.debug("Element set: {}.", element);
 	}
 
 }
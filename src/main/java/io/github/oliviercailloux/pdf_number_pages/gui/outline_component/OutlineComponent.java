@@ -39,6 +39,7 @@ import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineOperation;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
 import io.github.oliviercailloux.pdf_number_pages.services.ReadEvent;
 import io.github.oliviercailloux.pdf_number_pages.services.Reader;
@@ -145,6 +146,11 @@ public class OutlineComponent {
 
 	@Subscribe
 	public void outlineChanged(OutlineChanged event) {
+		if (event.getOp() != OutlineOperation.REMOVE) {
+			LOGGER.debug("Outline changed, refreshing viewer.");
+			viewer.refresh();
+			return;
+		}
 		/**
 		 * This is irremediably flawed because of SWT, AFAIU. The tree could have
 		 * duplicated (equal) elements, including thus duplicated tree paths. I see no
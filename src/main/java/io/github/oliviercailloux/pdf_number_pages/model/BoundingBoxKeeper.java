@@ -23,10 +23,16 @@ public class BoundingBoxKeeper {
 	 */
 	private Optional<BBox> cropBox;
 
+	/**
+	 * The number of changes so far.
+	 */
+	private long revision;
+
 	final EventBus eventBus = new EventBus(BoundingBoxKeeper.class.getCanonicalName());
 
 	public BoundingBoxKeeper() {
 		cropBox = Optional.empty();
+		revision = 0;
 	}
 
 	@Override
@@ -45,6 +51,14 @@ public class BoundingBoxKeeper {
 		return cropBox;
 	}
 
+	/**
+	 * @return a number that increases at each change; thus, equal numbers imply
+	 *         equal contents.
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(cropBox);
@@ -56,10 +70,12 @@ public class BoundingBoxKeeper {
 
 	public void removeCropBox() {
 		this.cropBox = Optional.empty();
+		++revision;
 	}
 
 	public void setCropBox(BBox cropBox) {
 		this.cropBox = Optional.of(cropBox);
+		++revision;
 		eventBus.post(ModelChanged.newModelChangedAll());
 	}
 
@@ -22,6 +22,20 @@ import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedMap.Builder;
 import com.google.common.eventbus.EventBus;
 
+/**
+ * <p>
+ * The label ranges of a document, by index of their first page.
+ * </p>
+ * <p>
+ * The ranges this object holds are never modified in place: setting a property
+ * of a range replaces it by a modified copy. Thus, the ranges can be shared
+ * with {@link #snapshot() snapshots}. The ranges given to this object must not
+ * be modified afterwards.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
 public class LabelRangesByIndex extends ForwardingNavigableMap<Integer, PDPageLabelRangeWithEquals>
 		implements NavigableMap<Integer, PDPageLabelRangeWithEquals> {
 
@@ -36,16 +50,46 @@ public class LabelRangesByIndex extends ForwardingNavigableMap<Integer, PDPageLa
 		return new LabelRangesByIndex(builder.build());
 	}
 
+	/**
+	 * The event to post when the current transaction commits, or
+	 * <code>null</code> iff no change occurred since it began, or if no transaction
+	 * is ongoing.
+	 */
+	private ModelChanged deferredEvent;
+
 	private final NavigableMap<Integer, PDPageLabelRangeWithEquals> delegate;
 
 	final private EventBus eventBus = new EventBus(LabelRangesByIndex.class.getCanonicalName());
 
+	/**
+	 * The number of changes made so far through this object.
+	 */
+	private long revision;
+
+	/**
+	 * <code>null</code> iff no snapshot was taken since the last change.
+	 */
+	private LabelRangesByIndex snapshot;
+
+	/**
+	 * The number of transactions begun and not committed yet.
+	 */
+	private int transactionDepth;
+
 	public LabelRangesByIndex() {
 		delegate = new TreeMap<>();
+		deferredEvent = null;
+		revision = 0;
+		snapshot = null;
+		transactionDepth = 0;
 	}
 
 	public LabelRangesByIndex(NavigableMap<Integer, PDPageLabelRangeWithEquals> delegate) {
 		this.delegate = requireNonNull(delegate);
+		deferredEvent = null;
+		revision = 0;
+		snapshot = null;
+		transactionDepth = 0;
 	}
 
 	public void add() {
@@ -67,96 +111,199 @@ public class LabelRangesByIndex extends ForwardingNavigableMap<Integer, PDPageLa
 		catalog.setPageLabels(labels);
 	}
 
+	/**
+	 * Defers the events until the matching {@link #commit()}. Transactions may
+	 * nest; only the outermost commit posts. Should be followed by a
+	 * <code>try</code> block, whose <code>finally</code> clause commits.
+	 */
+	public void beginTransaction() {
+		++transactionDepth;
+	}
+
 	@Override
 	public void clear() {
 		super.clear();
-		eventBus.post(ModelChanged.newModelChangedAll());
+		post(ModelChanged.newModelChangedAll());
 	}
 
+	/**
+	 * Ends the transaction begun last. If it is the outermost one, and changes
+	 * occurred during it, posts one event: the one of the change, if only one
+	 * change occurred, and otherwise an event telling that everything may have
+	 * changed.
+	 */
+	public void commit() {
+		checkState(transactionDepth >= 1, "No transaction to commit.");
+		--transactionDepth;
+		if (transactionDepth == 0 && deferredEvent != null) {
+			final ModelChanged event = deferredEvent;
+			deferredEvent = null;
+			eventBus.post(event);
+		}
+	}
+
+	/**
+	 * @return a number that increases at each change made through this object;
+	 *         thus, equal numbers imply equal contents.
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
+	/**
+	 * Posts one event.
+	 */
 	public void move(int oldIndex, int newIndex) {
 		assert oldIndex != 0 : "Move from first page not supported";
 		if (oldIndex == newIndex) {
 			return;
 		}
 		LOGGER.info("Removing {}, adding {}.", oldIndex, newIndex);
-		final PDPageLabelRangeWithEquals range = removeExisting(oldIndex);
-		assert range != null;
-		putNew(newIndex, range);
+		beginTransaction();
+		try {
+			final PDPageLabelRangeWithEquals range = removeExisting(oldIndex);
+			assert range != null;
+			putNew(newIndex, range);
+		} finally {
+			commit();
+		}
+	}
+
+	/**
+	 * Does not post events.
+	 */
+	@Override
+	public PDPageLabelRangeWithEquals put(Integer index, PDPageLabelRangeWithEquals range) {
+		final PDPageLabelRangeWithEquals previous = super.put(index, range);
+		changed();
+		return previous;
 	}
 
 	@Override
 	public void putAll(Map<? extends Integer, ? extends PDPageLabelRangeWithEquals> map) {
 		super.putAll(map);
 		LOGGER.debug("All put, firing.");
-		eventBus.post(ModelChanged.newModelChangedAll());
+		post(ModelChanged.newModelChangedAll());
 	}
 
 	public void putNew(int index, PDPageLabelRangeWithEquals range) {
 		final PDPageLabelRange previous = delegate.put(index, range);
 		checkState(previous == null);
 		LOGGER.debug("Putting new range {} at {}.", range, index);
-		eventBus.post(ModelChanged.newModelChanged(ModelOperation.ADD, index));
+		post(ModelChanged.newModelChanged(ModelOperation.ADD, index));
 	}
 
 	public void register(Object listener) {
 		eventBus.register(listener);
 	}
 
+	/**
+	 * Does not post events.
+	 */
+	@Override
+	public PDPageLabelRangeWithEquals remove(Object index) {
+		final PDPageLabelRangeWithEquals previous = super.remove(index);
+		changed();
+		return previous;
+	}
+
 	public PDPageLabelRangeWithEquals removeExisting(int index) {
 		assert index != 0 : "Removal at first page not supported";
 		final PDPageLabelRangeWithEquals old = delegate.remove(index);
 		assert old != null;
-		eventBus.post(ModelChanged.newModelChanged(ModelOperation.REMOVE, index));
+		post(ModelChanged.newModelChanged(ModelOperation.REMOVE, index));
 		return old;
 	}
 
 	public void setPrefix(int elementIndex, String prefix) {
 		requireNonNull(prefix);
-		final PDPageLabelRange range = get(elementIndex);
+		final PDPageLabelRangeWithEquals range = get(elementIndex);
 		checkArgument(range != null);
 		final String newPrefix = Strings.emptyToNull(prefix);
 		if (Objects.equal(range.getPrefix(), newPrefix)) {
 			return;
 		}
-		range.setPrefix(newPrefix);
+		final PDPageLabelRangeWithEquals newRange = new PDPageLabelRangeWithEquals(range);
+		newRange.setPrefix(newPrefix);
+		delegate.put(elementIndex, newRange);
 		LOGGER.debug("Set prefix value for {}: {}.", elementIndex, prefix);
-		eventBus.post(ModelChanged.newModelChanged(ModelOperation.SET_PREFIX, elementIndex));
+		post(ModelChanged.newModelChanged(ModelOperation.SET_PREFIX, elementIndex));
 	}
 
 	public void setStart(int elementIndex, int start) {
-		final PDPageLabelRange range = get(elementIndex);
+		final PDPageLabelRangeWithEquals range = get(elementIndex);
 		checkArgument(range != null);
 		if (range.getStart() == start) {
 			return;
 		}
-		range.setStart(start);
+		final PDPageLabelRangeWithEquals newRange = new PDPageLabelRangeWithEquals(range);
+		newRange.setStart(start);
+		delegate.put(elementIndex, newRange);
 		LOGGER.debug("Set start value for {}: {}.", elementIndex, start);
-		eventBus.post(ModelChanged.newModelChanged(ModelOperation.SET_START, elementIndex));
+		post(ModelChanged.newModelChanged(ModelOperation.SET_START, elementIndex));
 	}
 
 	public void setStyle(int elementIndex, RangeStyle style) {
-		final PDPageLabelRange range = get(elementIndex);
+		final PDPageLabelRangeWithEquals range = get(elementIndex);
 		checkArgument(range != null);
 		final String stylePdfBox = style.toPdfBoxStyle();
 		if (Objects.equal(range.getStyle(), stylePdfBox)) {
 			return;
 		}
 		LOGGER.debug("Setting style value for {}: {}.", elementIndex, style);
-		range.setStyle(stylePdfBox);
-		eventBus.post(ModelChanged.newModelChanged(ModelOperation.SET_STYLE, elementIndex));
+		final PDPageLabelRangeWithEquals newRange = new PDPageLabelRangeWithEquals(range);
+		newRange.setStyle(stylePdfBox);
+		delegate.put(elementIndex, newRange);
+		post(ModelChanged.newModelChanged(ModelOperation.SET_STYLE, elementIndex));
 	}
 
+	/**
+	 * @return an immutable map equal to this one, that shares the ranges with it,
+	 *         and with the previous snapshots. Takes constant time if nothing
+	 *         changed since the last snapshot, and otherwise a time proportional
+	 *         to the number of ranges, which are not copied.
+	 */
+	public LabelRangesByIndex snapshot() {
+		if (snapshot == null) {
+			snapshot = new LabelRangesByIndex(ImmutableSortedMap.copyOfSorted(delegate));
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Gives the document copies of the ranges, so that writing the document
+	 * modifies none of the ranges, which snapshots may share.
+	 */
 	public PDPageLabels toPDPageLabel(PDDocument document) {
 		final PDPageLabels labels = new PDPageLabels(document);
 		for (Entry<Integer, PDPageLabelRangeWithEquals> labelByIndex : entrySet()) {
-			labels.setLabelItem(labelByIndex.getKey().intValue(), labelByIndex.getValue());
+			labels.setLabelItem(labelByIndex.getKey().intValue(),
+					new PDPageLabelRangeWithEquals(labelByIndex.getValue()));
 		}
 		return labels;
 	}
 
+	public void unregister(Object listener) {
+		eventBus.unregister(listener);
+	}
+
 	@Override
 	protected NavigableMap<Integer, PDPageLabelRangeWithEquals> delegate() {
 		return delegate;
 	}
 
+	private void changed() {
+		++revision;
+		snapshot = null;
+	}
+
+	private void post(ModelChanged event) {
+		changed();
+		if (transactionDepth >= 1) {
+			deferredEvent = deferredEvent == null ? event : ModelChanged.newModelChangedAll();
+		} else {
+			eventBus.post(event);
+		}
+	}
+
 }
@@ -1,9 +1,14 @@
 package io.github.oliviercailloux.pdf_number_pages.model;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.Deque;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.Objects;
 import java.util.Optional;
 
@@ -11,9 +16,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.eventbus.EventBus;
-import com.google.common.eventbus.Subscribe;
 
 /**
  * TODO refactor this whole scheme. Basic idea is as follows. We need a root
@@ -51,7 +56,14 @@ public class Outline implements IOutlineNode {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(Outline.class);
 
+	/**
+	 * Compares the hashes first, which are cached: two different trees most often
+	 * have different hashes, thus are told apart without walking them.
+	 */
 	public static boolean areEqual(IOutlineNode n1, IOutlineNode n2) {
+		if (n1 == n2) {
+			return true;
+		}
 		if (n1 instanceof Outline || n2 instanceof Outline) {
 			final boolean n1hasData;
 			final boolean n2hasData;
@@ -67,7 +79,8 @@ public class Outline implements IOutlineNode {
 			} else {
 				n2hasData = false;
 			}
-			return !n1hasData && !n2hasData && n1.getChildren().equals(n2.getChildren());
+			return !n1hasData && !n2hasData && computeHashcode(n1) == computeHashcode(n2)
+					&& n1.getChildren().equals(n2.getChildren());
 		}
 		if (!(n1 instanceof OutlineNode) || !(n2 instanceof OutlineNode)) {
 			throw new IllegalArgumentException(
@@ -75,34 +88,150 @@ public class Outline implements IOutlineNode {
 		}
 		final OutlineNode on1 = (OutlineNode) n1;
 		final OutlineNode on2 = (OutlineNode) n2;
-		return on1.getBookmark().equals(on2.getBookmark()) && on1.getChildren().equals(on2.getChildren());
+		return computeHashcode(on1) == computeHashcode(on2) && on1.getBookmark().equals(on2.getBookmark())
+				&& on1.getChildren().equals(on2.getChildren());
 	}
 
+	/**
+	 * Computes the hash of a node from its data and the hashes of its children,
+	 * which are cached, thus, after a change, takes a time proportional to the
+	 * number of siblings of the nodes on the path from the change to the root.
+	 */
 	public static int computeHashcode(IOutlineNode node) {
-		/**
-		 * Considering the contract of equals, the hashcode of an Outline must equal the
-		 * hashcode of an OutlineNode with no data.
-		 */
-		int hash = Objects.hash(node.getChildren());
-		if (node instanceof OutlineNode) {
-			hash = hash + ((OutlineNode) node).getBookmark().hashCode();
+		final Outline store = getChildStore(node);
+		int hash = store.hash;
+		if (hash == 0) {
+			/**
+			 * Considering the contract of equals, the hashcode of an Outline must equal the
+			 * hashcode of an OutlineNode with no data.
+			 */
+			hash = Objects.hash(node.getChildren());
+			if (node instanceof OutlineNode) {
+				hash = hash + ((OutlineNode) node).getBookmark().hashCode();
+			}
+			store.hash = hash;
 		}
 		return hash;
 	}
 
-	private List<OutlineNode> children = Lists.newLinkedList();
+	/**
+	 * Builds the snapshots of the nodes that changed since their last snapshot,
+	 * from the snapshots of their children, which are kept, thus, after a change,
+	 * takes a time proportional to the number of siblings of the nodes on the path
+	 * from the change to the root. Uses an explicit stack rather than recursion, so
+	 * that a deep tree can’t overflow the stack. Keeps the snapshots in the tree,
+	 * thus must be called by the thread that modifies it.
+	 */
+	public static OutlineSnapshot snapshotOf(IOutlineNode node) {
+		/** The nodes whose snapshots are missing, each before its descendants. */
+		final List<IOutlineNode> toBuild = new ArrayList<>();
+		final Deque<IOutlineNode> toVisit = new ArrayDeque<>();
+		if (getChildStore(node).snapshot == null) {
+			toVisit.push(node);
+		}
+		while (!toVisit.isEmpty()) {
+			final IOutlineNode current = toVisit.pop();
+			toBuild.add(current);
+			for (OutlineNode child : getChildStore(current).children) {
+				if (child.getDelegate().snapshot == null) {
+					toVisit.push(child);
+				}
+			}
+		}
+		for (IOutlineNode current : Lists.reverse(toBuild)) {
+			final List<OutlineNode> currentChildren = getChildStore(current).children;
+			/** Sized once, as this runs on the UI thread at each edit, for each ancestor of the change. */
+			final OutlineSnapshot[] children = new OutlineSnapshot[currentChildren.size()];
+			for (int i = 0; i < children.length; ++i) {
+				children[i] = currentChildren.get(i).getDelegate().snapshot;
+			}
+			final PdfBookmark bookmark = current instanceof OutlineNode ? ((OutlineNode) current).getBookmark().get()
+					: null;
+			getChildStore(current).snapshot = new OutlineSnapshot(bookmark, ImmutableList.copyOf(children));
+		}
+		return getChildStore(node).snapshot;
+	}
+
+	/**
+	 * @return the outline that holds the children of the given node.
+	 */
+	static Outline getChildStore(IOutlineNode node) {
+		if (node instanceof OutlineNode) {
+			return ((OutlineNode) node).getDelegate();
+		}
+		return (Outline) node;
+	}
+
+	/**
+	 * Array backed, so that accessing a child by its position takes constant time.
+	 */
+	private final List<OutlineNode> children = new ArrayList<>();
+
+	/**
+	 * The event to deliver when the current transaction commits, or
+	 * <code>null</code> iff no change occurred since it began, or if no transaction
+	 * is ongoing.
+	 */
+	private Object deferredEvent;
 
-	private EventBus eventBus = new EventBus();
+	/**
+	 * <code>null</code> iff no listener ever registered to this node. Listeners
+	 * also receive the events of the descendants of this node: those are not
+	 * forwarded from bus to bus, but delivered to each bus on the path to the root.
+	 */
+	private EventBus eventBus;
+
+	/**
+	 * The hash of the node whose children this outline holds, or 0 if not computed
+	 * since the last change to that node or to its descendants. As in
+	 * {@link String#hashCode()}, a hash that happens to be zero is computed anew
+	 * each time, and threads that read a snapshot concurrently may compute it
+	 * concurrently, which is harmless.
+	 */
+	private int hash;
 
 	private boolean postEnabled;
 
+	/**
+	 * The number of changes to the node whose children this outline holds and to
+	 * its descendants.
+	 */
+	private long revision;
+
+	/**
+	 * The children before this position know their local order; those from this
+	 * position on may not, as adding or removing a child shifts the positions of
+	 * the following ones. Those are renumbered only when some local order is
+	 * asked for, so that a sequence of changes renumbers each child at most once.
+	 */
+	private int renumberedCount;
+
+	/**
+	 * The snapshot of the node whose children this outline holds, or
+	 * <code>null</code> iff none was taken since the last change to that node or to
+	 * its descendants.
+	 */
+	private OutlineSnapshot snapshot;
+
+	/**
+	 * The number of transactions begun on this node and not committed yet.
+	 */
+	private int transactionDepth;
+
 	public Outline() {
+		deferredEvent = null;
+		eventBus = null;
+		hash = 0;
 		postEnabled = true;
+		revision = 0;
+		renumberedCount = 0;
+		snapshot = null;
+		transactionDepth = 0;
 	}
 
 	public void addAll(List<OutlineNode> outlines) {
 		for (OutlineNode outline : outlines) {
-			addInternal(outlines.size(), outline);
+			addInternal(children.size(), outline);
 		}
 		LOGGER.debug("Posting added.");
 		post();
@@ -117,29 +246,84 @@ public class Outline implements IOutlineNode {
 	@Override
 	public void addChild(int pos, OutlineNode outline) {
 		addInternal(pos, outline);
-		post();
+		post(OutlineChanged.newOutlineChanged(OutlineOperation.ADD, outline.getParent().get(), pos, outline));
 	}
 
+	/**
+	 * Notifies the listeners once.
+	 */
 	public void addCopies(List<OutlineNode> sourceChildren) {
-		for (OutlineNode child : sourceChildren) {
-			addAsLastChild(OutlineNode.copyOf(child));
+		beginTransaction();
+		try {
+			for (OutlineNode child : sourceChildren) {
+				addAsLastChild(OutlineNode.copyOf(child));
+			}
+		} finally {
+			commit();
 		}
 	}
 
+	/**
+	 * Adds live copies of the children of the given snapshot, as last children.
+	 * Notifies the listeners once.
+	 */
+	public void addCopies(OutlineSnapshot source) {
+		beginTransaction();
+		try {
+			for (OutlineSnapshot child : source.getChildren()) {
+				addAsLastChild(OutlineNode.copyOf(child));
+			}
+		} finally {
+			commit();
+		}
+	}
+
+	/**
+	 * <p>
+	 * Defers the notifications of the changes to this outline, including to its
+	 * descendants, until the matching {@link #commit()}. The listeners of the
+	 * descendants are still notified of the changes to those descendants as they
+	 * occur.
+	 * </p>
+	 * <p>
+	 * Transactions may nest; only the outermost commit notifies. Should be
+	 * followed by a <code>try</code> block, whose <code>finally</code> clause
+	 * commits.
+	 * </p>
+	 */
+	public void beginTransaction() {
+		++transactionDepth;
+	}
+
 	public void clear() {
 		if (children.isEmpty()) {
 			return;
 		}
-		final Iterator<OutlineNode> iterator = children.iterator();
-		while (iterator.hasNext()) {
-			final OutlineNode child = iterator.next();
-			iterator.remove();
+		for (OutlineNode child : children) {
 			child.removeParent();
-			child.unregister(this);
 		}
+		children.clear();
+		changed();
+		renumberedCount = 0;
 		post();
 	}
 
+	/**
+	 * Ends the transaction begun last. If it is the outermost one, and changes
+	 * occurred during it, notifies the listeners of this outline once: with the
+	 * event of the change, if only one change occurred, and otherwise with an
+	 * event telling that everything may have changed.
+	 */
+	public void commit() {
+		checkState(transactionDepth >= 1, "No transaction to commit.");
+		--transactionDepth;
+		if (transactionDepth == 0 && deferredEvent != null) {
+			final Object event = deferredEvent;
+			deferredEvent = null;
+			dispatch(event);
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj == null) {
@@ -154,7 +338,7 @@ public class Outline implements IOutlineNode {
 
 	@Override
 	public List<IOutlineNode> getAscendants() {
-		return Lists.newLinkedList();
+		return new ArrayList<>();
 	}
 
 	@Override
@@ -167,24 +351,24 @@ public class Outline implements IOutlineNode {
 		return Optional.empty();
 	}
 
+	/**
+	 * @return a number that increases at each change to this outline, including
+	 *         to its descendants; thus, equal numbers imply equal contents.
+	 */
+	public long getRevision() {
+		return revision;
+	}
+
 	@Override
 	public int hashCode() {
 		return computeHashcode(this);
 	}
 
-	@Subscribe
-	public void modelChanged(ModelChanged event) {
-		/** Let’s propagate events posted by my children. */
-		post(event);
-	}
-
-	@Subscribe
-	public void outlineChanged(OutlineChanged event) {
-		post(event);
-	}
-
 	@Override
 	public void register(Object object) {
+		if (eventBus == null) {
+			eventBus = new EventBus();
+		}
 		eventBus.register(object);
 	}
 
@@ -194,27 +378,11 @@ public class Outline implements IOutlineNode {
 		final Optional<IOutlineNode> parentOpt = child.getParent();
 		assert parentOpt.isPresent();
 		final IOutlineNode parent = parentOpt.get();
-		/** Example: we remove element of index 0. */
-		final int pos = child.getLocalOrder().get();
-		assert pos == childNb;
-		/**
-		 * Our iterator will first retrieve element of (new) index 0.
-		 */
-		final ListIterator<OutlineNode> listIterator = children.listIterator(pos);
-		/** i = 0. */
-		int i = pos;
-		while (listIterator.hasNext()) {
-			/** Our first sibling is element of index 0. */
-			final OutlineNode sibling = listIterator.next();
-			/** It thinks it has local order 1. */
-			assert sibling.getLocalOrder().get() == i + 1;
-			/** Because of removal, it has local order 0. */
-			sibling.setLocalOrder(i);
-			++i;
-		}
+		/** The following siblings now are one position earlier. */
+		renumberedCount = Math.min(renumberedCount, childNb);
 		child.removeParent();
-		child.unregister(this);
-		post(OutlineChanged.newOutlineChanged(OutlineOperation.REMOVE, parent, childNb));
+		changed();
+		post(OutlineChanged.newOutlineChanged(OutlineOperation.REMOVE, parent, childNb, child));
 	}
 
 	@Override
@@ -224,20 +392,38 @@ public class Outline implements IOutlineNode {
 
 	@Override
 	public void unregister(Object object) {
+		checkArgument(eventBus != null, "Not registered: %s.", object);
 		eventBus.unregister(object);
 	}
 
 	void addInternal(int pos, OutlineNode outline) {
 		children.add(pos, outline);
-		final ListIterator<OutlineNode> listIterator = children.listIterator(pos + 1);
-		int i = pos;
-		while (listIterator.hasNext()) {
-			++i;
-			final OutlineNode child = listIterator.next();
-			child.setLocalOrder(i);
-		}
+		/** The following siblings now are one position later. */
+		renumberedCount = Math.min(renumberedCount, pos);
 		outline.setParent(this, pos);
-		outline.register(this);
+		changed();
+	}
+
+	/**
+	 * Counts a change to the node whose children this outline holds, and to its
+	 * ancestors, and forgets their hashes and snapshots, which the change
+	 * invalidates.
+	 */
+	void changed() {
+		for (Outline store = this; store != null; store = store.getParentStore()) {
+			store.hash = 0;
+			++store.revision;
+			store.snapshot = null;
+		}
+	}
+
+	/**
+	 * @return the outline that holds the siblings of the node whose children this
+	 *         outline holds, or <code>null</code> if that node has no parent, or if
+	 *         this outline is a root.
+	 */
+	Outline getParentStore() {
+		return null;
 	}
 
 	void post() {
@@ -245,20 +431,53 @@ public class Outline implements IOutlineNode {
 	}
 
 	void post(ModelChanged event) {
-		if (postEnabled) {
-			LOGGER.debug("Posting {}.", event);
-			eventBus.post(event);
-		}
+		dispatch(event);
 	}
 
 	void post(OutlineChanged event) {
-		if (postEnabled) {
-			LOGGER.debug("Posting {}.", event);
-			eventBus.post(event);
+		dispatch(event);
+	}
+
+	/**
+	 * Sets their local order to the children that may not know it.
+	 */
+	void renumber() {
+		for (int i = renumberedCount; i < children.size(); ++i) {
+			children.get(i).setLocalOrder(i);
 		}
+		renumberedCount = children.size();
 	}
 
 	void setPostEnabled(boolean enabled) {
 		this.postEnabled = enabled;
 	}
+
+	/**
+	 * Sets the snapshot, and the hash, of the node whose children this outline
+	 * holds, which must have the content of the given snapshot.
+	 */
+	void setSnapshot(OutlineSnapshot snapshot) {
+		this.snapshot = requireNonNull(snapshot);
+		hash = snapshot.hashCode();
+	}
+
+	/**
+	 * Delivers the event to the listeners of this node then of each of its
+	 * ancestors, up to the root or to the first ancestor whose posting is
+	 * disabled, or, if one of them is in a transaction, up to that one, which
+	 * defers the event. Only the nodes that have listeners, typically only the
+	 * root, have a bus; the others cost a pointer on the way up.
+	 */
+	private void dispatch(Object event) {
+		LOGGER.debug("Posting {}.", event);
+		for (Outline store = this; store != null && store.postEnabled; store = store.getParentStore()) {
+			if (store.transactionDepth >= 1) {
+				store.deferredEvent = store.deferredEvent == null ? event : ModelChanged.newModelChangedAll();
+				return;
+			}
+			if (store.eventBus != null) {
+				store.eventBus.post(event);
+			}
+		}
+	}
 }
@@ -6,16 +6,36 @@ import static java.util.Objects.requireNonNull;
 import com.google.common.base.MoreObjects;
 
 /**
+ * Tells which node of an outline has been added, removed, or has had its
+ * bookmark set. Changes to several nodes at once are told by a
+ * {@link ModelChanged} event, telling that everything may have changed.
  *
- * TODO Fire the right event. Rename ModelChanged to LabelRangesChanged.
- * Currently we fire ModelChanged instead of OutlineChanged most of the time.
+ * TODO Rename ModelChanged to LabelRangesChanged.
  *
  * @author Olivier Cailloux
  *
  */
 public class OutlineChanged {
 
-	public static OutlineChanged newOutlineChanged(OutlineOperation op, IOutlineNode parent, int childNb) {
+	/**
+	 * @return an event telling that the given node has had its bookmark set.
+	 */
+	public static OutlineChanged newBookmarkSet(OutlineNode node) {
+		final OutlineChanged changed = new OutlineChanged();
+		changed.node = requireNonNull(node);
+		changed.op = OutlineOperation.SET_BOOKMARK;
+		return changed;
+	}
+
+	/**
+	 * @param op
+	 *            {@link OutlineOperation#ADD} or {@link OutlineOperation#REMOVE}.
+	 * @param node
+	 *            the node added or removed.
+	 */
+	public static OutlineChanged newOutlineChanged(OutlineOperation op, IOutlineNode parent, int childNb,
+			OutlineNode node) {
+		checkArgument(op == OutlineOperation.ADD || op == OutlineOperation.REMOVE);
 		checkArgument(parent != null);
 		checkArgument(childNb >= 0);
 		/**
@@ -26,7 +46,8 @@ public class OutlineChanged {
 		final OutlineChanged changed = new OutlineChanged();
 		changed.parent = parent;
 		changed.childNb = childNb;
-		changed.op = requireNonNull(op);
+		changed.node = requireNonNull(node);
+		changed.op = op;
 		return changed;
 	}
 
@@ -34,15 +55,29 @@ public class OutlineChanged {
 		return new OutlineChanged();
 	}
 
+	/**
+	 * -1 iff the operation is neither {@link OutlineOperation#ADD} nor
+	 * {@link OutlineOperation#REMOVE}.
+	 */
 	private int childNb;
 
+	/**
+	 * <code>null</code> iff the operation is {@link OutlineOperation#ALL}.
+	 */
+	private OutlineNode node;
+
 	private OutlineOperation op;
 
+	/**
+	 * <code>null</code> iff the operation is neither {@link OutlineOperation#ADD}
+	 * nor {@link OutlineOperation#REMOVE}.
+	 */
 	private IOutlineNode parent;
 
 	private OutlineChanged() {
 		parent = null;
 		childNb = -1;
+		node = null;
 		this.op = OutlineOperation.ALL;
 	}
 
@@ -50,6 +85,13 @@ public class OutlineChanged {
 		return childNb;
 	}
 
+	/**
+	 * @return the node added, removed, or whose bookmark has been set.
+	 */
+	public OutlineNode getNode() {
+		return node;
+	}
+
 	public OutlineOperation getOp() {
 		return op;
 	}
@@ -60,6 +102,17 @@ public class OutlineChanged {
 
 	@Override
 	public String toString() {
-		return MoreObjects.toStringHelper(this).add("Op", op).add("Parent", parent).toString();
+		/** Only the bookmark of the parent: describing the tree would cost its size. */
+		final Object parentDescription;
+		if (parent instanceof OutlineNode) {
+			parentDescription = ((OutlineNode) parent).getBookmark().get();
+		} else if (parent != null) {
+			parentDescription = "Root";
+		} else {
+			parentDescription = null;
+		}
+		return MoreObjects.toStringHelper(this).add("Op", op).add("Parent", parentDescription)
+				.add("Child number", childNb).add("Node", node == null ? null : node.getBookmark().orElse(null))
+				.toString();
 	}
 }
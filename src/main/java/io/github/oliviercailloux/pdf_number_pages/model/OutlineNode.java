@@ -4,6 +4,10 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,8 +17,6 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Objects;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Lists;
-import com.google.common.eventbus.Subscribe;
 
 /**
  * A node, either considered alone (root of a tree), in which case it has no
@@ -30,13 +32,69 @@ public class OutlineNode implements IOutlineNode {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(OutlineNode.class);
 
+	/**
+	 * Copies the given tree using an explicit stack rather than recursion, so that
+	 * a deep tree can’t overflow the stack.
+	 */
 	public static OutlineNode copyOf(OutlineNode source) {
 		requireNonNull(source);
 		final OutlineNode dest = new OutlineNode();
 		dest.bookmark = source.bookmark;
-		for (OutlineNode child : source.getChildren()) {
-			LOGGER.debug("Adding to {}, {} as child.", dest, child);
-			dest.addAsLastChild(copyOf(child));
+		/** Pairs of a source node and its copy, whose children remain to copy. */
+		final Deque<OutlineNode> sources = new ArrayDeque<>();
+		final Deque<OutlineNode> dests = new ArrayDeque<>();
+		sources.push(source);
+		dests.push(dest);
+		while (!sources.isEmpty()) {
+			final OutlineNode sourceNode = sources.pop();
+			final OutlineNode destNode = dests.pop();
+			for (OutlineNode child : sourceNode.getChildren()) {
+				final OutlineNode childCopy = new OutlineNode();
+				childCopy.bookmark = child.bookmark;
+				destNode.addAsLastChild(childCopy);
+				sources.push(child);
+				dests.push(childCopy);
+			}
+		}
+		return dest;
+	}
+
+	/**
+	 * Copies the given snapshot into a live tree, using an explicit stack rather
+	 * than recursion. Each copied node keeps the snapshot it comes from, so that
+	 * taking a snapshot of the copy takes constant time.
+	 *
+	 * @param source
+	 *            not a root.
+	 */
+	public static OutlineNode copyOf(OutlineSnapshot source) {
+		checkArgument(source.getBookmark().isPresent());
+		final OutlineNode dest = new OutlineNode();
+		dest.bookmark = source.getBookmark().get();
+		/** All the source nodes and their copies, in the same order. */
+		final List<OutlineSnapshot> copiedSources = new ArrayList<>();
+		final List<OutlineNode> copies = new ArrayList<>();
+		/** Pairs of a source node and its copy, whose children remain to copy. */
+		final Deque<OutlineSnapshot> sources = new ArrayDeque<>();
+		final Deque<OutlineNode> dests = new ArrayDeque<>();
+		sources.push(source);
+		dests.push(dest);
+		while (!sources.isEmpty()) {
+			final OutlineSnapshot sourceNode = sources.pop();
+			final OutlineNode destNode = dests.pop();
+			copiedSources.add(sourceNode);
+			copies.add(destNode);
+			for (OutlineSnapshot child : sourceNode.getChildren()) {
+				final OutlineNode childCopy = new OutlineNode();
+				childCopy.bookmark = child.getBookmark().get();
+				destNode.addAsLastChild(childCopy);
+				sources.push(child);
+				dests.push(childCopy);
+			}
+		}
+		/** Only now, as adding children forgets the snapshots. */
+		for (int i = 0; i < copies.size(); ++i) {
+			copies.get(i).delegate.setSnapshot(copiedSources.get(i));
 		}
 		return dest;
 	}
@@ -73,6 +131,7 @@ public class OutlineNode implements IOutlineNode {
 	private OutlineNode() {
 		bookmark = null;
 		parent = null;
+		localOrder = -1;
 		delegate = new Outline() {
 			@Override
 			void addInternal(int pos, OutlineNode outline) {
@@ -83,6 +142,11 @@ public class OutlineNode implements IOutlineNode {
 				 */
 				outline.setParent(OutlineNode.this, pos);
 			}
+
+			@Override
+			Outline getParentStore() {
+				return parent == null ? null : Outline.getChildStore(parent);
+			}
 		};
 	}
 
@@ -107,7 +171,8 @@ public class OutlineNode implements IOutlineNode {
 	 *         the given parent.
 	 */
 	public boolean changeParent(IOutlineNode newParent) {
-		LOGGER.info("Changing parent from {} to {}.", parent, newParent);
+		/** Only the bookmark: describing the trees would cost their sizes. */
+		LOGGER.debug("Changing parent of {}.", bookmark);
 		requireNonNull(newParent);
 		if (newParent == this.parent) {
 			final List<OutlineNode> siblings = this.parent.getChildren();
@@ -116,7 +181,7 @@ public class OutlineNode implements IOutlineNode {
 			}
 		}
 		if (this.parent != null) {
-			this.parent.remove(localOrder);
+			this.parent.remove(getLocalOrder().get());
 		}
 		newParent.addAsLastChild(this);
 		return true;
@@ -136,14 +201,12 @@ public class OutlineNode implements IOutlineNode {
 
 	@Override
 	public List<IOutlineNode> getAscendants() {
-		final List<IOutlineNode> ascendants;
-		if (parent == null) {
-			ascendants = Lists.newLinkedList();
-		} else {
-			ascendants = parent.getAscendants();
+		/** Walks up rather than recursing, so that a deep tree can’t overflow the stack. */
+		final List<IOutlineNode> ascendants = new ArrayList<>();
+		for (IOutlineNode node = this; node instanceof OutlineNode; node = ((OutlineNode) node).parent) {
+			ascendants.add(node);
 		}
-		ascendants.add(this);
-
+		Collections.reverse(ascendants);
 		return ascendants;
 	}
 
@@ -156,8 +219,15 @@ public class OutlineNode implements IOutlineNode {
 		return delegate.getChildren();
 	}
 
+	/**
+	 * Takes constant time, except after a change to the siblings of this node, in
+	 * which case it first renumbers the siblings that follow the change.
+	 */
 	public Optional<Integer> getLocalOrder() {
 		checkState((localOrder == -1) == (parent == null));
+		if (parent != null) {
+			Outline.getChildStore(parent).renumber();
+		}
 		return localOrder == -1 ? Optional.empty() : Optional.of(localOrder);
 	}
 
@@ -171,16 +241,6 @@ public class OutlineNode implements IOutlineNode {
 		return Outline.computeHashcode(this);
 	}
 
-	@Subscribe
-	public void modelChanged(ModelChanged event) {
-		delegate.post(event);
-	}
-
-	@Subscribe
-	public void outlineChanged(@SuppressWarnings("unused") OutlineChanged event) {
-		delegate.post(event);
-	}
-
 	@Override
 	public void register(Object object) {
 		delegate.register(object);
@@ -200,7 +260,7 @@ public class OutlineNode implements IOutlineNode {
 	 * @return
 	 */
 	public boolean setAsNextSiblingOf(OutlineNode newPreviousSibling) {
-		LOGGER.debug("Setting {} as next sibling of {}.", this, newPreviousSibling);
+		LOGGER.debug("Setting {} as next sibling of {}.", bookmark, newPreviousSibling.bookmark);
 		final Optional<IOutlineNode> parentOpt = requireNonNull(newPreviousSibling).getParent();
 		checkArgument(parentOpt.isPresent());
 		final IOutlineNode newParent = parentOpt.get();
@@ -214,7 +274,7 @@ public class OutlineNode implements IOutlineNode {
 			}
 		}
 		if (parent != null) {
-			parent.remove(localOrder);
+			parent.remove(getLocalOrder().get());
 		}
 		/** The removal might have changed the previous local order. */
 		newParent.addChild(newPreviousSibling.getLocalOrder().get() + 1, this);
@@ -227,7 +287,8 @@ public class OutlineNode implements IOutlineNode {
 			return false;
 		}
 		this.bookmark = bookmark;
-		delegate.post(ModelChanged.newModelChangedAll());
+		delegate.changed();
+		delegate.post(OutlineChanged.newBookmarkSet(this));
 		return true;
 	}
 
@@ -243,6 +304,10 @@ public class OutlineNode implements IOutlineNode {
 		delegate.unregister(object);
 	}
 
+	Outline getDelegate() {
+		return delegate;
+	}
+
 	/**
 	 * For internal use only. Used to set parent pointer correctly after having
 	 * changed children. Does not post events.
@@ -272,7 +337,8 @@ public class OutlineNode implements IOutlineNode {
 	 *            not <code>null</code>.
 	 */
 	void setParent(IOutlineNode parent, int localOrder) {
-		LOGGER.debug("Setting parent of {} to {}.", this, parent);
+		/** Only the bookmark: describing the trees would cost their sizes. */
+		LOGGER.debug("Setting parent of {}.", bookmark);
 		requireNonNull(parent);
 		checkArgument(localOrder >= 0);
 		checkArgument(localOrder < parent.getChildren().size());
@@ -1,5 +1,5 @@
 package io.github.oliviercailloux.pdf_number_pages.model;
 
 public enum OutlineOperation {
-	ADD, ALL, REMOVE
+	ADD, ALL, REMOVE, SET_BOOKMARK
 }
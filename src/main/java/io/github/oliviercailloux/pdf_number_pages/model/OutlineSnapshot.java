@@ -0,0 +1,88 @@
+package io.github.oliviercailloux.pdf_number_pages.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * <p>
+ * An immutable outline node: a bookmark, absent for a root, and children. Taken
+ * from a live outline by {@link Outline#snapshotOf(IOutlineNode)}, which can be
+ * handed to other threads.
+ * </p>
+ * <p>
+ * Snapshots are persistent: the live outline keeps the snapshot of each of its
+ * nodes until that node or one of its descendants changes. Thus, a snapshot of
+ * an unchanged outline is the previous one, and a snapshot taken after a change
+ * builds only the nodes on the path from the change to the root, sharing the
+ * other nodes with the previous snapshots.
+ * </p>
+ * <p>
+ * Two snapshots are equal iff they have equal bookmarks and equal children, in
+ * the same order. The hash code equals the one of the live node the snapshot is
+ * taken from.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class OutlineSnapshot {
+	public static final OutlineSnapshot EMPTY = new OutlineSnapshot(null, ImmutableList.of());
+
+	/**
+	 * <code>null</code> iff this is a root.
+	 */
+	private final PdfBookmark bookmark;
+
+	private final ImmutableList<OutlineSnapshot> children;
+
+	/**
+	 * Computed at construction, from the hashes of the children: so that
+	 * comparing two different snapshots most often takes constant time.
+	 */
+	private final int hash;
+
+	OutlineSnapshot(PdfBookmark bookmark, ImmutableList<OutlineSnapshot> children) {
+		this.bookmark = bookmark;
+		this.children = requireNonNull(children);
+		/** As in Outline#computeHashcode. */
+		hash = Objects.hash(children) + (bookmark == null ? 0 : bookmark.hashCode());
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof OutlineSnapshot)) {
+			return false;
+		}
+		final OutlineSnapshot s2 = (OutlineSnapshot) obj;
+		return hash == s2.hash && Objects.equals(bookmark, s2.bookmark) && children.equals(s2.children);
+	}
+
+	/**
+	 * @return empty iff this is a root.
+	 */
+	public Optional<PdfBookmark> getBookmark() {
+		return Optional.ofNullable(bookmark);
+	}
+
+	public ImmutableList<OutlineSnapshot> getChildren() {
+		return children;
+	}
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Bookmark", bookmark).add("Children", children).toString();
+	}
+}
@@ -8,18 +8,46 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.MoreObjects;
 
+/**
+ * <p>
+ * A page label range that compares by value, and that keeps its prefix and its
+ * style ready for computing labels: PDFBox decodes the prefix into a new string
+ * at each read, and the style is stored as a PDF name.
+ * </p>
+ * <p>
+ * The range must be modified only through its setters, not through its
+ * {@link #getCOSObject() COS dictionary}.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
 public class PDPageLabelRangeWithEquals extends PDPageLabelRange {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(PDPageLabelRangeWithEquals.class);
 
+	/**
+	 * Equal to the prefix stored in the dictionary.
+	 */
+	private String prefix;
+
+	/**
+	 * <code>null</code> iff not resolved since the style was last set. Resolved
+	 * lazily, so that an unknown style fails only when used, as before.
+	 */
+	private RangeStyle rangeStyle;
+
 	/**
 	 * A range with null prefix and style, and start is 1
 	 */
 	public PDPageLabelRangeWithEquals() {
 		super();
+		prefix = null;
+		rangeStyle = null;
 	}
 
 	public PDPageLabelRangeWithEquals(PDPageLabelRange source) {
+		this();
 		setPrefix(source.getPrefix());
 		setStart(source.getStart());
 		setStyle(source.getStyle());
@@ -36,11 +64,39 @@ public class PDPageLabelRangeWithEquals extends PDPageLabelRange {
 				&& Objects.equals(this.getStyle(), r2.getStyle());
 	}
 
+	@Override
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the style is not one that PDF defines.
+	 */
+	public RangeStyle getRangeStyle() {
+		if (rangeStyle == null) {
+			rangeStyle = RangeStyle.fromPdfBoxStyle(getStyle());
+		}
+		return rangeStyle;
+	}
+
 	@Override
 	public int hashCode() {
 		return Objects.hash(getPrefix(), getStart(), getStyle());
 	}
 
+	@Override
+	public void setPrefix(String prefix) {
+		super.setPrefix(prefix);
+		this.prefix = prefix;
+	}
+
+	@Override
+	public void setStyle(String style) {
+		super.setStyle(style);
+		rangeStyle = null;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this).add("prefix", getPrefix()).add("start", getStart())
@@ -27,10 +27,45 @@ public class PdfPart {
 
 	private Optional<Outline> outline;
 
+	/**
+	 * Added to the revisions of the parts, so that replacing a part also
+	 * increases the revision of this object.
+	 */
+	private long revisionOffset;
+
 	public PdfPart() {
 		labelRangesByIndex = new LabelRangesByIndex();
 		outline = Optional.empty();
 		boundingBoxKeeper = new BoundingBoxKeeper();
+		revisionOffset = 0;
+	}
+
+	/**
+	 * Begins a transaction on the label ranges and on the outline, if any, which
+	 * defers their notifications until the matching {@link #commit()}. Should be
+	 * followed by a <code>try</code> block, whose <code>finally</code> clause
+	 * commits. Replacing a part during the transaction is not supported.
+	 */
+	public void beginTransaction() {
+		labelRangesByIndex.beginTransaction();
+		if (outline.isPresent()) {
+			outline.get().beginTransaction();
+		}
+	}
+
+	/**
+	 * Commits the transactions on the label ranges then on the outline, so that the
+	 * outline listeners see label ranges that match it. Each part that changed
+	 * notifies its listeners once.
+	 */
+	public void commit() {
+		try {
+			labelRangesByIndex.commit();
+		} finally {
+			if (outline.isPresent()) {
+				outline.get().commit();
+			}
+		}
 	}
 
 	@Override
@@ -62,6 +97,19 @@ public class PdfPart {
 		return outline;
 	}
 
+	/**
+	 * @return a number that increases at each change to the parts of this object,
+	 *         made through them, and at each replacement of a part; thus, equal
+	 *         numbers imply equal contents, and checking it takes constant time.
+	 */
+	public long getRevision() {
+		return revisionOffset + getPartsRevision();
+	}
+
+	/**
+	 * Takes a time that does not depend on the size of the outline, whose hash is
+	 * cached, thus can serve as a fingerprint of the content.
+	 */
 	@Override
 	public int hashCode() {
 		return Objects.hash(labelRangesByIndex, outline, boundingBoxKeeper);
@@ -76,7 +124,9 @@ public class PdfPart {
 	}
 
 	public void setBoundingBoxKeeper(BoundingBoxKeeper boundingBoxKeeper) {
+		final long revision = getRevision();
 		this.boundingBoxKeeper = requireNonNull(boundingBoxKeeper);
+		replaced(revision);
 	}
 
 	public void setCropBox(BBox cropBox) {
@@ -84,11 +134,25 @@ public class PdfPart {
 	}
 
 	public void setLabelRangesByIndex(LabelRangesByIndex labelRangesByIndex) {
+		final long revision = getRevision();
 		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
+		replaced(revision);
 	}
 
 	public void setOutline(Outline outline) {
+		final long revision = getRevision();
 		this.outline = Optional.of(outline);
+		replaced(revision);
+	}
+
+	/**
+	 * Takes constant time if nothing changed since the last snapshot; otherwise,
+	 * copies only what changed, see {@link LabelRangesByIndex#snapshot()} and
+	 * {@link Outline#snapshotOf(IOutlineNode)}.
+	 */
+	public PdfPartSnapshot snapshot() {
+		final Optional<OutlineSnapshot> outlineSnapshot = outline.map(Outline::snapshotOf);
+		return new PdfPartSnapshot(labelRangesByIndex.snapshot(), outlineSnapshot, getCropBox());
 	}
 
 	@Override
@@ -99,4 +163,17 @@ public class PdfPart {
 		helper.add("Bounding box keeper", boundingBoxKeeper);
 		return helper.toString();
 	}
+
+	private long getPartsRevision() {
+		final long outlineRevision = outline.isPresent() ? outline.get().getRevision() : 0;
+		return labelRangesByIndex.getRevision() + outlineRevision + boundingBoxKeeper.getRevision();
+	}
+
+	/**
+	 * Sets the revision of this object to one more than the given one, which it
+	 * had before a part was replaced.
+	 */
+	private void replaced(long previousRevision) {
+		revisionOffset = previousRevision + 1 - getPartsRevision();
+	}
 }
@@ -0,0 +1,81 @@
+package io.github.oliviercailloux.pdf_number_pages.model;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Objects;
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.MoreObjects.ToStringHelper;
+
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * The content of a {@link PdfPart} at some point: immutable, thus can be handed
+ * to other threads. Shares its structure with the model it is taken from, see
+ * {@link PdfPart#snapshot()}.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class PdfPartSnapshot {
+	private final Optional<BBox> cropBox;
+
+	/**
+	 * Immutable.
+	 */
+	private final LabelRangesByIndex labelRangesByIndex;
+
+	private final Optional<OutlineSnapshot> outline;
+
+	/**
+	 * @param labelRangesByIndex
+	 *            must not be modified afterwards.
+	 */
+	public PdfPartSnapshot(LabelRangesByIndex labelRangesByIndex, Optional<OutlineSnapshot> outline,
+			Optional<BBox> cropBox) {
+		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
+		this.outline = requireNonNull(outline);
+		this.cropBox = requireNonNull(cropBox);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof PdfPartSnapshot)) {
+			return false;
+		}
+		final PdfPartSnapshot s2 = (PdfPartSnapshot) obj;
+		/** The outline first, as its hash makes telling two outlines apart quick. */
+		return outline.equals(s2.outline) && labelRangesByIndex.equals(s2.labelRangesByIndex)
+				&& cropBox.equals(s2.cropBox);
+	}
+
+	public Optional<BBox> getCropBox() {
+		return cropBox;
+	}
+
+	public LabelRangesByIndex getLabelRangesByIndex() {
+		return labelRangesByIndex;
+	}
+
+	public Optional<OutlineSnapshot> getOutline() {
+		return outline;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(labelRangesByIndex, outline, cropBox);
+	}
+
+	@Override
+	public String toString() {
+		final ToStringHelper helper = MoreObjects.toStringHelper(this);
+		helper.add("Label ranges", labelRangesByIndex);
+		helper.add("Outline", outline);
+		helper.add("Crop box", cropBox);
+		return helper.toString();
+	}
+}
@@ -0,0 +1,78 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccess;
+import org.apache.pdfbox.io.ScratchFile;
+
+import com.google.common.collect.Lists;
+
+/**
+ * A scratch file that keeps track of the buffers it creates, so that it can
+ * tell how many bytes it holds in the heap and on disk.
+ *
+ * The split is computed the way {@link ScratchFile} allocates its pages: the
+ * first pages live in the heap, up to the heap cap, and the next ones in the
+ * scratch file.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class AccountingScratchFile extends ScratchFile {
+	/**
+	 * As in {@link ScratchFile}.
+	 */
+	private static final int PAGE_SIZE = 4096;
+
+	private final List<RandomAccess> buffers = Lists.newArrayList();
+
+	private final long maxHeapBytes;
+
+	public AccountingScratchFile(MemoryUsageSetting setting) throws IOException {
+		super(setting);
+		if (!setting.useMainMemory()) {
+			maxHeapBytes = 0;
+		} else if (setting.isMainMemoryRestricted()) {
+			maxHeapBytes = setting.getMaxMainMemoryBytes() / PAGE_SIZE * PAGE_SIZE;
+		} else {
+			maxHeapBytes = Long.MAX_VALUE;
+		}
+	}
+
+	@Override
+	public RandomAccess createBuffer() throws IOException {
+		return track(super.createBuffer());
+	}
+
+	@Override
+	public RandomAccess createBuffer(InputStream input) throws IOException {
+		return track(super.createBuffer(input));
+	}
+
+	/**
+	 * @return the bytes currently held by the buffers that are still open.
+	 */
+	public MemoryUsage getUsage() throws IOException {
+		long total = 0;
+		synchronized (buffers) {
+			for (RandomAccess buffer : buffers) {
+				if (!buffer.isClosed()) {
+					final long nbPages = (buffer.length() + PAGE_SIZE - 1) / PAGE_SIZE;
+					total += Math.max(nbPages, 1) * PAGE_SIZE;
+				}
+			}
+		}
+		final long heapBytes = Math.min(total, maxHeapBytes);
+		return new MemoryUsage(heapBytes, total - heapBytes);
+	}
+
+	private RandomAccess track(RandomAccess buffer) {
+		synchronized (buffers) {
+			buffers.add(buffer);
+		}
+		return buffer;
+	}
+}
@@ -0,0 +1,96 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+
+/**
+ * A fully parsed document held by a {@link DocumentCache}, with the original
+ * values of the entries that saving changes (crop boxes, page labels and
+ * outline), so that the document can be restored to its original state after
+ * each use.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+class CachedDocument {
+	private final COSDictionary catalog;
+
+	private final List<COSBase> originalCropBoxes;
+
+	private final COSBase originalOutlines;
+
+	private final COSBase originalPageLabels;
+
+	private final List<COSDictionary> pages;
+
+	/**
+	 * <code>true</code> iff this document is in the cache (and was not evicted
+	 * nor invalidated).
+	 */
+	boolean cached;
+
+	final PDDocument document;
+
+	final DocumentKey key;
+
+	/**
+	 * <code>true</code> iff a lease on this document is open.
+	 */
+	boolean leased;
+
+	final Path path;
+
+	final AccountingScratchFile scratchFile;
+
+	CachedDocument(Path path, DocumentKey key, PDDocument document, AccountingScratchFile scratchFile) {
+		this.path = requireNonNull(path);
+		this.key = requireNonNull(key);
+		this.document = requireNonNull(document);
+		this.scratchFile = requireNonNull(scratchFile);
+		cached = false;
+		leased = false;
+		catalog = document.getDocumentCatalog().getCOSObject();
+		originalOutlines = catalog.getItem(COSName.OUTLINES);
+		originalPageLabels = catalog.getItem(COSName.PAGE_LABELS);
+		pages = Lists.newArrayList();
+		originalCropBoxes = Lists.newArrayList();
+		for (PDPage page : document.getPages()) {
+			final COSDictionary pageDict = page.getCOSObject();
+			pages.add(pageDict);
+			originalCropBoxes.add(pageDict.getItem(COSName.CROP_BOX));
+		}
+	}
+
+	void close() throws IOException {
+		document.close();
+	}
+
+	/**
+	 * Puts back the original crop boxes, page labels and outline.
+	 */
+	void restore() {
+		catalog.setItem(COSName.OUTLINES, originalOutlines);
+		catalog.setItem(COSName.PAGE_LABELS, originalPageLabels);
+		for (int i = 0; i < pages.size(); ++i) {
+			pages.get(i).setItem(COSName.CROP_BOX, originalCropBoxes.get(i));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Path", path).add("Key", key).add("Cached", cached)
+				.add("Leased", leased).toString();
+	}
+}
@@ -0,0 +1,271 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNull;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A parser that reads the cross-reference table and the trailer, then goes to
+ * the catalog and resolves only the objects that this program reads: the page
+ * tree nodes, the page labels number tree, the outline items and the named
+ * destinations. Page contents, resources, images and other streams are never
+ * parsed, which makes opening a big (scanned) book cheap.
+ * </p>
+ * <p>
+ * The resulting document must only be used for reading these structures: any
+ * other object stays unresolved and thus appears as absent. It must never be
+ * saved.
+ * </p>
+ * <p>
+ * Encrypted documents are not supported: parsing fails with an
+ * {@link IOException}, and the caller should fall back to a full load.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class CatalogParser extends PDFParser {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(CatalogParser.class);
+
+	private int nbResolved;
+
+	public CatalogParser(RandomAccessRead source) throws IOException {
+		super(source);
+		nbResolved = 0;
+	}
+
+	public CatalogParser(RandomAccessRead source, ScratchFile scratchFile) throws IOException {
+		super(source, scratchFile);
+		nbResolved = 0;
+	}
+
+	/**
+	 * @return the number of indirect objects this parser has resolved.
+	 */
+	public int getNbResolved() {
+		return nbResolved;
+	}
+
+	@Override
+	protected void initialParse() throws IOException {
+		final COSDictionary trailer = retrieveTrailer();
+		if (trailer.containsKey(COSName.ENCRYPT)) {
+			throw new IOException("Encrypted document, can’t read the catalog only.");
+		}
+		final COSBase base = parseTrailerValuesDynamically(trailer);
+		if (!(base instanceof COSDictionary)) {
+			throw new IOException("Expected root dictionary, but got this: " + base);
+		}
+		final COSDictionary root = (COSDictionary) base;
+		if (isLenient() && !root.containsKey(COSName.TYPE)) {
+			root.setItem(COSName.TYPE, COSName.CATALOG);
+		}
+		resolvePageTree(root);
+		resolvePageLabels(root);
+		resolveOutline(root);
+		resolveNamedDestinations(root);
+		LOGGER.debug("Resolved {} objects.", nbResolved);
+		initialParseDone = true;
+	}
+
+	private void pushKids(COSDictionary node, Deque<COSDictionary> toVisit) throws IOException {
+		final COSArray kids = resolveArray(node, COSName.KIDS);
+		if (kids == null) {
+			return;
+		}
+		for (COSBase kid : kids) {
+			final COSBase resolved = resolve(kid);
+			if (resolved instanceof COSDictionary) {
+				toVisit.push((COSDictionary) resolved);
+			}
+		}
+	}
+
+	/**
+	 * Resolves the given object if it is an indirect reference, without resolving
+	 * the references it contains.
+	 *
+	 * @return <code>null</code> iff the object is <code>null</code> or the null
+	 *         object.
+	 */
+	private COSBase resolve(COSBase base) throws IOException {
+		final COSBase resolved;
+		if (base instanceof COSObject) {
+			final COSObject object = (COSObject) base;
+			if (object.getObject() == null) {
+				parseObjectDynamically(object, false);
+				++nbResolved;
+			}
+			resolved = object.getObject();
+		} else {
+			resolved = base;
+		}
+		return resolved instanceof COSNull ? null : resolved;
+	}
+
+	private COSArray resolveArray(COSDictionary dict, COSName key) throws IOException {
+		final COSBase resolved = resolveEntry(dict, key);
+		return resolved instanceof COSArray ? (COSArray) resolved : null;
+	}
+
+	/**
+	 * Resolves the entries of the array, without going deeper.
+	 */
+	private void resolveArrayEntries(COSArray array) throws IOException {
+		for (COSBase entry : array) {
+			resolve(entry);
+		}
+	}
+
+	/**
+	 * Resolves a destination, which may be a name, a string, an array whose first
+	 * element is a page, or a dictionary whose entry D is such an array.
+	 */
+	private void resolveDestination(COSBase dest) throws IOException {
+		final COSBase resolved = resolve(dest);
+		final COSBase array = resolved instanceof COSDictionary ? resolveEntry((COSDictionary) resolved, COSName.D)
+				: resolved;
+		if (array instanceof COSArray) {
+			resolveArrayEntries((COSArray) array);
+		}
+	}
+
+	private COSDictionary resolveDictionary(COSDictionary dict, COSName key) throws IOException {
+		final COSBase resolved = resolveEntry(dict, key);
+		return resolved instanceof COSDictionary ? (COSDictionary) resolved : null;
+	}
+
+	private COSBase resolveEntry(COSDictionary dict, COSName key) throws IOException {
+		return resolve(dict.getItem(key));
+	}
+
+	private void resolveNamedDestinations(COSDictionary root) throws IOException {
+		final COSDictionary dests = resolveDictionary(root, COSName.DESTS);
+		if (dests != null) {
+			for (COSName name : dests.keySet()) {
+				resolveDestination(dests.getItem(name));
+			}
+		}
+		final COSDictionary names = resolveDictionary(root, COSName.NAMES);
+		if (names == null) {
+			return;
+		}
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<COSDictionary> toVisit = new ArrayDeque<>();
+		final COSDictionary destsTree = resolveDictionary(names, COSName.DESTS);
+		if (destsTree != null) {
+			toVisit.push(destsTree);
+		}
+		while (!toVisit.isEmpty()) {
+			final COSDictionary node = toVisit.pop();
+			if (!visited.add(node)) {
+				continue;
+			}
+			final COSArray namesArray = resolveArray(node, COSName.NAMES);
+			if (namesArray != null) {
+				for (int i = 1; i < namesArray.size(); i += 2) {
+					resolveDestination(namesArray.get(i));
+				}
+			}
+			pushKids(node, toVisit);
+		}
+	}
+
+	private void resolveOutline(COSDictionary root) throws IOException {
+		final COSDictionary outlines = resolveDictionary(root, COSName.OUTLINES);
+		if (outlines == null) {
+			return;
+		}
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<COSDictionary> toVisit = new ArrayDeque<>();
+		toVisit.push(outlines);
+		while (!toVisit.isEmpty()) {
+			final COSDictionary item = toVisit.pop();
+			if (!visited.add(item)) {
+				continue;
+			}
+			resolveEntry(item, COSName.COUNT);
+			resolveEntry(item, COSName.TITLE);
+			resolveEntry(item, COSName.LAST);
+			resolveDestination(item.getItem(COSName.DEST));
+			final COSDictionary action = resolveDictionary(item, COSName.A);
+			if (action != null) {
+				resolveEntry(action, COSName.S);
+				resolveDestination(action.getItem(COSName.D));
+			}
+			final COSDictionary next = resolveDictionary(item, COSName.NEXT);
+			if (next != null) {
+				toVisit.push(next);
+			}
+			final COSDictionary first = resolveDictionary(item, COSName.FIRST);
+			if (first != null) {
+				toVisit.push(first);
+			}
+		}
+	}
+
+	private void resolvePageLabels(COSDictionary root) throws IOException {
+		final COSDictionary labels = resolveDictionary(root, COSName.PAGE_LABELS);
+		if (labels == null) {
+			return;
+		}
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<COSDictionary> toVisit = new ArrayDeque<>();
+		toVisit.push(labels);
+		while (!toVisit.isEmpty()) {
+			final COSDictionary node = toVisit.pop();
+			if (!visited.add(node)) {
+				continue;
+			}
+			final COSArray nums = resolveArray(node, COSName.NUMS);
+			if (nums != null) {
+				for (COSBase entry : nums) {
+					final COSBase resolved = resolve(entry);
+					if (resolved instanceof COSDictionary) {
+						final COSDictionary range = (COSDictionary) resolved;
+						resolveEntry(range, COSName.S);
+						resolveEntry(range, COSName.P);
+						resolveEntry(range, COSName.ST);
+					}
+				}
+			}
+			pushKids(node, toVisit);
+		}
+	}
+
+	private void resolvePageTree(COSDictionary root) throws IOException {
+		final COSDictionary pages = resolveDictionary(root, COSName.PAGES);
+		if (pages == null) {
+			throw new IOException("Missing page tree.");
+		}
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<COSDictionary> toVisit = new ArrayDeque<>();
+		toVisit.push(pages);
+		while (!toVisit.isEmpty()) {
+			final COSDictionary node = toVisit.pop();
+			if (!visited.add(node)) {
+				continue;
+			}
+			resolveEntry(node, COSName.TYPE);
+			resolveEntry(node, COSName.COUNT);
+			pushKids(node, toVisit);
+		}
+	}
+}
@@ -0,0 +1,248 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+
+import io.github.oliviercailloux.pdf_number_pages.utils.PdfUtils;
+
+/**
+ * <p>
+ * Thread-safe. A cache of fully parsed input documents, shared by the reader
+ * and the saver, so that saving again and again the same input (as auto save
+ * does) parses it only once.
+ * </p>
+ * <p>
+ * Entries are keyed by path, and checked, at each access, against the size,
+ * last modification time and fingerprint of the file (see
+ * {@link DocumentKey}): an entry whose file has changed is dropped and the
+ * file is parsed again.
+ * </p>
+ * <p>
+ * A document is leased to one user at a time (see {@link DocumentLease}). A
+ * user who asks for a document that is already leased gets a standalone copy,
+ * parsed anew and not cached.
+ * </p>
+ * <p>
+ * The memory held by the cache is bounded: each document weighs its file size
+ * (an estimate of the memory held by its parsed form), and the least recently
+ * used documents are evicted when the total weight exceeds the bound.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DocumentCache {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(DocumentCache.class);
+
+	/**
+	 * In access order, the least recently used first.
+	 */
+	private final LinkedHashMap<Path, CachedDocument> documents;
+
+	private long hits;
+
+	private long maxBytes;
+
+	private long misses;
+
+	private long totalBytes;
+
+	/**
+	 * Creates a cache bounded to a quarter of the maximal heap size of this JVM.
+	 */
+	public DocumentCache() {
+		this(Runtime.getRuntime().maxMemory() / 4);
+	}
+
+	public DocumentCache(long maxBytes) {
+		checkArgument(maxBytes >= 0);
+		this.maxBytes = maxBytes;
+		documents = new LinkedHashMap<>(16, 0.75f, true);
+		hits = 0;
+		misses = 0;
+		totalBytes = 0;
+	}
+
+	/**
+	 * Returns a lease on the cached document corresponding to the given path, if
+	 * it is up to date and not leased already; otherwise, parses the file using
+	 * the given policy, and caches the result if it fits.
+	 */
+	public DocumentLease acquire(Path path, MemoryPolicy memoryPolicy) throws IOException {
+		requireNonNull(memoryPolicy);
+		final Path key = path.toAbsolutePath().normalize();
+		final DocumentKey documentKey = DocumentKey.of(key);
+		final Optional<DocumentLease> cached = acquireCached(key, documentKey);
+		if (cached.isPresent()) {
+			return cached.get();
+		}
+
+		LOGGER.debug("Parsing {}.", key);
+		final AccountingScratchFile scratchFile = memoryPolicy.newScratchFile();
+		final PDDocument document = PdfUtils.load(key.toFile(), scratchFile);
+		final CachedDocument loaded;
+		try {
+			loaded = new CachedDocument(key, documentKey, document, scratchFile);
+		} catch (RuntimeException e) {
+			IOUtils.closeQuietly(document);
+			throw e;
+		}
+		synchronized (this) {
+			final long weight = documentKey.getSize();
+			if (documents.containsKey(key) || weight > maxBytes) {
+				return new DocumentLease(document, scratchFile);
+			}
+			loaded.cached = true;
+			loaded.leased = true;
+			documents.put(key, loaded);
+			totalBytes += weight;
+			evictIfNeeded();
+			return new DocumentLease(this, loaded);
+		}
+	}
+
+	/**
+	 * Returns a lease on the cached document corresponding to the given path, if
+	 * it is up to date and not leased already. Never parses the file.
+	 */
+	public Optional<DocumentLease> acquireIfPresent(Path path) throws IOException {
+		final Path key = path.toAbsolutePath().normalize();
+		synchronized (this) {
+			if (!documents.containsKey(key)) {
+				return Optional.empty();
+			}
+		}
+		return acquireCached(key, DocumentKey.of(key));
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the sum of the weights of the cached documents.
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Drops the document corresponding to the given path, if cached. If it is
+	 * leased, it is closed when its lease is.
+	 */
+	public synchronized void invalidate(Path path) {
+		final CachedDocument cachedDocument = documents.get(path.toAbsolutePath().normalize());
+		if (cachedDocument != null) {
+			remove(cachedDocument);
+		}
+	}
+
+	/**
+	 * Drops all documents.
+	 */
+	public synchronized void invalidateAll() {
+		for (CachedDocument cachedDocument : documents.values().toArray(new CachedDocument[documents.size()])) {
+			remove(cachedDocument);
+		}
+	}
+
+	/**
+	 * Evicts documents if needed to honor the new bound.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		checkArgument(maxBytes >= 0);
+		this.maxBytes = maxBytes;
+		evictIfNeeded();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return MoreObjects.toStringHelper(this).add("Documents", documents.keySet()).add("Total bytes", totalBytes)
+				.add("Max bytes", maxBytes).add("Hits", hits).add("Misses", misses).toString();
+	}
+
+	synchronized void release(CachedDocument cachedDocument) {
+		cachedDocument.leased = false;
+		if (cachedDocument.cached) {
+			evictIfNeeded();
+		} else {
+			closeQuietly(cachedDocument);
+		}
+	}
+
+	private Optional<DocumentLease> acquireCached(Path key, DocumentKey documentKey) {
+		synchronized (this) {
+			final CachedDocument cachedDocument = documents.get(key);
+			if (cachedDocument != null && !cachedDocument.key.equals(documentKey)) {
+				LOGGER.debug("File changed, invalidating {}.", cachedDocument);
+				remove(cachedDocument);
+			} else if (cachedDocument != null && !cachedDocument.leased) {
+				++hits;
+				cachedDocument.leased = true;
+				return Optional.of(new DocumentLease(this, cachedDocument));
+			}
+			++misses;
+			return Optional.empty();
+		}
+	}
+
+	private void closeQuietly(CachedDocument cachedDocument) {
+		try {
+			cachedDocument.close();
+		} catch (IOException e) {
+			LOGGER.warn("Closing cached document.", e);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used documents that are not leased until the
+	 * total weight honors the bound, if possible.
+	 */
+	private void evictIfNeeded() {
+		assert Thread.holdsLock(this);
+		final Iterator<CachedDocument> iterator = documents.values().iterator();
+		while (totalBytes > maxBytes && iterator.hasNext()) {
+			final CachedDocument cachedDocument = iterator.next();
+			if (!cachedDocument.leased) {
+				LOGGER.debug("Evicting {}.", cachedDocument);
+				iterator.remove();
+				cachedDocument.cached = false;
+				totalBytes -= cachedDocument.key.getSize();
+				closeQuietly(cachedDocument);
+			}
+		}
+	}
+
+	private void remove(CachedDocument cachedDocument) {
+		assert Thread.holdsLock(this);
+		documents.remove(cachedDocument.path);
+		cachedDocument.cached = false;
+		totalBytes -= cachedDocument.key.getSize();
+		if (!cachedDocument.leased) {
+			closeQuietly(cachedDocument);
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Immutable. Identifies the content of a file at some time: its size, its last
+ * modification time, and a fingerprint of its content. The fingerprint hashes
+ * the first and last {@value #SAMPLE_SIZE} bytes only (which, for a PDF,
+ * include the header, the last cross-reference section and the trailer), so
+ * that it stays cheap to compute for big files.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+class DocumentKey {
+	static final int SAMPLE_SIZE = 64 * 1024;
+
+	static DocumentKey of(Path path) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		final long size = attributes.size();
+		final Hasher hasher = Hashing.murmur3_128().newHasher();
+		hasher.putLong(size);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			putSample(channel, 0, hasher);
+			if (size > SAMPLE_SIZE) {
+				putSample(channel, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE), hasher);
+			}
+		}
+		return new DocumentKey(size, attributes.lastModifiedTime().toMillis(), hasher.hash());
+	}
+
+	private static void putSample(FileChannel channel, long position, Hasher hasher) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+		long current = position;
+		int read;
+		while (buffer.hasRemaining() && (read = channel.read(buffer, current)) != -1) {
+			current += read;
+		}
+		buffer.flip();
+		hasher.putBytes(buffer.array(), 0, buffer.limit());
+	}
+
+	private final HashCode fingerprint;
+
+	private final long lastModified;
+
+	private final long size;
+
+	private DocumentKey(long size, long lastModified, HashCode fingerprint) {
+		this.size = size;
+		this.lastModified = lastModified;
+		this.fingerprint = requireNonNull(fingerprint);
+	}
+
+	@Override
+	public boolean equals(Object o2) {
+		if (!(o2 instanceof DocumentKey)) {
+			return false;
+		}
+		final DocumentKey k2 = (DocumentKey) o2;
+		return size == k2.size && lastModified == k2.lastModified && fingerprint.equals(k2.fingerprint);
+	}
+
+	long getSize() {
+		return size;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(size, lastModified, fingerprint);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Size", size).add("Last modified", lastModified)
+				.add("Fingerprint", fingerprint).toString();
+	}
+}
@@ -0,0 +1,92 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * <p>
+ * Exclusive access to a loaded document, either held by a
+ * {@link DocumentCache} or standalone. Closing the lease gives the document
+ * back to the cache, after restoring its original state, or closes it if it is
+ * standalone.
+ * </p>
+ * <p>
+ * The user may modify the document and save it, but must not keep references
+ * to it (or its parts) after closing the lease.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DocumentLease implements Closeable {
+	/**
+	 * <code>null</code> iff standalone.
+	 */
+	private final DocumentCache cache;
+
+	/**
+	 * <code>null</code> iff standalone.
+	 */
+	private final CachedDocument cachedDocument;
+
+	private boolean closed;
+
+	private final PDDocument document;
+
+	private final AccountingScratchFile scratchFile;
+
+	/**
+	 * Creates a standalone lease, that closes the document when closed.
+	 */
+	public DocumentLease(PDDocument document, AccountingScratchFile scratchFile) {
+		this.document = requireNonNull(document);
+		this.scratchFile = requireNonNull(scratchFile);
+		cache = null;
+		cachedDocument = null;
+		closed = false;
+	}
+
+	DocumentLease(DocumentCache cache, CachedDocument cachedDocument) {
+		this.cache = requireNonNull(cache);
+		this.cachedDocument = requireNonNull(cachedDocument);
+		document = cachedDocument.document;
+		scratchFile = cachedDocument.scratchFile;
+		closed = false;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (cache == null) {
+			document.close();
+		} else {
+			cachedDocument.restore();
+			cache.release(cachedDocument);
+		}
+	}
+
+	public PDDocument getDocument() {
+		return document;
+	}
+
+	/**
+	 * @return the scratch file that buffers the document.
+	 */
+	public AccountingScratchFile getScratchFile() {
+		return scratchFile;
+	}
+
+	/**
+	 * @return <code>true</code> iff the document is held by a cache.
+	 */
+	public boolean isCached() {
+		return cache != null;
+	}
+}
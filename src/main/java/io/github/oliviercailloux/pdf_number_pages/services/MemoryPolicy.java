@@ -0,0 +1,130 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Optional;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>
+ * Immutable. Tells how a document load may use memory to buffer the streams of
+ * a PDF: in the heap, possibly up to some cap, and on a scratch file in some
+ * directory.
+ * </p>
+ * <p>
+ * With a heap cap and a scratch directory (mixed mode), the first bytes are
+ * buffered in the heap, and what exceeds the cap spills to the scratch file.
+ * This permits to run with a fixed maximal heap size while still loading big
+ * documents.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class MemoryPolicy {
+	/**
+	 * Mixed mode, using at most an eighth of the maximal heap size of this JVM per
+	 * load, and the default temporary directory for what exceeds.
+	 */
+	public static MemoryPolicy getDefault() {
+		return mixed(Runtime.getRuntime().maxMemory() / 8, Paths.get(System.getProperty("java.io.tmpdir")));
+	}
+
+	/**
+	 * Buffers everything in the heap, without cap.
+	 */
+	public static MemoryPolicy mainMemoryOnly() {
+		return new MemoryPolicy(Optional.empty(), Optional.empty());
+	}
+
+	/**
+	 * Buffers everything in the heap. A load that needs more than the given cap
+	 * fails.
+	 */
+	public static MemoryPolicy mainMemoryOnly(long maxHeapBytes) {
+		checkArgument(maxHeapBytes >= 0);
+		return new MemoryPolicy(Optional.of(maxHeapBytes), Optional.empty());
+	}
+
+	/**
+	 * Buffers in the heap up to the given cap, then in a scratch file in the given
+	 * directory.
+	 */
+	public static MemoryPolicy mixed(long maxHeapBytes, Path scratchDirectory) {
+		checkArgument(maxHeapBytes >= 0);
+		return new MemoryPolicy(Optional.of(maxHeapBytes), Optional.of(scratchDirectory));
+	}
+
+	/**
+	 * Buffers everything in a scratch file in the given directory.
+	 */
+	public static MemoryPolicy scratchFileOnly(Path scratchDirectory) {
+		return new MemoryPolicy(Optional.of(0L), Optional.of(scratchDirectory));
+	}
+
+	/**
+	 * Absent iff the heap is not capped.
+	 */
+	private final Optional<Long> maxHeapBytes;
+
+	/**
+	 * Absent iff no scratch file may be used.
+	 */
+	private final Optional<Path> scratchDirectory;
+
+	private MemoryPolicy(Optional<Long> maxHeapBytes, Optional<Path> scratchDirectory) {
+		this.maxHeapBytes = requireNonNull(maxHeapBytes);
+		this.scratchDirectory = requireNonNull(scratchDirectory);
+	}
+
+	/**
+	 * @return absent iff the heap is not capped.
+	 */
+	public Optional<Long> getMaxHeapBytes() {
+		return maxHeapBytes;
+	}
+
+	/**
+	 * @return absent iff no scratch file may be used.
+	 */
+	public Optional<Path> getScratchDirectory() {
+		return scratchDirectory;
+	}
+
+	/**
+	 * @return a new scratch file following this policy, to be used for a single
+	 *         load, and closed when the loaded document is closed.
+	 */
+	public AccountingScratchFile newScratchFile() throws IOException {
+		return new AccountingScratchFile(toMemoryUsageSetting());
+	}
+
+	public MemoryUsageSetting toMemoryUsageSetting() {
+		final MemoryUsageSetting setting;
+		if (!scratchDirectory.isPresent()) {
+			setting = maxHeapBytes.isPresent() ? MemoryUsageSetting.setupMainMemoryOnly(maxHeapBytes.get())
+					: MemoryUsageSetting.setupMainMemoryOnly();
+		} else if (maxHeapBytes.isPresent() && maxHeapBytes.get() == 0) {
+			setting = MemoryUsageSetting.setupTempFileOnly();
+		} else {
+			setting = MemoryUsageSetting.setupMixed(maxHeapBytes.orElse(Long.MAX_VALUE));
+		}
+		if (scratchDirectory.isPresent()) {
+			setting.setTempDir(scratchDirectory.get().toFile());
+		}
+		return setting;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Max heap bytes", maxHeapBytes)
+				.add("Scratch directory", scratchDirectory).toString();
+	}
+}
@@ -0,0 +1,39 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Immutable. The number of bytes a document load held to buffer the streams of
+ * a PDF, in the heap and on scratch disk.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class MemoryUsage {
+	private final long heapBytes;
+
+	private final long scratchBytes;
+
+	public MemoryUsage(long heapBytes, long scratchBytes) {
+		checkArgument(heapBytes >= 0);
+		checkArgument(scratchBytes >= 0);
+		this.heapBytes = heapBytes;
+		this.scratchBytes = scratchBytes;
+	}
+
+	public long getHeapBytes() {
+		return heapBytes;
+	}
+
+	public long getScratchBytes() {
+		return scratchBytes;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Heap bytes", heapBytes).add("Scratch bytes", scratchBytes)
+				.toString();
+	}
+}
@@ -0,0 +1,187 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.eventbus.Subscribe;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
+
+/**
+ * <p>
+ * Keeps the label of each page asked for, computed from label ranges, until a
+ * change to the ranges affects it.
+ * </p>
+ * <p>
+ * Listens to the ranges it is built over. An event that names a range (adding,
+ * removing, or setting the prefix, start or style of the range starting at
+ * some page index) drops only the labels of the pages from that index to the
+ * start of the next range: the pages of that range as it is after the change,
+ * which, after adding or removing, are the ones that changed range. Any other
+ * event drops all labels.
+ * </p>
+ * <p>
+ * Keeps the labels of the first pages in an array, and those of the pages
+ * beyond in a map, so that asking for the label of a page far away, such as
+ * one a bookmark targets beyond the end of the document, does not allocate for
+ * all the pages before it.
+ * </p>
+ * <p>
+ * Counts hits and misses, and the labels dropped. Not thread safe: as the
+ * ranges it listens to, meant to be used from the UI thread.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class PageLabelCache {
+	/**
+	 * The number of first pages whose labels the array keeps.
+	 */
+	private static final int DENSE_PAGES = 100_000;
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(PageLabelCache.class);
+
+	/**
+	 * @return a cache that listens to the given ranges.
+	 */
+	public static PageLabelCache newPageLabelCache(LabelRangesByIndex labelRangesByIndex) {
+		final PageLabelCache cache = new PageLabelCache(labelRangesByIndex);
+		labelRangesByIndex.register(cache);
+		return cache;
+	}
+
+	private long hits;
+
+	private long invalidations;
+
+	private final PdfPageLabelComputer labelComputer;
+
+	private final LabelRangesByIndex labelRangesByIndex;
+
+	/**
+	 * Indexed by page; an element is <code>null</code> iff the label of that page
+	 * is not cached. Grows to the greatest page index asked for, up to
+	 * {@link #DENSE_PAGES}.
+	 */
+	private String[] labels;
+
+	/**
+	 * The labels cached for the pages from {@link #DENSE_PAGES} on, by page index.
+	 */
+	private final NavigableMap<Integer, String> labelsBeyond;
+
+	private long misses;
+
+	private PageLabelCache(LabelRangesByIndex labelRangesByIndex) {
+		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
+		labelComputer = new PdfPageLabelComputer();
+		labels = new String[0];
+		labelsBeyond = new TreeMap<>();
+		hits = 0;
+		misses = 0;
+		invalidations = 0;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of labels dropped from the cache because of changes to
+	 *         the ranges.
+	 */
+	public long getInvalidations() {
+		return invalidations;
+	}
+
+	/**
+	 * @param pageIndex
+	 *            non negative, and at least the start of the first range.
+	 */
+	public String getLabel(int pageIndex) {
+		checkArgument(pageIndex >= 0);
+		final boolean dense = pageIndex < DENSE_PAGES;
+		final String cached;
+		if (dense) {
+			cached = pageIndex < labels.length ? labels[pageIndex] : null;
+		} else {
+			cached = labelsBeyond.get(pageIndex);
+		}
+		if (cached != null) {
+			++hits;
+			return cached;
+		}
+		++misses;
+		final String label = labelComputer.getLabelFromPageIndex(pageIndex, labelRangesByIndex);
+		if (dense) {
+			if (pageIndex >= labels.length) {
+				labels = Arrays.copyOf(labels, Math.min(Math.max(pageIndex + 1, 2 * labels.length), DENSE_PAGES));
+			}
+			labels[pageIndex] = label;
+		} else {
+			labelsBeyond.put(pageIndex, label);
+		}
+		return label;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	@Subscribe
+	public void modelChanged(ModelChanged event) {
+		final int from;
+		/**
+		 * <code>null</code> iff up to the last page.
+		 */
+		final Integer to;
+		switch (event.getOp()) {
+		case ADD:
+		case REMOVE:
+		case SET_PREFIX:
+		case SET_START:
+		case SET_STYLE:
+			from = event.getElementIndex();
+			to = labelRangesByIndex.higherKey(from);
+			break;
+		case ALL:
+			from = 0;
+			to = null;
+			break;
+		default:
+			throw new AssertionError();
+		}
+		int dropped = 0;
+		final int denseTo = to == null ? labels.length : Math.min(to, labels.length);
+		for (int i = Math.min(from, labels.length); i < denseTo; ++i) {
+			if (labels[i] != null) {
+				labels[i] = null;
+				++dropped;
+			}
+		}
+		final SortedMap<Integer, String> droppedBeyond = to == null ? labelsBeyond.tailMap(from)
+				: labelsBeyond.subMap(from, to);
+		dropped += droppedBeyond.size();
+		droppedBeyond.clear();
+		invalidations += dropped;
+		LOGGER.debug("Dropped {} labels after {}.", dropped, event);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Hits", hits).add("Misses", misses)
+				.add("Invalidations", invalidations).toString();
+	}
+}
@@ -0,0 +1,299 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+
+/**
+ * <p>
+ * An index from page labels, as printed on the pages, to the physical indices
+ * of the pages, built from label ranges.
+ * </p>
+ * <p>
+ * Keeps no table of pages. Within a range, the number in a label determines the
+ * page; so the index groups the ranges by prefix and style, and keeps, for each
+ * group, the intervals of numbers that the ranges of that group cover, sorted.
+ * Looking up a label parses its number in each style, for each prefix that the
+ * label starts with, then searches the intervals of that group, thus takes a
+ * time proportional to the length of the label times the logarithm of the
+ * number of ranges.
+ * </p>
+ * <p>
+ * When several pages have the same label, gives the first one. Reflects the
+ * ranges at the time of construction: must be rebuilt when they change.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class PageLabelIndex {
+	/**
+	 * An interval of numbers, in a group of ranges with the same prefix and style,
+	 * whose labels belong to consecutive pages of one range.
+	 */
+	private static class Segment {
+		/**
+		 * Exclusive.
+		 */
+		final long endNumber;
+
+		final int firstNumber;
+
+		/**
+		 * The page labelled with the first number.
+		 */
+		final int firstPage;
+
+		Segment(int firstNumber, long endNumber, int firstPage) {
+			this.firstNumber = firstNumber;
+			this.endNumber = endNumber;
+			this.firstPage = firstPage;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this).add("First number", firstNumber).add("End number", endNumber)
+					.add("First page", firstPage).toString();
+		}
+	}
+
+	/**
+	 * @return the number whose label in the given style is the given text, or -1
+	 *         if there is none. Zero for the style that has no numbers, if the
+	 *         text is empty.
+	 */
+	static int parseNumber(String text, RangeStyle style) {
+		final long candidate;
+		switch (style) {
+		case NONE:
+			return text.isEmpty() ? 0 : -1;
+		case DECIMAL:
+			candidate = parseDecimal(text);
+			break;
+		case LOWER:
+		case UPPER:
+			candidate = parseLetters(text);
+			break;
+		case ROMAN_LOWER:
+		case ROMAN_UPPER:
+			candidate = parseRoman(text);
+			break;
+		default:
+			throw new AssertionError();
+		}
+		if (candidate < 1 || candidate > Integer.MAX_VALUE) {
+			return -1;
+		}
+		final int number = (int) candidate;
+		/** Rejects the texts that merely look like labels, such as 007, or IIII. */
+		return new PdfPageLabelComputer().getLabel(number, style).equals(text) ? number : -1;
+	}
+
+	private static long parseDecimal(String text) {
+		if (text.isEmpty() || text.length() > 10) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = 0; i < text.length(); ++i) {
+			final char c = text.charAt(i);
+			if (c < '0' || c > '9') {
+				return -1;
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	/**
+	 * Reads the letter and counts its repetitions; the check against the
+	 * generated label ensures that they are all the same, and of the expected
+	 * case.
+	 */
+	private static long parseLetters(String text) {
+		if (text.isEmpty()) {
+			return -1;
+		}
+		final char letter = Character.toLowerCase(text.charAt(0));
+		if (letter < 'a' || letter > 'z') {
+			return -1;
+		}
+		return (long) (text.length() - 1) * 26 + (letter - 'a') + 1;
+	}
+
+	/**
+	 * Adds the values of the numerals, subtracting those that precede a greater
+	 * one; the check against the generated label ensures that the text is in the
+	 * form PDF viewers generate, and of the expected case.
+	 */
+	private static long parseRoman(String text) {
+		if (text.isEmpty()) {
+			return -1;
+		}
+		long value = 0;
+		for (int i = 0; i < text.length(); ++i) {
+			final int numeral = romanNumeral(text.charAt(i));
+			if (numeral == -1) {
+				return -1;
+			}
+			if (i + 1 < text.length() && romanNumeral(text.charAt(i + 1)) > numeral) {
+				value -= numeral;
+			} else {
+				value += numeral;
+			}
+			if (value > Integer.MAX_VALUE) {
+				return -1;
+			}
+		}
+		return value;
+	}
+
+	private static int romanNumeral(char c) {
+		switch (Character.toLowerCase(c)) {
+		case 'i':
+			return 1;
+		case 'v':
+			return 5;
+		case 'x':
+			return 10;
+		case 'l':
+			return 50;
+		case 'c':
+			return 100;
+		case 'd':
+			return 500;
+		case 'm':
+			return 1000;
+		default:
+			return -1;
+		}
+	}
+
+	/**
+	 * By prefix (empty for none), then by style, the segments of the ranges of
+	 * that group, by first number, disjoint.
+	 */
+	private final Map<String, Map<RangeStyle, NavigableMap<Integer, Segment>>> groups;
+
+	private int nbSegments;
+
+	/**
+	 * @param nbPages
+	 *            the number of pages of the document, which bounds the last
+	 *            range; or -1 if unknown, in which case the last range is
+	 *            considered unbounded.
+	 */
+	public PageLabelIndex(LabelRangesByIndex labelRangesByIndex, int nbPages) {
+		checkArgument(nbPages >= -1);
+		groups = new HashMap<>();
+		nbSegments = 0;
+		final Iterator<Entry<Integer, PDPageLabelRangeWithEquals>> iterator = labelRangesByIndex.entrySet()
+				.iterator();
+		Entry<Integer, PDPageLabelRangeWithEquals> next = iterator.hasNext() ? iterator.next() : null;
+		while (next != null) {
+			final Entry<Integer, PDPageLabelRangeWithEquals> current = next;
+			next = iterator.hasNext() ? iterator.next() : null;
+			final int firstPage = current.getKey();
+			final int endPage;
+			if (next != null) {
+				endPage = next.getKey();
+			} else if (nbPages != -1) {
+				endPage = nbPages;
+			} else {
+				endPage = Integer.MAX_VALUE;
+			}
+			if (endPage <= firstPage) {
+				continue;
+			}
+			final PDPageLabelRangeWithEquals range = current.getValue();
+			final RangeStyle style = range.getRangeStyle();
+			final NavigableMap<Integer, Segment> segments = groups
+					.computeIfAbsent(Strings.nullToEmpty(range.getPrefix()), (p) -> new EnumMap<>(RangeStyle.class))
+					.computeIfAbsent(style, (s) -> new TreeMap<>());
+			if (style == RangeStyle.NONE) {
+				/** All the pages of the range have the same label: only the first one counts. */
+				addUncovered(segments, 0, 1, firstPage);
+			} else {
+				final int start = range.getStart();
+				addUncovered(segments, start, (long) start + (endPage - firstPage), firstPage);
+			}
+		}
+	}
+
+	/**
+	 * @return the physical index of the first page that has the given label, or
+	 *         -1 if no page has that label.
+	 */
+	public int indexOf(String label) {
+		requireNonNull(label);
+		int first = -1;
+		for (int prefixLength = 0; prefixLength <= label.length(); ++prefixLength) {
+			final Map<RangeStyle, NavigableMap<Integer, Segment>> byStyle = groups
+					.get(label.substring(0, prefixLength));
+			if (byStyle == null) {
+				continue;
+			}
+			final String rest = label.substring(prefixLength);
+			for (Entry<RangeStyle, NavigableMap<Integer, Segment>> styleEntry : byStyle.entrySet()) {
+				final int number = parseNumber(rest, styleEntry.getKey());
+				if (number == -1) {
+					continue;
+				}
+				final Entry<Integer, Segment> segmentEntry = styleEntry.getValue().floorEntry(number);
+				if (segmentEntry == null || number >= segmentEntry.getValue().endNumber) {
+					continue;
+				}
+				final Segment segment = segmentEntry.getValue();
+				final int page = segment.firstPage + (number - segment.firstNumber);
+				if (first == -1 || page < first) {
+					first = page;
+				}
+			}
+		}
+		return first;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Groups", groups.size()).add("Segments", nbSegments)
+				.toString();
+	}
+
+	/**
+	 * Adds segments for the numbers of the given interval that no segment of the
+	 * group covers yet: as the ranges are added in the order of their pages, the
+	 * numbers already covered belong to earlier pages.
+	 *
+	 * @param pageOfStart
+	 *            the page labelled with the number <code>start</code>.
+	 */
+	private void addUncovered(NavigableMap<Integer, Segment> segments, int start, long end, int pageOfStart) {
+		final long boundedEnd = Math.min(end, (long) Integer.MAX_VALUE + 1);
+		long cursor = start;
+		while (cursor < boundedEnd) {
+			final Entry<Integer, Segment> covering = segments.floorEntry((int) cursor);
+			if (covering != null && covering.getValue().endNumber > cursor) {
+				cursor = covering.getValue().endNumber;
+				continue;
+			}
+			final Integer nextStart = cursor == Integer.MAX_VALUE ? null : segments.higherKey((int) cursor);
+			final long gapEnd = nextStart == null ? boundedEnd : Math.min(boundedEnd, nextStart);
+			segments.put((int) cursor, new Segment((int) cursor, gapEnd, pageOfStart + (int) (cursor - start)));
+			++nbSegments;
+			cursor = gapEnd;
+		}
+	}
+}
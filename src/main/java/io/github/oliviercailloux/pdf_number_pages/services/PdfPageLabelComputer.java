@@ -2,91 +2,125 @@ package io.github.oliviercailloux.pdf_number_pages.services;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
-import java.util.Locale;
 import java.util.Map.Entry;
 
-import com.google.common.base.Strings;
-
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
 import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
 
+/**
+ * <p>
+ * Computes the labels of pages, as PDFBox and PDF viewers do.
+ * </p>
+ * <p>
+ * The <code>append</code> methods write the label into a builder that the
+ * caller supplies and may reuse, thus, create no string.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
 public class PdfPageLabelComputer {
 	/**
-	 * Code copied from
-	 * org.apache.pdfbox.pdmodel.common.PDPageLabels.LabelGenerator, maven
-	 * coordinates org.apache.pdfbox:pdfbox:2.0.7, with minor changes.
+	 * Adapted from org.apache.pdfbox.pdmodel.common.PDPageLabels.LabelGenerator,
+	 * maven coordinates org.apache.pdfbox:pdfbox:2.0.7, to append to a builder
+	 * instead of creating strings.
 	 *
 	 * @author Igor Podolskiy (original)
-	 * @author Olivier Cailloux (minor changes)
+	 * @author Olivier Cailloux (changes)
 	 *
 	 */
 	private static class LabelGenerator {
 		/**
-		 * Lookup table used by the {@link #makeRomanLabel(int)} method.
+		 * Lookup table used by the {@link #appendRomanLabel} method, for lower case
+		 * labels.
 		 */
 		public static final String[][] ROMANS = new String[][] {
 				{ "", "i", "ii", "iii", "iv", "v", "vi", "vii", "viii", "ix" },
 				{ "", "x", "xx", "xxx", "xl", "l", "lx", "lxx", "lxxx", "xc" },
 				{ "", "c", "cc", "ccc", "cd", "d", "dc", "dcc", "dccc", "cm" } };
 
+		/**
+		 * Lookup table used by the {@link #appendRomanLabel} method, for upper case
+		 * labels.
+		 */
+		public static final String[][] ROMANS_UPPER = new String[][] {
+				{ "", "I", "II", "III", "IV", "V", "VI", "VII", "VIII", "IX" },
+				{ "", "X", "XX", "XXX", "XL", "L", "LX", "LXX", "LXXX", "XC" },
+				{ "", "C", "CC", "CCC", "CD", "D", "DC", "DCC", "DCCC", "CM" } };
+
 		/**
 		 * a..z, aa..zz, aaa..zzz ... labeling as described in PDF32000-1:2008, Table
-		 * 159, Page 375.
+		 * 159, Page 375. Appends nothing if the number is not positive.
 		 */
-		public static String makeLetterLabel(int num) {
-			StringBuilder buf = new StringBuilder();
-			int numLetters = num / 26 + Integer.signum(num % 26);
-			int letter = num % 26 + 26 * (1 - Integer.signum(num % 26)) + 'a' - 1;
+		public static void appendLetterLabel(StringBuilder builder, int num, boolean upperCase) {
+			if (num <= 0) {
+				return;
+			}
+			final int numLetters = (num - 1) / 26 + 1;
+			final char letter = (char) ((upperCase ? 'A' : 'a') + (num - 1) % 26);
 			for (int i = 0; i < numLetters; i++) {
-				buf.appendCodePoint(letter);
+				builder.append(letter);
 			}
-			return buf.toString();
 		}
 
-		public static String makeRomanLabel(int pIndex) {
-			int pageIndex = pIndex;
-			StringBuilder buf = new StringBuilder();
-			int power = 0;
-			while (power < 3 && pageIndex > 0) {
-				buf.insert(0, ROMANS[power][pageIndex % 10]);
-				pageIndex /= 10;
-				power++;
+		/**
+		 * Appends nothing if the number is not positive.
+		 */
+		public static void appendRomanLabel(StringBuilder builder, int num, boolean upperCase) {
+			if (num <= 0) {
+				return;
 			}
-			// Prepend as many m as there are thousands (which is
-			// incorrect by the roman numeral rules for numbers > 3999,
-			// but is unbounded and Adobe Acrobat does it this way).
-			// This code is somewhat inefficient for really big numbers,
-			// but those don't occur too often (and the numbers in those cases
-			// would be incomprehensible even if we and Adobe
-			// used strict Roman rules).
-			for (int i = 0; i < pageIndex; i++) {
-				buf.insert(0, 'm');
+			/**
+			 * As many m as there are thousands (which is incorrect by the roman numeral
+			 * rules for numbers > 3999, but is unbounded and Adobe Acrobat does it this
+			 * way), then the hundreds, tens and units, most significant first, so that
+			 * appending suffices.
+			 */
+			final int thousands = num / 1000;
+			final char m = upperCase ? 'M' : 'm';
+			final String[][] romans = upperCase ? ROMANS_UPPER : ROMANS;
+			for (int i = 0; i < thousands; i++) {
+				builder.append(m);
 			}
-			return buf.toString();
+			builder.append(romans[2][num / 100 % 10]);
+			builder.append(romans[1][num / 10 % 10]);
+			builder.append(romans[0][num % 10]);
 		}
 	}
 
-	public String getLabel(int virtualIndex, RangeStyle style) {
+	/**
+	 * Appends the label of the given number in the given style, without prefix.
+	 */
+	public void appendLabel(StringBuilder builder, int virtualIndex, RangeStyle style) {
 		switch (style) {
 		case NONE:
-			return "";
+			break;
 		case LOWER:
-			return LabelGenerator.makeLetterLabel(virtualIndex);
+			LabelGenerator.appendLetterLabel(builder, virtualIndex, false);
+			break;
 		case UPPER:
-			return LabelGenerator.makeLetterLabel(virtualIndex).toUpperCase(Locale.ENGLISH);
+			LabelGenerator.appendLetterLabel(builder, virtualIndex, true);
+			break;
 		case DECIMAL:
-			return String.valueOf(virtualIndex);
+			builder.append(virtualIndex);
+			break;
 		case ROMAN_LOWER:
-			return LabelGenerator.makeRomanLabel(virtualIndex);
+			LabelGenerator.appendRomanLabel(builder, virtualIndex, false);
+			break;
 		case ROMAN_UPPER:
-			return LabelGenerator.makeRomanLabel(virtualIndex).toUpperCase(Locale.ENGLISH);
+			LabelGenerator.appendRomanLabel(builder, virtualIndex, true);
+			break;
 		default:
 			throw new IllegalStateException();
 		}
 	}
 
-	public String getLabelFromPageIndex(int index, LabelRangesByIndex labelRangesByIndex) {
+	/**
+	 * Appends the label of the page at the given physical index, including the
+	 * prefix of its range.
+	 */
+	public void appendLabelFromPageIndex(StringBuilder builder, int index, LabelRangesByIndex labelRangesByIndex) {
 		/**
 		 * Example: ask for index 6 given range starting at absolute page index 4,
 		 * labelling starting at 20. Should consider virtual index 20 + (6 − 4) = 22.
@@ -98,11 +132,23 @@ public class PdfPageLabelComputer {
 		final int offset = index - rangeStartAbsolute;
 		assert offset >= 0;
 
-		final int rangeStart = range.getStart();
-		final int virtualIndex = rangeStart + offset;
-		final String pdfBoxStyle = range.getStyle();
-		final RangeStyle style = RangeStyle.fromPdfBoxStyle(pdfBoxStyle);
-		final String computedLabel = getLabel(virtualIndex, style);
-		return Strings.nullToEmpty(range.getPrefix()) + computedLabel;
+		final int virtualIndex = range.getStart() + offset;
+		final String prefix = range.getPrefix();
+		if (prefix != null) {
+			builder.append(prefix);
+		}
+		appendLabel(builder, virtualIndex, range.getRangeStyle());
+	}
+
+	public String getLabel(int virtualIndex, RangeStyle style) {
+		final StringBuilder builder = new StringBuilder();
+		appendLabel(builder, virtualIndex, style);
+		return builder.toString();
+	}
+
+	public String getLabelFromPageIndex(int index, LabelRangesByIndex labelRangesByIndex) {
+		final StringBuilder builder = new StringBuilder();
+		appendLabelFromPageIndex(builder, index, labelRangesByIndex);
+		return builder.toString();
 	}
 }
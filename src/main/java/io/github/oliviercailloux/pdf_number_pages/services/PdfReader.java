@@ -1,45 +1,135 @@
 package io.github.oliviercailloux.pdf_number_pages.services;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Consumer;
 
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
 import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
 import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+import org.apache.pdfbox.pdmodel.interactive.action.PDAction;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDNamedDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
+import io.github.oliviercailloux.pdf_number_pages.model.IOutlineNode;
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
 import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.utils.InterruptibleFileSource;
+import io.github.oliviercailloux.pdf_number_pages.utils.NamedDestinationIndex;
+import io.github.oliviercailloux.pdf_number_pages.utils.PageIndex;
+import io.github.oliviercailloux.pdf_number_pages.utils.PdfUtils;
 
 public class PdfReader {
+	/**
+	 * An outline item waiting to be read, with the node that will receive it.
+	 */
+	private static class PendingItem {
+		final int depth;
+
+		final PDOutlineItem item;
+
+		final IOutlineNode parent;
+
+		PendingItem(PDOutlineItem item, IOutlineNode parent, int depth) {
+			this.item = requireNonNull(item);
+			this.parent = requireNonNull(parent);
+			this.depth = depth;
+		}
+	}
+
+	public static final int DEFAULT_MAX_OUTLINE_DEPTH = 64;
+
+	public static final int DEFAULT_MAX_OUTLINE_NODES = 100_000;
+
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(PdfReader.class);
 
+	/**
+	 * Whether to parse only the catalog structures that we read, instead of the
+	 * whole document.
+	 */
+	private boolean catalogOnly;
+
 	private PDDocument current;
 
+	/**
+	 * <code>null</code> iff documents are not cached.
+	 */
+	private DocumentCache documentCache;
+
 	/**
 	 * not <code>null</code>
 	 */
 	private String errorMessage;
 
+	/**
+	 * <code>null</code> iff no load has ever succeeded.
+	 */
+	private MemoryUsage lastMemoryUsage;
+
 	private boolean lastOutlineReadSucceeded;
 
+	private int maxOutlineDepth;
+
+	private int maxOutlineNodes;
+
+	private MemoryPolicy memoryPolicy;
+
+	/**
+	 * The named destinations of the document being read, built when first needed.
+	 */
+	private NamedDestinationIndex namedDestinations;
+
 	private Outline outline;
 
 	private String outlineErrorMessage;
 
+	/**
+	 * The number of pages of the document last read, or -1 iff the last read
+	 * failed or none occurred.
+	 */
+	private int pageCount;
+
+	/**
+	 * The pages of the document being read.
+	 */
+	private PageIndex pageIndex;
+
+	/**
+	 * not <code>null</code>
+	 */
+	private Consumer<ReadStage> progressListener;
+
 	private LabelRangesByIndex ranges;
 
 	private boolean succeeded;
@@ -50,8 +140,27 @@ public class PdfReader {
 		ranges = null;
 		outline = null;
 		current = null;
+		pageIndex = null;
+		namedDestinations = null;
 		lastOutlineReadSucceeded = false;
 		outlineErrorMessage = "";
+		pageCount = -1;
+		catalogOnly = true;
+		memoryPolicy = MemoryPolicy.getDefault();
+		lastMemoryUsage = null;
+		documentCache = null;
+		maxOutlineDepth = DEFAULT_MAX_OUTLINE_DEPTH;
+		maxOutlineNodes = DEFAULT_MAX_OUTLINE_NODES;
+		progressListener = (stage) -> {
+			/** Nothing. */
+		};
+	}
+
+	/**
+	 * @return <code>null</code> iff documents are not cached.
+	 */
+	public DocumentCache getDocumentCache() {
+		return documentCache;
 	}
 
 	public String getErrorMessage() {
@@ -65,6 +174,27 @@ public class PdfReader {
 		return ranges;
 	}
 
+	/**
+	 * @return the bytes held in heap and on scratch disk by the last successful
+	 *         load, measured when reading finished, or absent iff no load has
+	 *         ever succeeded.
+	 */
+	public Optional<MemoryUsage> getLastMemoryUsage() {
+		return Optional.ofNullable(lastMemoryUsage);
+	}
+
+	public int getMaxOutlineDepth() {
+		return maxOutlineDepth;
+	}
+
+	public int getMaxOutlineNodes() {
+		return maxOutlineNodes;
+	}
+
+	public MemoryPolicy getMemoryPolicy() {
+		return memoryPolicy;
+	}
+
 	public Optional<Outline> getOutline() {
 		return Optional.ofNullable(outline);
 	}
@@ -73,6 +203,23 @@ public class PdfReader {
 		return outlineErrorMessage;
 	}
 
+	/**
+	 * @return the number of pages of the document last read, or -1 iff the last
+	 *         read failed or none occurred.
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * @return <code>true</code> iff this object reads only the catalog structures
+	 *         it needs (page tree, page labels, outline, named destinations)
+	 *         instead of loading the whole document. This is the default.
+	 */
+	public boolean isCatalogOnly() {
+		return catalogOnly;
+	}
+
 	public boolean outlineReadSucceeded() {
 		return lastOutlineReadSucceeded;
 	}
@@ -96,6 +243,7 @@ public class PdfReader {
 
 	public LabelRangesByIndex readLabelRanges(Path inputPath) {
 		assert inputPath != null;
+		pageCount = -1;
 		final File inputFile = inputPath.toFile();
 		if (!inputFile.exists()) {
 			errorMessage = "File not found";
@@ -103,26 +251,41 @@ public class PdfReader {
 			ranges = new LabelRangesByIndex();
 		} else {
 			LOGGER.debug("Start loading.");
-			try (PDDocument document = PDDocument.load(inputFile)) {
+			try (DocumentLease lease = load(inputFile)) {
+				final PDDocument document = lease.getDocument();
 				LOGGER.debug("Loaded.");
 				current = document;
+				pageIndex = new PageIndex(document.getPages());
+				namedDestinations = null;
 				assert !document.isEncrypted();
+				enter(ReadStage.READING_LABELS);
 				final PDDocumentCatalog catalog = document.getDocumentCatalog();
 				final PDPageLabels labels = catalog.getPageLabels();
 				read(labels);
-				final PDPageTree pages = document.getPages();
-				for (PDPage page : pages) {
-					LOGGER.debug("CB: {}.", page.getCropBox());
-					LOGGER.debug("AB: {}.", page.getArtBox());
-					LOGGER.debug("BB: {}.", page.getBBox());
-					LOGGER.debug("BlB: {}.", page.getBleedBox());
-					LOGGER.debug("TB: {}.", page.getTrimBox());
-					LOGGER.debug("MB: {}.", page.getMediaBox());
+				if (!catalogOnly) {
+					/** Boxes are not resolved when reading the catalog only. */
+					final PDPageTree pages = document.getPages();
+					for (PDPage page : pages) {
+						LOGGER.debug("CB: {}.", page.getCropBox());
+						LOGGER.debug("AB: {}.", page.getArtBox());
+						LOGGER.debug("BB: {}.", page.getBBox());
+						LOGGER.debug("BlB: {}.", page.getBleedBox());
+						LOGGER.debug("TB: {}.", page.getTrimBox());
+						LOGGER.debug("MB: {}.", page.getMediaBox());
+					}
 				}
+				enter(ReadStage.READING_OUTLINE);
 				final PDDocumentOutline pdOutline = catalog.getDocumentOutline();
 				read(pdOutline);
+				lastMemoryUsage = lease.getScratchFile().getUsage();
+				LOGGER.debug("Memory usage: {}.", lastMemoryUsage);
+				pageCount = document.getNumberOfPages();
 				errorMessage = "";
 				succeeded = true;
+			} catch (InterruptedIOException e) {
+				errorMessage = "Interrupted.";
+				succeeded = false;
+				LOGGER.debug("Reading input file.", e);
 			} catch (IOException e) {
 				LOGGER.error("Reading input file.", e);
 				errorMessage = e.getMessage();
@@ -132,21 +295,212 @@ public class PdfReader {
 		return ranges;
 	}
 
+	/**
+	 * @param catalogOnly
+	 *            <code>true</code> to read only the catalog structures this
+	 *            object needs, falling back to a full load if that fails (for
+	 *            example, for encrypted documents); <code>false</code> to always
+	 *            load the whole document.
+	 */
+	public void setCatalogOnly(boolean catalogOnly) {
+		this.catalogOnly = catalogOnly;
+	}
+
+	/**
+	 * @param documentCache
+	 *            the cache to take documents from, or <code>null</code> to parse
+	 *            them anew at each read. When reading the catalog only, a cached
+	 *            document is used if there is one, but the document read is not
+	 *            cached, as it is not fully parsed.
+	 */
+	public void setDocumentCache(DocumentCache documentCache) {
+		this.documentCache = documentCache;
+	}
+
+	/**
+	 * @param maxOutlineDepth
+	 *            the number of nesting levels beyond which reading an outline
+	 *            fails, as a protection against hostile documents; at least one.
+	 */
+	public void setMaxOutlineDepth(int maxOutlineDepth) {
+		checkArgument(maxOutlineDepth >= 1);
+		this.maxOutlineDepth = maxOutlineDepth;
+	}
+
+	/**
+	 * @param maxOutlineNodes
+	 *            the number of outline items beyond which reading an outline
+	 *            fails, as a protection against hostile documents; non negative.
+	 */
+	public void setMaxOutlineNodes(int maxOutlineNodes) {
+		checkArgument(maxOutlineNodes >= 0);
+		this.maxOutlineNodes = maxOutlineNodes;
+	}
+
+	/**
+	 * @param memoryPolicy
+	 *            how the next loads may buffer the document, not
+	 *            <code>null</code>.
+	 */
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = requireNonNull(memoryPolicy);
+	}
+
+	/**
+	 * @param progressListener
+	 *            notified, from the reading thread, each time a read enters a new
+	 *            stage.
+	 */
+	public void setProgressListener(Consumer<ReadStage> progressListener) {
+		this.progressListener = requireNonNull(progressListener);
+	}
+
 	public boolean succeeded() {
 		return succeeded;
 	}
 
+	/**
+	 * A cancellation checkpoint.
+	 *
+	 * @throws InterruptedIOException
+	 *             iff the current thread has been interrupted.
+	 */
+	private void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("Interrupted.");
+		}
+	}
+
+	private void enter(ReadStage stage) throws InterruptedIOException {
+		checkInterrupted();
+		progressListener.accept(stage);
+	}
+
+	/**
+	 * Finds the page targeted by the item, either directly or through a GoTo
+	 * action, by an explicit or a named destination.
+	 *
+	 * @return a valid page index.
+	 */
+	private int findDestinationPageIndex(PDOutlineItem pdOutline) throws ComplexOutlineException, IOException {
+		PDDestination dest = pdOutline.getDestination();
+		if (dest == null) {
+			final PDAction action = pdOutline.getAction();
+			if (action instanceof PDActionGoTo) {
+				dest = ((PDActionGoTo) action).getDestination();
+			}
+		}
+		final int pageNb;
+		if (dest instanceof PDNamedDestination) {
+			final String name = ((PDNamedDestination) dest).getNamedDestination();
+			pageNb = getNamedDestinations().indexOf(name);
+			if (pageNb == -1) {
+				throw new ComplexOutlineException("This outline targets an unknown named destination: " + name + ".");
+			}
+		} else if (dest instanceof PDPageDestination) {
+			final PDPageDestination pageDest = (PDPageDestination) dest;
+			final PDPage page = pageDest.getPage();
+			if (page == null) {
+				/** Malformed, but PDFBox reads this as a page index. */
+				final int number = pageDest.getPageNumber();
+				pageNb = number < pageIndex.size() ? number : -1;
+			} else {
+				pageNb = pageIndex.indexOf(page);
+			}
+			if (pageNb == -1) {
+				throw new ComplexOutlineException("This outline targets a page that is not in the document.");
+			}
+		} else {
+			throw new ComplexOutlineException("This outline is too complex for me.");
+		}
+		return pageNb;
+	}
+
+	private NamedDestinationIndex getNamedDestinations() {
+		if (namedDestinations == null) {
+			namedDestinations = new NamedDestinationIndex(current.getDocumentCatalog(), pageIndex);
+		}
+		return namedDestinations;
+	}
+
+	/**
+	 * Takes the document from the cache if it is there. Otherwise, reads only its
+	 * catalog if so configured, or loads it entirely, through the cache if there is
+	 * one.
+	 */
+	private DocumentLease load(File inputFile) throws IOException {
+		enter(ReadStage.LOADING);
+		if (documentCache != null) {
+			final Optional<DocumentLease> cached = documentCache.acquireIfPresent(inputFile.toPath());
+			if (cached.isPresent()) {
+				return cached.get();
+			}
+			if (!catalogOnly) {
+				return documentCache.acquire(inputFile.toPath(), memoryPolicy);
+			}
+		}
+		if (catalogOnly) {
+			try {
+				return loadCatalog(inputFile);
+			} catch (IOException e) {
+				LOGGER.info("Reading the catalog only failed, loading the whole document.", e);
+			}
+		}
+		final AccountingScratchFile scratchFile = memoryPolicy.newScratchFile();
+		return new DocumentLease(PdfUtils.load(inputFile, scratchFile), scratchFile);
+	}
+
+	private DocumentLease loadCatalog(File inputFile) throws IOException {
+		final AccountingScratchFile scratchFile = memoryPolicy.newScratchFile();
+		InterruptibleFileSource source = null;
+		try {
+			source = new InterruptibleFileSource(inputFile);
+			final CatalogParser parser = new CatalogParser(source, scratchFile);
+			parser.parse();
+			return new DocumentLease(parser.getPDDocument(), scratchFile);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(scratchFile);
+			IOUtils.closeQuietly(source);
+			throw e;
+		}
+	}
+
+	/**
+	 * Pushes the children of the given node on the stack, so that they pop in
+	 * order.
+	 *
+	 * @param depth
+	 *            the depth of the children, where the children of the document
+	 *            outline have depth one.
+	 */
+	private void pushChildren(PDOutlineNode pdNode, IOutlineNode node, int depth, Set<COSDictionary> visited,
+			Deque<PendingItem> toRead) throws ComplexOutlineException {
+		final List<PDOutlineItem> children = Lists.newArrayList();
+		for (PDOutlineItem child = pdNode.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (!visited.add(child.getCOSObject())) {
+				throw new ComplexOutlineException("This outline contains a loop.");
+			}
+			if (visited.size() > maxOutlineNodes) {
+				throw new ComplexOutlineException("This outline has more than " + maxOutlineNodes + " items.");
+			}
+			children.add(child);
+		}
+		if (!children.isEmpty() && depth > maxOutlineDepth) {
+			throw new ComplexOutlineException("This outline is deeper than " + maxOutlineDepth + " levels.");
+		}
+		for (PDOutlineItem child : Lists.reverse(children)) {
+			toRead.push(new PendingItem(child, node, depth));
+		}
+	}
+
 	private void read(PDDocumentOutline pdOutline) throws IOException {
 		outline = new Outline();
 		if (pdOutline == null) {
 			lastOutlineReadSucceeded = true;
 			return;
 		}
-		final Iterable<PDOutlineItem> children = pdOutline.children();
 		try {
-			for (PDOutlineItem child : children) {
-				outline.addAsLastChild(readOutline(child));
-			}
+			readOutline(pdOutline, outline);
 			lastOutlineReadSucceeded = true;
 		} catch (@SuppressWarnings("unused") ComplexOutlineException e) {
 			outline = null;
@@ -156,20 +510,32 @@ public class PdfReader {
 	}
 
 	private OutlineNode readOutline(PDOutlineItem pdOutline) throws ComplexOutlineException, IOException {
-		final PDPage dest = pdOutline.findDestinationPage(current);
-		if (dest == null) {
-			throw new ComplexOutlineException("This outline is too complex for me.");
-		}
-		final int pageNb = current.getPages().indexOf(dest);
+		final int pageNb = findDestinationPageIndex(pdOutline);
 		final String title = pdOutline.getTitle();
 		final PdfBookmark bookmark = new PdfBookmark(title, pageNb);
-		final OutlineNode readOutline = OutlineNode.newOutline(bookmark);
-		final Iterable<PDOutlineItem> children = pdOutline.children();
-		LOGGER.debug("Reading children of: {}.", title);
-		for (PDOutlineItem child : children) {
-			readOutline.addAsLastChild(readOutline(child));
+		return OutlineNode.newOutline(bookmark);
+	}
+
+	/**
+	 * Reads the items of the given outline into the target, in depth-first order,
+	 * using an explicit stack rather than recursion, so that a deep outline can’t
+	 * overflow the stack.
+	 *
+	 * @throws ComplexOutlineException
+	 *             if the outline contains a loop, or exceeds the maximal depth or
+	 *             number of items.
+	 */
+	private void readOutline(PDDocumentOutline pdOutline, Outline target) throws ComplexOutlineException, IOException {
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<PendingItem> toRead = new ArrayDeque<>();
+		pushChildren(pdOutline, target, 1, visited, toRead);
+		while (!toRead.isEmpty()) {
+			checkInterrupted();
+			final PendingItem pending = toRead.pop();
+			final OutlineNode node = readOutline(pending.item);
+			pending.parent.addAsLastChild(node);
+			pushChildren(pending.item, node, pending.depth + 1, visited, toRead);
 		}
-		return readOutline;
 	}
 
 }
@@ -2,14 +2,18 @@ package io.github.oliviercailloux.pdf_number_pages.services;
 
 import static java.util.Objects.requireNonNull;
 
+import java.util.Optional;
+
 import com.google.common.base.MoreObjects;
 
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
-import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineSnapshot;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfPartSnapshot;
 
 /**
- * Immutable.
+ * Immutable. Holds snapshots of what was read, which the model shares once it
+ * is set to it.
  *
  * @author Olivier Cailloux
  *
@@ -20,25 +24,25 @@ public class ReadEvent {
 
 	private String errorMessageOutline;
 
+	private final Optional<MemoryUsage> memoryUsage;
+
 	private boolean outlineReadSucceeded;
 
-	private final PdfPart pdf;
+	private final PdfPartSnapshot pdf;
 
 	private boolean succeeded;
 
 	public ReadEvent(LabelRangesByIndex labelRangesByIndex, Outline outline, boolean succeeded, String errorMessage,
-			boolean outlineReadSucceeded, String errorMessageOutline) {
-		pdf = new PdfPart();
+			boolean outlineReadSucceeded, String errorMessageOutline, Optional<MemoryUsage> memoryUsage) {
 		requireNonNull(labelRangesByIndex);
+		requireNonNull(outline);
 		this.succeeded = succeeded;
 		this.errorMessage = requireNonNull(errorMessage);
 		this.outlineReadSucceeded = outlineReadSucceeded;
 		this.errorMessageOutline = requireNonNull(errorMessageOutline);
-		pdf.setLabelRangesByIndex(LabelRangesByIndex.deepImmutableCopy(labelRangesByIndex));
-		requireNonNull(outline);
-		final Outline newOutline = new Outline();
-		newOutline.addCopies(outline.getChildren());
-		pdf.setOutline(newOutline);
+		this.memoryUsage = requireNonNull(memoryUsage);
+		pdf = new PdfPartSnapshot(labelRangesByIndex.snapshot(), Optional.of(Outline.snapshotOf(outline)),
+				Optional.empty());
 	}
 
 	public String getErrorMessage() {
@@ -53,11 +57,19 @@ public class ReadEvent {
 		return pdf.getLabelRangesByIndex();
 	}
 
-	public Outline getOutline() {
+	/**
+	 * @return the bytes held in heap and on scratch disk by the load, absent if
+	 *         the load failed.
+	 */
+	public Optional<MemoryUsage> getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	public OutlineSnapshot getOutline() {
 		return pdf.getOutline().get();
 	}
 
-	public PdfPart getPdf() {
+	public PdfPartSnapshot getPdf() {
 		return pdf;
 	}
 
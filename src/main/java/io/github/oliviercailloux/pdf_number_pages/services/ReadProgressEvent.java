@@ -0,0 +1,38 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Immutable. Posted when a read of the given input path enters the given stage.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class ReadProgressEvent {
+
+	private final Path inputPath;
+
+	private final ReadStage stage;
+
+	public ReadProgressEvent(Path inputPath, ReadStage stage) {
+		this.inputPath = requireNonNull(inputPath);
+		this.stage = requireNonNull(stage);
+	}
+
+	public Path getInputPath() {
+		return inputPath;
+	}
+
+	public ReadStage getStage() {
+		return stage;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Input path", inputPath).add("Stage", stage).toString();
+	}
+}
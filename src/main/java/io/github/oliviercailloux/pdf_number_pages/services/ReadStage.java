@@ -0,0 +1,5 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+public enum ReadStage {
+	LOADING, READING_LABELS, READING_OUTLINE
+}
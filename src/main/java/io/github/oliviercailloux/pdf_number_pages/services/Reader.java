@@ -1,23 +1,51 @@
 package io.github.oliviercailloux.pdf_number_pages.services;
 
+import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
 
+/**
+ * Controls a reader thread. When the input path changes, this object submits a
+ * read job to the reader thread (cancelling the previous one if it is still
+ * running). The job reads into fresh objects, posting progress events. When it
+ * finishes, this object replaces the content of the model by what has been
+ * read and posts a {@link ReadEvent}. Progress events, model changes and read
+ * events all happen using the read events firing executor, thus, on the UI
+ * thread if that executor is set accordingly.
+ *
+ * @author Olivier Cailloux
+ *
+ */
 public class Reader {
 
-	@SuppressWarnings("unused")
-	private static final Logger LOGGER = LoggerFactory.getLogger(Reader.class);
+	static final Logger LOGGER = LoggerFactory.getLogger(Reader.class);
+
+	/**
+	 * <code>null</code> iff documents are not cached.
+	 */
+	private DocumentCache documentCache;
+
+	private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
+			Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Reader").build()));
 
 	/**
 	 * Not <code>null</code>, not empty.
@@ -28,9 +56,21 @@ public class Reader {
 
 	private ReadEvent lastReadEvent;
 
+	/**
+	 * Not <code>null</code>.
+	 */
+	private MemoryPolicy memoryPolicy;
+
 	private Outline outline;
 
-	private final PdfReader pdfReader = new PdfReader();
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Executor readEventsFiringExecutor;
+
+	private ListenableFuture<ReadEvent> submittedJob;
+
+	private ReaderRunnableCallback submittedJobCallback;
 
 	final EventBus eventBus = new EventBus(Reader.class.getCanonicalName());
 
@@ -39,6 +79,29 @@ public class Reader {
 		labelRangesByIndex = null;
 		outline = null;
 		lastReadEvent = null;
+		memoryPolicy = MemoryPolicy.getDefault();
+		readEventsFiringExecutor = MoreExecutors.directExecutor();
+		submittedJob = null;
+		submittedJobCallback = null;
+		documentCache = null;
+	}
+
+	/**
+	 * Cancels the running job, if any, and stops the reader thread.
+	 */
+	public void close() {
+		if (submittedJob != null) {
+			submittedJobCallback.cancel();
+			submittedJob.cancel(true);
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * @return <code>null</code> iff documents are not cached.
+	 */
+	public DocumentCache getDocumentCache() {
+		return documentCache;
 	}
 
 	public Path getInputPath() {
@@ -49,59 +112,151 @@ public class Reader {
 		return labelRangesByIndex;
 	}
 
+	/**
+	 * If the caller is processing a given event of the UI thread, this object’s
+	 * last job will not change concurrently.
+	 *
+	 * @return the last read job as an optional future.
+	 */
+	public Optional<Future<ReadEvent>> getLastJob() {
+		return Optional.ofNullable(submittedJob);
+	}
+
+	/**
+	 * @return the bytes held in heap and on scratch disk by the last read, or
+	 *         absent iff no read has ever succeeded to load its document.
+	 */
+	public Optional<MemoryUsage> getLastMemoryUsage() {
+		return lastReadEvent == null ? Optional.empty() : lastReadEvent.getMemoryUsage();
+	}
+
 	public Optional<ReadEvent> getLastReadEvent() {
 		return Optional.ofNullable(lastReadEvent);
 	}
 
+	public MemoryPolicy getMemoryPolicy() {
+		return memoryPolicy;
+	}
+
 	public Optional<Outline> getOutline() {
 		return Optional.ofNullable(outline);
 	}
 
+	/**
+	 * @return <code>true</code> iff a read job has been submitted and its result
+	 *         has not yet been put into the model.
+	 */
+	public boolean isReading() {
+		return submittedJob != null;
+	}
+
 	public void register(Object listener) {
 		eventBus.register(requireNonNull(listener));
 	}
 
+	/**
+	 * @param documentCache
+	 *            the cache shared with the saver, or <code>null</code> for no
+	 *            cache. Applies to the jobs submitted after this call.
+	 */
+	public void setDocumentCache(DocumentCache documentCache) {
+		this.documentCache = documentCache;
+	}
+
+	/**
+	 * Posts an {@link InputPathChanged} event and submits a read job for the new
+	 * path. The model keeps its current content until the job finishes.
+	 */
 	public void setInputPath(Path inputPath) {
 		final Path oldInputPath = this.inputPath;
 		if (oldInputPath.equals(inputPath)) {
 			return;
 		}
+		checkState(labelRangesByIndex != null && outline != null);
 		this.inputPath = requireNonNull(inputPath);
 		final InputPathChanged event = new InputPathChanged(this.inputPath);
 		LOGGER.debug("Firing: {}.", event);
 		eventBus.post(event);
+		if (documentCache != null) {
+			/** Frees memory: the old input is not likely to be saved any more. */
+			documentCache.invalidate(oldInputPath);
+		}
 
-		LOGGER.debug("Input path changed, reading.");
-		final String errorMessage;
-		final boolean succeeded;
-		/**
-		 * We must change the outline before the label ranges, because otherwise we get
-		 * an outline (that will possibly try to refresh) with a label ranges content
-		 * that does not match it, in particular, which might be empty, which might make
-		 * the outline view unhappy if it relies on the label ranges.
-		 */
-		outline.clear();
-
-		labelRangesByIndex.clear();
-		final LabelRangesByIndex readLabelRanges = pdfReader.readLabelRanges(this.inputPath);
-		labelRangesByIndex.putAll(readLabelRanges);
-		errorMessage = pdfReader.getErrorMessage();
-		succeeded = pdfReader.succeeded();
-		final boolean outlineReadSucceeded = pdfReader.outlineReadSucceeded();
-		if (outlineReadSucceeded) {
-			final Outline readOutline = pdfReader.getOutline().get();
-			outline.addCopies(readOutline.getChildren());
+		assert (submittedJob == null) == (submittedJobCallback == null);
+		if (submittedJob != null) {
+			LOGGER.debug("Cancelling read.");
+			submittedJobCallback.cancel();
+			submittedJob.cancel(true);
 		}
-		lastReadEvent = new ReadEvent(labelRangesByIndex, outline, succeeded, errorMessage, outlineReadSucceeded,
-				pdfReader.getOutlineErrorMessage());
-		eventBus.post(lastReadEvent);
+		LOGGER.debug("Input path changed, reading.");
+		submittedJobCallback = new ReaderRunnableCallback(this, readEventsFiringExecutor);
+		submittedJob = executor.submit(new ReaderRunnable(this.inputPath, memoryPolicy, documentCache,
+				submittedJobCallback));
+		Futures.addCallback(submittedJob, submittedJobCallback, readEventsFiringExecutor);
 	}
 
 	public void setLabelRangesByIndex(LabelRangesByIndex labelRangesByIndex) {
 		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
 	}
 
+	/**
+	 * Applies to the jobs submitted after this call.
+	 */
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = requireNonNull(memoryPolicy);
+	}
+
 	public void setOutline(Outline outline) {
 		this.outline = outline;
 	}
+
+	/**
+	 * @param readEventsFiringExecutor
+	 *            the executor that delivers progress events and read results,
+	 *            thereby changing the model; typically, one that executes on the
+	 *            UI thread.
+	 */
+	public void setReadEventsFiringExecutor(Executor readEventsFiringExecutor) {
+		this.readEventsFiringExecutor = requireNonNull(readEventsFiringExecutor);
+	}
+
+	void post(Object event) {
+		eventBus.post(requireNonNull(event));
+	}
+
+	/**
+	 * Replaces the content of the model by the given result, and posts it.
+	 */
+	void setRead(ReadEvent event) {
+		submittedJob = null;
+		submittedJobCallback = null;
+		/**
+		 * Each part notifies its listeners once, after both parts changed. The label
+		 * ranges notify first, so that the outline (that will possibly try to refresh)
+		 * sees label ranges that match it: otherwise, they might be empty, which might
+		 * make the outline view unhappy if it relies on the label ranges.
+		 */
+		labelRangesByIndex.beginTransaction();
+		outline.beginTransaction();
+		try {
+			outline.clear();
+			labelRangesByIndex.clear();
+			/**
+			 * The model shares the ranges of the event, as it replaces its ranges rather
+			 * than modifying them, and the nodes of the outline get the snapshots they
+			 * are copied from.
+			 */
+			labelRangesByIndex.putAll(event.getLabelRangesByIndex());
+			outline.addCopies(event.getOutline());
+		} finally {
+			try {
+				labelRangesByIndex.commit();
+			} finally {
+				outline.commit();
+			}
+		}
+		lastReadEvent = event;
+		LOGGER.debug("Firing: {}.", event);
+		eventBus.post(lastReadEvent);
+	}
 }
@@ -0,0 +1,60 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+
+/**
+ * <p>
+ * Reads a document into fresh model objects, which the resulting event copies.
+ * Never touches the model of the application.
+ * </p>
+ * <p>
+ * When interrupted, the read stops at the next checkpoint and the result
+ * reports a failure.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class ReaderRunnable implements Callable<ReadEvent> {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReaderRunnable.class);
+
+	private final Path inputPath;
+
+	private final PdfReader pdfReader = new PdfReader();
+
+	/**
+	 * @param documentCache
+	 *            <code>null</code> for no cache.
+	 */
+	public ReaderRunnable(Path inputPath, MemoryPolicy memoryPolicy, DocumentCache documentCache,
+			ReaderRunnableCallback callback) {
+		this.inputPath = requireNonNull(inputPath);
+		pdfReader.setMemoryPolicy(memoryPolicy);
+		pdfReader.setDocumentCache(documentCache);
+		requireNonNull(callback);
+		pdfReader.setProgressListener((stage) -> callback.progress(new ReadProgressEvent(inputPath, stage)));
+	}
+
+	@Override
+	public ReadEvent call() throws Exception {
+		LOGGER.debug("Proceeding to read: {}.", inputPath);
+		final LabelRangesByIndex read = pdfReader.readLabelRanges(inputPath);
+		/** Null if loading failed. */
+		final LabelRangesByIndex readLabelRanges = read == null ? new LabelRangesByIndex() : read;
+		final boolean outlineReadSucceeded = pdfReader.outlineReadSucceeded();
+		final Outline readOutline = outlineReadSucceeded ? pdfReader.getOutline().get() : new Outline();
+		return new ReadEvent(readLabelRanges, readOutline, pdfReader.succeeded(), pdfReader.getErrorMessage(),
+				outlineReadSucceeded, pdfReader.getOutlineErrorMessage(), pdfReader.getLastMemoryUsage());
+	}
+
+}
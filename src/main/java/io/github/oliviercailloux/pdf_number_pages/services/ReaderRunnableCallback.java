@@ -0,0 +1,69 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.FutureCallback;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+
+/**
+ * Delivers the progress and the result of a read job to the reader, using the
+ * reader’s events firing executor, unless the job has been cancelled.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class ReaderRunnableCallback implements FutureCallback<ReadEvent> {
+	private final Executor executor;
+
+	private volatile boolean proceed;
+
+	private final Reader reader;
+
+	public ReaderRunnableCallback(Reader reader, Executor executor) {
+		this.reader = requireNonNull(reader);
+		this.executor = requireNonNull(executor);
+		proceed = true;
+	}
+
+	public void cancel() {
+		proceed = false;
+	}
+
+	@Override
+	public void onFailure(Throwable t) {
+		if (!proceed || t instanceof CancellationException) {
+			return;
+		}
+		Reader.LOGGER.error("Problem while reading.", t);
+		final String errorMessage = MoreObjects.firstNonNull(t.getMessage(), t.getClass().getSimpleName());
+		final ReadEvent event = new ReadEvent(new LabelRangesByIndex(), new Outline(), false, errorMessage, false, "",
+				Optional.empty());
+		reader.setRead(event);
+	}
+
+	@Override
+	public void onSuccess(ReadEvent result) {
+		if (!proceed) {
+			return;
+		}
+		reader.setRead(result);
+	}
+
+	/**
+	 * May be called from any thread.
+	 */
+	void progress(ReadProgressEvent event) {
+		executor.execute(() -> {
+			if (proceed) {
+				reader.post(event);
+			}
+		});
+	}
+}
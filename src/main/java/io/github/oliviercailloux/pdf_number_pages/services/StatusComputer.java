@@ -2,17 +2,21 @@ package io.github.oliviercailloux.pdf_number_pages.services;
 
 import static java.util.Objects.requireNonNull;
 
+import java.nio.file.Path;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfPartSnapshot;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveJob;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.Saver;
 import io.github.oliviercailloux.pdf_number_pages.services.saver.SaverFinishedEvent;
@@ -35,6 +39,23 @@ import io.github.oliviercailloux.pdf_number_pages.services.saver.SaverFinishedEv
  * <p>
  * This object also gives the changed status, compared to the last read.
  * </p>
+ * <p>
+ * Both statuses first compare the revision of the model with the one it had
+ * when read or when saved, which takes constant time; if they differ, the edits
+ * may have cancelled out, so this object compares a snapshot of the model with
+ * the one read or saved: their hashes, which are cached, and only if those are
+ * equal, their contents.
+ * </p>
+ * <p>
+ * The listeners of the model run this object on the thread that modifies the
+ * model, where it takes a snapshot; it compares it on that thread by default,
+ * or on another one, see {@link #setComparisonsExecutor(Executor)}. As the
+ * snapshots share their structure, comparing costs little next to taking the
+ * snapshot, which stays on the thread that modifies the model: comparing
+ * elsewhere spares that thread at most the comparisons, and handing them over
+ * costs some time as well. Until the comparisons for the current revision of
+ * the model are done, this object reports it as changed and not saved.
+ * </p>
  *
  * @author Olivier Cailloux
  *
@@ -43,16 +64,59 @@ public class StatusComputer {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(StatusComputer.class);
 
-	private boolean hasChanged;
+	/**
+	 * @param revision
+	 *            the revision of the model.
+	 * @param current
+	 *            a snapshot of the model, or <code>null</code> if the given
+	 *            revisions are equal.
+	 * @param snapshotRevision
+	 *            the revision of the model when the given snapshot was taken, or
+	 *            -1 if unknown.
+	 * @return <code>true</code> iff the model has the content of the given
+	 *         snapshot.
+	 */
+	private static boolean hasContentOf(long revision, PdfPartSnapshot current, long snapshotRevision,
+			PdfPartSnapshot snapshot) {
+		if (snapshotRevision != -1 && snapshotRevision == revision) {
+			return true;
+		}
+		/** Compares the hashes of the outlines first, which are cached. */
+		return current.equals(snapshot);
+	}
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Executor comparisonsExecutor;
+
+	/**
+	 * The revision of the model the statuses have been computed for, or -1 iff
+	 * none.
+	 */
+	private volatile long computedRevision;
+
+	private volatile boolean hasChanged;
 
-	private boolean isSaved;
+	private volatile boolean isSaved;
 
 	private PdfPart pdf;
 
 	private Reader reader;
 
+	/**
+	 * The revision of the model after the last read, or -1 iff no read has
+	 * occurred yet since this object listens to the reader.
+	 */
+	private long readRevision;
+
 	private Saver saver;
 
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Executor statusEventsFiringExecutor;
+
 	final EventBus eventBus = new EventBus(StatusComputer.class.getCanonicalName());
 
 	public StatusComputer() {
@@ -61,6 +125,10 @@ public class StatusComputer {
 		saver = null;
 		reader = null;
 		hasChanged = false;
+		readRevision = -1;
+		computedRevision = -1;
+		comparisonsExecutor = MoreExecutors.directExecutor();
+		statusEventsFiringExecutor = MoreExecutors.directExecutor();
 	}
 
 	public Reader getReader() {
@@ -72,34 +140,41 @@ public class StatusComputer {
 	}
 
 	/**
+	 * Must be called from the thread that modifies the model.
+	 *
 	 * @return <code>false</code> if no read has occurred yet.
 	 */
 	public boolean hasChangedSinceLastRead() {
-		return hasChanged;
+		if (!reader.getLastReadEvent().isPresent()) {
+			return false;
+		}
+		return hasChanged || computedRevision != pdf.getRevision();
 	}
 
+	/**
+	 * Must be called from the thread that modifies the model.
+	 */
 	public boolean isSaved() {
-		return isSaved;
+		return isSaved && computedRevision == pdf.getRevision();
 	}
 
 	@Subscribe
 	public void modelChanged(@SuppressWarnings("unused") ModelChanged event) {
-		final Optional<SaverFinishedEvent> lastSaveJobResult = saver.getLastFinishedJobResult();
 		LOGGER.debug("Model changed: {}.", event);
-		if (lastSaveJobResult.isPresent()) {
-			setSavedStatus(lastSaveJobResult.get());
-		}
-		setChangedStatus();
+		update();
 	}
 
 	@Subscribe
 	public void outlineChanged(@SuppressWarnings("unused") OutlineChanged event) {
-		final Optional<SaverFinishedEvent> lastSaveJobResult = saver.getLastFinishedJobResult();
 		LOGGER.debug("Model changed: {}.", event);
-		if (lastSaveJobResult.isPresent()) {
-			setSavedStatus(lastSaveJobResult.get());
-		}
-		setChangedStatus();
+		update();
+	}
+
+	@Subscribe
+	public void readEvent(ReadEvent event) {
+		LOGGER.debug("Read: {}.", event);
+		readRevision = pdf.getRevision();
+		update();
 	}
 
 	public void register(Object listener) {
@@ -108,7 +183,19 @@ public class StatusComputer {
 
 	@Subscribe
 	public void saverFinished(@SuppressWarnings("unused") SaverFinishedEvent event) {
-		setSavedStatus(event);
+		update();
+	}
+
+	/**
+	 * @param comparisonsExecutor
+	 *            the executor that compares the model with what was read and
+	 *            saved, which must run the comparisons one at a time, in the order
+	 *            they are submitted; typically, a dedicated thread; not
+	 *            <code>null</code>. Defaults to the thread that modifies the
+	 *            model.
+	 */
+	public void setComparisonsExecutor(Executor comparisonsExecutor) {
+		this.comparisonsExecutor = requireNonNull(comparisonsExecutor);
 	}
 
 	public void setPdf(PdfPart pdf) {
@@ -118,6 +205,7 @@ public class StatusComputer {
 
 	public void setReader(Reader reader) {
 		this.reader = requireNonNull(reader);
+		reader.register(this);
 	}
 
 	public void setSaver(Saver saver) {
@@ -125,29 +213,56 @@ public class StatusComputer {
 		saver.register(this);
 	}
 
-	private void setChangedStatus() {
-		final Optional<ReadEvent> lastReadEventOpt = reader.getLastReadEvent();
-		if (!lastReadEventOpt.isPresent()) {
-			return;
-		}
-		final ReadEvent lastReadEvent = lastReadEventOpt.get();
-		final PdfPart readPdf = lastReadEvent.getPdf();
-		hasChanged = pdf.equals(readPdf);
+	/**
+	 * @param statusEventsFiringExecutor
+	 *            the executor that delivers the saved status changes; typically,
+	 *            one that executes on the UI thread; not <code>null</code>.
+	 *            Defaults to the thread of the comparisons.
+	 */
+	public void setStatusEventsFiringExecutor(Executor statusEventsFiringExecutor) {
+		this.statusEventsFiringExecutor = requireNonNull(statusEventsFiringExecutor);
 	}
 
-	private void setSavedStatus(SaverFinishedEvent event) {
+	private void setSavedStatus(boolean saved) {
 		final boolean wasSaved = isSaved;
-		final SaveJob job = event.getSaveJob();
-		final PdfPart savedPdf = job.getPdf();
-		final boolean eqPdf = pdf.equals(savedPdf);
-		final boolean eqInp = job.getInputPath().equals(reader.getInputPath());
-		final boolean eqOutp = job.getOutputPath().equals(saver.getOutputPath());
-		final boolean noErr = event.getErrorMessage().isEmpty();
-		isSaved = eqPdf && eqInp && eqOutp && noErr;
-		LOGGER.debug("Tested equality: {}, {}, {}, {}.", eqPdf, eqInp, eqOutp, noErr);
-
-		if (wasSaved != isSaved) {
-			eventBus.post(new SavedStatusChanged(isSaved));
+		isSaved = saved;
+		if (wasSaved != saved) {
+			statusEventsFiringExecutor.execute(() -> eventBus.post(new SavedStatusChanged(saved)));
 		}
 	}
+
+	/**
+	 * Captures, on the thread that modifies the model, what the statuses depend
+	 * on, which takes a time that does not depend on the size of the model, then
+	 * submits the comparisons.
+	 */
+	private void update() {
+		final long revision = pdf.getRevision();
+		final Optional<ReadEvent> lastRead = reader.getLastReadEvent();
+		final long lastReadRevision = readRevision;
+		final Optional<SaverFinishedEvent> lastSave = saver.getLastFinishedJobResult();
+		final Path inputPath = reader.getInputPath();
+		final Path outputPath = saver.getOutputPath();
+		final boolean readRevisionDiffers = lastRead.isPresent() && lastReadRevision != revision;
+		final boolean savedRevisionDiffers = lastSave.isPresent()
+				&& lastSave.get().getSaveJob().getSourceRevision() != revision;
+		/** Only when a revision differs do the comparisons need the content. */
+		final PdfPartSnapshot current = readRevisionDiffers || savedRevisionDiffers ? pdf.snapshot() : null;
+		comparisonsExecutor.execute(() -> {
+			if (lastRead.isPresent()) {
+				hasChanged = !hasContentOf(revision, current, lastReadRevision, lastRead.get().getPdf());
+			}
+			if (lastSave.isPresent()) {
+				final SaverFinishedEvent event = lastSave.get();
+				final SaveJob job = event.getSaveJob();
+				final boolean eqPdf = hasContentOf(revision, current, job.getSourceRevision(), job.getPdf());
+				final boolean eqInp = job.getInputPath().equals(inputPath);
+				final boolean eqOutp = job.getOutputPath().equals(outputPath);
+				final boolean noErr = event.getErrorMessage().isEmpty();
+				LOGGER.debug("Tested equality: {}, {}, {}, {}.", eqPdf, eqInp, eqOutp, noErr);
+				setSavedStatus(eqPdf && eqInp && eqOutp && noErr);
+			}
+			computedRevision = revision;
+		});
+	}
 }
@@ -1,13 +1,23 @@
 package io.github.oliviercailloux.pdf_number_pages.services.saver;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.eventbus.EventBus;
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.github.oliviercailloux.pdf_number_pages.model.ModelChanged;
 import io.github.oliviercailloux.pdf_number_pages.model.OutlineChanged;
@@ -16,24 +26,112 @@ import io.github.oliviercailloux.pdf_number_pages.services.InputPathChanged;
 import io.github.oliviercailloux.pdf_number_pages.services.Reader;
 
 /**
+ * <p>
  * Users must ensure that auto save is disabled whenever the model (things to be
  * saved) is empty.
+ * </p>
+ * <p>
+ * Changes are coalesced: a save starts once no change has been requested
+ * during the quiet period, or once the oldest unsaved change is as old as the
+ * maximum staleness, whichever comes first. Explicit saves (any save started by
+ * another caller of the saver) take priority: they absorb the pending auto
+ * save, and an auto save that falls due while an explicit save runs waits for
+ * it to finish instead of cancelling it.
+ * </p>
+ * <p>
+ * This object must be used from a single thread, the one the auto saves
+ * executor runs on (which must also be the thread the saver fires its events
+ * on). That executor must be set before enabling auto save. The counters may
+ * be read from any thread.
+ * </p>
  *
  * @author Olivier Cailloux
  *
  */
 public class AutoSaver {
+	public static final Duration DEFAULT_MAX_STALENESS = Duration.ofSeconds(5);
+
+	public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(500);
+
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(AutoSaver.class);
 
 	private boolean autoSave;
 
+	/**
+	 * <code>null</code> iff not set yet.
+	 */
+	private Executor autoSavesExecutor;
+
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * Incremented whenever the scheduled task changes, so that a task that fires
+	 * after having been replaced does nothing.
+	 */
+	private long generation;
+
+	/**
+	 * <code>true</code> iff the last save the saver started is an auto save.
+	 */
+	private boolean lastStartedIsAuto;
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Duration maxStaleness;
+
 	private PdfPart pdf;
 
+	/**
+	 * <code>true</code> iff some requested change has not been submitted to the
+	 * saver yet.
+	 */
+	private boolean pending;
+
+	/**
+	 * The {@link System#nanoTime()} of the oldest pending change, meaningful iff
+	 * pending.
+	 */
+	private long pendingSince;
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Duration quietPeriod;
+
 	private Reader reader;
 
+	private final AtomicLong requestedCount = new AtomicLong();
+
 	private Saver saver;
 
+	/**
+	 * <code>true</code> iff a save started by the saver has not finished yet.
+	 */
+	private boolean saving;
+
+	/**
+	 * <code>null</code> iff no auto save is scheduled.
+	 */
+	private ScheduledFuture<?> scheduled;
+
+	/**
+	 * <code>true</code> iff this object is asking the saver to save.
+	 */
+	private boolean submitting;
+
+	private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder().setNameFormat("AutoSaver").setDaemon(true).build());
+
+	/**
+	 * <code>true</code> iff an auto save fell due while an explicit save was
+	 * running.
+	 */
+	private boolean waitingForExplicitSave;
+
+	private final AtomicLong writtenCount = new AtomicLong();
+
 	final EventBus eventBus = new EventBus(AutoSaver.class.getCanonicalName());
 
 	public AutoSaver() {
@@ -41,26 +139,86 @@ public class AutoSaver {
 		autoSave = false;
 		reader = null;
 		saver = null;
+		autoSavesExecutor = null;
+		quietPeriod = DEFAULT_QUIET_PERIOD;
+		maxStaleness = DEFAULT_MAX_STALENESS;
+		generation = 0;
+		pending = false;
+		pendingSince = 0;
+		scheduled = null;
+		saving = false;
+		submitting = false;
+		lastStartedIsAuto = false;
+		waitingForExplicitSave = false;
 	}
 
 	public boolean autoSaves() {
 		return autoSave;
 	}
 
+	/**
+	 * Drops any pending auto save and stops the timer.
+	 */
+	public void close() {
+		unschedule();
+		pending = false;
+		waitingForExplicitSave = false;
+		timer.shutdownNow();
+	}
+
+	/**
+	 * @return the number of requested auto saves that have been merged into
+	 *         another save (an auto save requested earlier, or an explicit save)
+	 *         instead of causing their own.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	public Duration getMaxStaleness() {
+		return maxStaleness;
+	}
+
+	public Duration getQuietPeriod() {
+		return quietPeriod;
+	}
+
 	public Reader getReader() {
 		return reader;
 	}
 
+	/**
+	 * @return the number of changes that have called for an auto save (while
+	 *         auto save was on).
+	 */
+	public long getRequestedCount() {
+		return requestedCount.get();
+	}
+
 	public Saver getSaver() {
 		return saver;
 	}
 
+	/**
+	 * @return the number of auto saves that have been written successfully.
+	 */
+	public long getWrittenCount() {
+		return writtenCount.get();
+	}
+
 	@Subscribe
 	public void inputPathChanged(@SuppressWarnings("unused") InputPathChanged event) {
 		LOGGER.debug("Input path changed, disabling auto save.");
 		setAutoSave(false);
 	}
 
+	/**
+	 * @return <code>true</code> iff some change waits to be auto saved.
+	 */
+	public boolean isPending() {
+		return pending;
+	}
+
 	@Subscribe
 	public void modelChanged(@SuppressWarnings("unused") ModelChanged event) {
 		LOGGER.debug("Model changed, saving perhaps.");
@@ -87,23 +245,84 @@ public class AutoSaver {
 		eventBus.register(requireNonNull(listener));
 	}
 
+	@Subscribe
+	public void saverFinished(SaverFinishedEvent event) {
+		saving = false;
+		if (lastStartedIsAuto && event.getErrorMessage().isEmpty()) {
+			writtenCount.incrementAndGet();
+		}
+		if (waitingForExplicitSave) {
+			waitingForExplicitSave = false;
+			LOGGER.debug("Explicit save finished, auto saving.");
+			submit();
+		}
+	}
+
+	/**
+	 * Enabling auto save saves immediately (unless an explicit save is running);
+	 * disabling it drops any pending auto save.
+	 *
+	 * @throws IllegalStateException
+	 *             if enabling auto save while the auto saves executor is not set.
+	 */
 	public void setAutoSave(boolean autoSave) {
 		if (autoSave) {
 			checkState(!pdf.getLabelRangesByIndex().isEmpty());
+			checkState(autoSavesExecutor != null, "The auto saves executor must be set.");
 		}
 		final boolean wasAuto = this.autoSave;
 		this.autoSave = autoSave;
 		if (wasAuto != autoSave) {
 			eventBus.post(new AutoSaveChanged(autoSave));
-			savePerhaps();
+			if (autoSave) {
+				request();
+				saveOrWait();
+			} else {
+				unschedule();
+				pending = false;
+				waitingForExplicitSave = false;
+			}
 		}
 	}
 
+	/**
+	 * @param autoSavesExecutor
+	 *            the executor that starts the auto saves when they fall due,
+	 *            which must run on the thread that uses this object and modifies
+	 *            the model, typically the UI thread; not <code>null</code>. The
+	 *            saves take snapshots of the model, thus may not run on the timer
+	 *            thread.
+	 */
+	public void setAutoSavesExecutor(Executor autoSavesExecutor) {
+		this.autoSavesExecutor = requireNonNull(autoSavesExecutor);
+	}
+
+	/**
+	 * @param maxStaleness
+	 *            the longest time a change may wait to be auto saved while other
+	 *            changes keep coming, not negative. An explicit save that runs
+	 *            when this delay expires may delay the auto save further.
+	 */
+	public void setMaxStaleness(Duration maxStaleness) {
+		checkArgument(!maxStaleness.isNegative());
+		this.maxStaleness = maxStaleness;
+	}
+
 	public void setPdf(PdfPart pdf) {
 		this.pdf = requireNonNull(pdf);
 		pdf.register(this);
 	}
 
+	/**
+	 * @param quietPeriod
+	 *            how long no change must be requested before an auto save
+	 *            starts, not negative.
+	 */
+	public void setQuietPeriod(Duration quietPeriod) {
+		checkArgument(!quietPeriod.isNegative());
+		this.quietPeriod = quietPeriod;
+	}
+
 	public void setReader(Reader reader) {
 		this.reader = requireNonNull(reader);
 		this.reader.register(this);
@@ -114,10 +333,81 @@ public class AutoSaver {
 		saver.register(this);
 	}
 
+	@Subscribe
+	public void startedSaving(@SuppressWarnings("unused") StartedSavingEvent event) {
+		saving = true;
+		lastStartedIsAuto = submitting;
+		if (!submitting && pending) {
+			LOGGER.debug("Explicit save started, dropping pending auto save.");
+			unschedule();
+			pending = false;
+			waitingForExplicitSave = false;
+			coalescedCount.incrementAndGet();
+		}
+	}
+
+	private void fallDue(long scheduledGeneration) {
+		if (scheduledGeneration != generation || !pending) {
+			return;
+		}
+		scheduled = null;
+		saveOrWait();
+	}
+
+	private void request() {
+		requestedCount.incrementAndGet();
+		if (pending) {
+			coalescedCount.incrementAndGet();
+		} else {
+			pending = true;
+			pendingSince = System.nanoTime();
+		}
+	}
+
+	private void saveOrWait() {
+		if (saving && !lastStartedIsAuto) {
+			LOGGER.debug("Explicit save running, waiting for it.");
+			waitingForExplicitSave = true;
+			return;
+		}
+		submit();
+	}
+
 	private void savePerhaps() {
-		if (autoSave) {
-			assert !pdf.getLabelRangesByIndex().isEmpty();
+		if (!autoSave) {
+			return;
+		}
+		request();
+		if (waitingForExplicitSave) {
+			return;
+		}
+		unschedule();
+		final long now = System.nanoTime();
+		final long untilStale = pendingSince + maxStaleness.toNanos() - now;
+		final long delay = Math.max(0, Math.min(quietPeriod.toNanos(), untilStale));
+		final long scheduledGeneration = generation;
+		scheduled = timer.schedule(() -> autoSavesExecutor.execute(() -> fallDue(scheduledGeneration)), delay,
+				TimeUnit.NANOSECONDS);
+	}
+
+	private void submit() {
+		assert autoSave;
+		assert !pdf.getLabelRangesByIndex().isEmpty();
+		unschedule();
+		pending = false;
+		submitting = true;
+		try {
 			saver.save();
+		} finally {
+			submitting = false;
+		}
+	}
+
+	private void unschedule() {
+		++generation;
+		if (scheduled != null) {
+			scheduled.cancel(false);
+			scheduled = null;
 		}
 	}
 }
@@ -4,25 +4,36 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
 import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 
-import io.github.oliviercailloux.pdf_number_pages.model.IOutlineNode;
-import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineSnapshot;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.utils.PageIndex;
 
 public class OutlineToPdf {
 	private PDDocument document;
 
+	/**
+	 * <code>null</code> iff the document is <code>null</code>.
+	 */
+	private PageIndex pageIndex;
+
 	public OutlineToPdf() {
 		document = null;
+		pageIndex = null;
 	}
 
-	public PDDocumentOutline asDocumentOutline(IOutlineNode outline) {
+	public PDDocumentOutline asDocumentOutline(OutlineSnapshot outline) {
 		final PDDocumentOutline pdDocumentOutline = new PDDocumentOutline();
-		final Iterable<OutlineNode> children = outline.getChildren();
-		for (OutlineNode child : children) {
+		final Iterable<OutlineSnapshot> children = outline.getChildren();
+		for (OutlineSnapshot child : children) {
 			final PDOutlineItem asOutlineItem = asOutlineItem(child);
 			pdDocumentOutline.addLast(asOutlineItem);
 		}
@@ -30,19 +41,46 @@ public class OutlineToPdf {
 	}
 
 	/**
+	 * Uses an explicit stack rather than recursion, so that a deep outline can’t
+	 * overflow the stack. Items are linked bottom-up, each item receiving its
+	 * children once their own sub-trees are complete, as PDFBox expects to
+	 * maintain the counts of open items. Does not rely on the identity of the
+	 * nodes, as a snapshot may contain the same node at several positions.
+	 *
 	 * @param outline
 	 *            not empty.
 	 * @return the equivalent PDOutlineItem, not <code>null</code>.
 	 */
-	public PDOutlineItem asOutlineItem(OutlineNode outline) {
+	public PDOutlineItem asOutlineItem(OutlineSnapshot outline) {
 		checkArgument(outline.getBookmark().isPresent());
-		final PdfBookmark bookmark = outline.getBookmark().get();
-		final PDOutlineItem item = asOutlineItem(bookmark);
-		final Iterable<OutlineNode> children = outline.getChildren();
-		for (OutlineNode child : children) {
-			item.addLast(asOutlineItem(child));
+		/**
+		 * The items in pre-order, thus, each item before the items of its
+		 * descendants, and the positions of their parents in that list (-1 for the
+		 * first one).
+		 */
+		final List<PDOutlineItem> items = new ArrayList<>();
+		final List<Integer> parents = new ArrayList<>();
+		/** Pairs of a node to visit and the position of the item of its parent. */
+		final Deque<OutlineSnapshot> toVisit = new ArrayDeque<>();
+		final Deque<Integer> toVisitParents = new ArrayDeque<>();
+		toVisit.push(outline);
+		toVisitParents.push(-1);
+		while (!toVisit.isEmpty()) {
+			final OutlineSnapshot node = toVisit.pop();
+			checkArgument(node.getBookmark().isPresent());
+			final int position = items.size();
+			items.add(asOutlineItem(node.getBookmark().get()));
+			parents.add(toVisitParents.pop());
+			for (OutlineSnapshot child : node.getChildren().reverse()) {
+				toVisit.push(child);
+				toVisitParents.push(position);
+			}
 		}
-		return item;
+		/** In reverse pre-order, the last child of a node comes first: thus, addFirst. */
+		for (int position = items.size() - 1; position >= 1; --position) {
+			items.get(parents.get(position)).addFirst(items.get(position));
+		}
+		return items.get(0);
 	}
 
 	public PDDocument getDocument() {
@@ -51,13 +89,14 @@ public class OutlineToPdf {
 
 	public void setDocument(PDDocument document) {
 		this.document = requireNonNull(document);
+		pageIndex = new PageIndex(document.getPages());
 	}
 
 	private PDOutlineItem asOutlineItem(PdfBookmark bookmark) {
 		checkState(document != null);
 		final PDOutlineItem item = new PDOutlineItem();
 		item.setTitle(bookmark.getTitle());
-		item.setDestination(document.getPage(bookmark.getPhysicalPageNumber()));
+		item.setDestination(pageIndex.getPage(bookmark.getPhysicalPageNumber()));
 		return item;
 	}
 }
@@ -1,17 +1,28 @@
 package io.github.oliviercailloux.pdf_number_pages.services.saver;
 
+import static java.util.Objects.requireNonNull;
+
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageTree;
@@ -20,7 +31,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
-import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineSnapshot;
+import io.github.oliviercailloux.pdf_number_pages.services.AccountingScratchFile;
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentLease;
+import io.github.oliviercailloux.pdf_number_pages.services.MemoryPolicy;
+import io.github.oliviercailloux.pdf_number_pages.services.MemoryUsage;
 import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
 import io.github.oliviercailloux.pdf_number_pages.utils.PdfUtils;
 
@@ -28,30 +44,83 @@ public class PdfSaver {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(PdfSaver.class);
 
+	/**
+	 * <code>null</code> iff input documents are not cached.
+	 */
+	private DocumentCache documentCache;
+
 	/**
 	 * not <code>null</code>
 	 */
 	private String errorMessage;
 
+	/**
+	 * <code>true</code> iff saves append an incremental update to the original
+	 * bytes instead of rewriting the whole document.
+	 */
+	private boolean incremental;
+
+	/**
+	 * <code>null</code> iff no save has ever succeeded.
+	 */
+	private MemoryUsage lastMemoryUsage;
+
+	private MemoryPolicy memoryPolicy;
+
 	private final OutlineToPdf outlineToPdf;
 
+	/**
+	 * Asked just before a save writes its output whether it may, or
+	 * <code>null</code> iff saves may always write their output.
+	 */
+	private BooleanSupplier outputGuard;
+
 	private boolean succeeded;
 
 	public PdfSaver() {
 		errorMessage = "";
 		succeeded = false;
 		outlineToPdf = new OutlineToPdf();
+		memoryPolicy = MemoryPolicy.getDefault();
+		lastMemoryUsage = null;
+		documentCache = null;
+		incremental = false;
+		outputGuard = null;
+	}
+
+	/**
+	 * @return <code>null</code> iff input documents are not cached.
+	 */
+	public DocumentCache getDocumentCache() {
+		return documentCache;
 	}
 
 	public String getErrorMessage() {
 		return errorMessage;
 	}
 
+	/**
+	 * @return the bytes held in heap and on scratch disk by the document loaded
+	 *         for the last successful save, measured when writing finished, or
+	 *         absent iff no save has ever succeeded.
+	 */
+	public Optional<MemoryUsage> getLastMemoryUsage() {
+		return Optional.ofNullable(lastMemoryUsage);
+	}
+
+	public MemoryPolicy getMemoryPolicy() {
+		return memoryPolicy;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
 	public void save(SaveJob job) {
 		assert job != null;
 		final Path inputPath = job.getInputPath();
 		final Path outputPath = job.getOutputPath();
-		final Optional<Outline> outlineOpt = job.getOutline();
+		final Optional<OutlineSnapshot> outlineOpt = job.getOutline();
 		final Optional<BBox> cropBoxOpt = job.getCropBox();
 		final boolean overwrite = job.getOverwrite();
 		final LabelRangesByIndex labelRangesByIndex = job.getLabelRangesByIndex();
@@ -60,15 +129,23 @@ public class PdfSaver {
 		if (!inputFile.exists()) {
 			errorMessage = "File not found";
 			succeeded = false;
+		} else if (!overwrite && Files.exists(outputPath)) {
+			errorMessage = "Already exists: " + outputPath;
+			succeeded = false;
 		} else {
 			LOGGER.debug("Reading.");
-			try (PDDocument document = PDDocument.load(inputPath.toFile())) {
+			try (DocumentLease lease = open(inputFile)) {
+				final PDDocument document = lease.getDocument();
+				/** The length of the input as parsed, which the cache has checked. */
+				final long inputLength = inputFile.length();
+				checkInterrupted();
 				if (cropBoxOpt.isPresent()) {
 					final BBox cropBox = cropBoxOpt.get();
 					final PDPageTree pages = document.getPages();
 					for (PDPage page : pages) {
 						page.setCropBox(PdfUtils.asRectangle(cropBox));
 					}
+					checkInterrupted();
 				}
 
 				if (document.isEncrypted()) {
@@ -76,41 +153,51 @@ public class PdfSaver {
 					succeeded = false;
 				}
 				labelRangesByIndex.addToDocument(document);
+				checkInterrupted();
 				if (outlineOpt.isPresent()) {
 					outlineToPdf.setDocument(document);
-					final Outline outline = outlineOpt.get();
+					final OutlineSnapshot outline = outlineOpt.get();
 					final PDDocumentOutline pdDocumentOutline = outlineToPdf.asDocumentOutline(outline);
 					document.getDocumentCatalog().setDocumentOutline(pdDocumentOutline);
+					checkInterrupted();
 				}
-				final StandardOpenOption[] openOptions = overwrite
-						? new StandardOpenOption[] { StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.CREATE,
-								StandardOpenOption.WRITE }
-						: new StandardOpenOption[] { StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE };
 				final Path empty = Paths.get("");
 				if (outputPath.equals(empty)) {
 					LOGGER.info("Output path is empty.");
 				}
-				LOGGER.debug("Buffering.");
-				try (OutputStream outStr = new BufferedOutputStream(Files.newOutputStream(outputPath, openOptions))) {
-					LOGGER.info("Saving.");
-					document.save(outStr);
+				if (incremental) {
+					setNeedToBeUpdated(document, cropBoxOpt.isPresent(), true);
+				}
+				try {
+					if (incremental && overwrite && Files.exists(outputPath) && Files.isSameFile(inputPath, outputPath)) {
+						append(document, outputPath, inputLength);
+					} else {
+						writeThenMove(document, outputPath, overwrite);
+					}
+				} finally {
+					if (incremental) {
+						setNeedToBeUpdated(document, cropBoxOpt.isPresent(), false);
+					}
 				}
+				lastMemoryUsage = lease.getScratchFile().getUsage();
+				LOGGER.debug("Memory usage: {}.", lastMemoryUsage);
 				LOGGER.debug("Succeeding.");
 				errorMessage = "";
 				succeeded = true;
-			} catch (ClosedByInterruptException e) {
+			} catch (InterruptedIOException | ClosedByInterruptException e) {
+				/**
+				 * Cancelled: the checkpoints, the input source and the output channel all
+				 * give up as soon as the thread is interrupted, and nothing has been written
+				 * to the output path.
+				 */
 				errorMessage = "Interrupted.";
 				LOGGER.debug("Writing.", e);
+				succeeded = false;
 			} catch (FileAlreadyExistsException e) {
 				errorMessage = "Already exists: " + e.getMessage();
 				LOGGER.debug("Writing.", e);
+				succeeded = false;
 			} catch (IOException e) {
-				/**
-				 * I receive systematically java.nio.channels.ClosedChannelException when a save
-				 * job is interrupted and replaced by another save job. This is because the read
-				 * from PDF load is not interrupted, this thread does not exit and it attempts
-				 * to save irrespective of the previous interruption.
-				 */
 				errorMessage = e.getMessage() + " (" + e.getClass().getSimpleName() + ")";
 				LOGGER.error("Writing.", e);
 				succeeded = false;
@@ -118,8 +205,175 @@ public class PdfSaver {
 		}
 	}
 
+	/**
+	 * @param documentCache
+	 *            the cache to take the input documents from, or <code>null</code>
+	 *            to load them anew at each save.
+	 */
+	public void setDocumentCache(DocumentCache documentCache) {
+		this.documentCache = documentCache;
+	}
+
+	/**
+	 * @param incremental
+	 *            <code>true</code> to copy the original bytes of the input and
+	 *            append an update section containing only the modified objects
+	 *            (catalog, page labels, outline and, when cropping, the page tree)
+	 *            and a new cross-reference section; <code>false</code> to rewrite
+	 *            the whole document. When saving incrementally over the input
+	 *            itself (which requires overwrite), only the update section is
+	 *            written.
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * @param memoryPolicy
+	 *            how the next saves may buffer the input document, not
+	 *            <code>null</code>.
+	 */
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = requireNonNull(memoryPolicy);
+	}
+
+	/**
+	 * @param outputGuard
+	 *            asked, just before a save writes its output, whether it may,
+	 *            after which the save can no longer be interrupted;
+	 *            <code>null</code> to always write.
+	 */
+	public void setOutputGuard(BooleanSupplier outputGuard) {
+		this.outputGuard = outputGuard;
+	}
+
 	public boolean succeeded() {
 		return succeeded;
 	}
 
+	/**
+	 * Appends the incremental update to the input, which is the output. The update
+	 * is computed in memory, then written with a non interruptible call, so that
+	 * the file never ends with a partial update.
+	 */
+	private void append(PDDocument document, Path outputPath, long inputLength) throws IOException {
+		final ByteArrayOutputStream update = new ByteArrayOutputStream();
+		try (OutputStream outStr = new SkippingOutputStream(update, inputLength)) {
+			document.saveIncremental(outStr);
+		}
+		checkMayWrite();
+		try (RandomAccessFile file = new RandomAccessFile(outputPath.toFile(), "rw")) {
+			if (file.length() != inputLength) {
+				throw new IOException("Input changed while saving.");
+			}
+			LOGGER.info("Appending.");
+			try {
+				file.seek(inputLength);
+				file.write(update.toByteArray());
+			} catch (IOException e) {
+				file.setLength(inputLength);
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * @throws InterruptedIOException
+	 *             iff the current thread has been interrupted.
+	 */
+	private void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("Interrupted.");
+		}
+	}
+
+	/**
+	 * Decides whether the save writes its output: once this returns, the output
+	 * is written, even if the current thread gets interrupted.
+	 *
+	 * @throws InterruptedIOException
+	 *             iff the current thread has been interrupted, or the output
+	 *             guard refuses.
+	 */
+	private void checkMayWrite() throws InterruptedIOException {
+		checkInterrupted();
+		if (outputGuard != null && !outputGuard.getAsBoolean()) {
+			throw new InterruptedIOException("Interrupted.");
+		}
+	}
+
+	private DocumentLease open(File inputFile) throws IOException {
+		checkInterrupted();
+		if (documentCache != null) {
+			return documentCache.acquire(inputFile.toPath(), memoryPolicy);
+		}
+		final AccountingScratchFile scratchFile = memoryPolicy.newScratchFile();
+		return new DocumentLease(PdfUtils.load(inputFile, scratchFile), scratchFile);
+	}
+
+	/**
+	 * Sets the flag that tells an incremental save to write the catalog and, if
+	 * asked, the pages and their ancestors in the page tree. The other modified
+	 * objects are new, and thus always written.
+	 */
+	private void setNeedToBeUpdated(PDDocument document, boolean pages, boolean needToBeUpdated) {
+		document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(needToBeUpdated);
+		if (!pages) {
+			return;
+		}
+		for (PDPage page : document.getPages()) {
+			COSBase node = page.getCOSObject();
+			while (node instanceof COSDictionary
+					&& ((COSDictionary) node).isNeedToBeUpdated() != needToBeUpdated) {
+				final COSDictionary dict = (COSDictionary) node;
+				dict.setNeedToBeUpdated(needToBeUpdated);
+				node = dict.getDictionaryObject(COSName.PARENT, COSName.P);
+			}
+		}
+	}
+
+	/**
+	 * Writes the document to a temporary file next to the output, then renames
+	 * it to the output (atomically when overwriting, if the file system permits).
+	 * If anything fails, including when interrupted, the temporary file is
+	 * deleted and the output path is left untouched.
+	 */
+	private void writeThenMove(PDDocument document, Path outputPath, boolean overwrite) throws IOException {
+		final Path target = outputPath.toAbsolutePath();
+		final Path temp = target
+				.resolveSibling("." + target.getFileName() + "-" + Long.toHexString(System.nanoTime()) + ".tmp");
+		boolean moved = false;
+		try {
+			LOGGER.debug("Buffering.");
+			try (OutputStream outStr = new BufferedOutputStream(
+					Files.newOutputStream(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE))) {
+				LOGGER.info("Saving.");
+				if (incremental) {
+					document.saveIncremental(outStr);
+				} else {
+					document.save(outStr);
+				}
+			}
+			checkMayWrite();
+			if (overwrite) {
+				try {
+					Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} else {
+				Files.move(temp, target);
+			}
+			moved = true;
+		} finally {
+			if (!moved) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException e) {
+					LOGGER.warn("Could not delete {}.", temp, e);
+				}
+			}
+		}
+	}
+
 }
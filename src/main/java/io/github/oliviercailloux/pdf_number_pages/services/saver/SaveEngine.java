@@ -0,0 +1,474 @@
+package io.github.oliviercailloux.pdf_number_pages.services.saver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Maps;
+import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.MemoryPolicy;
+
+/**
+ * <p>
+ * Saves many documents concurrently on a bounded pool of worker threads, where
+ * {@link Saver} saves one document at a time.
+ * </p>
+ * <p>
+ * Jobs for the same output path keep the latest-wins semantics of
+ * {@link Saver}: a job that has not started yet is replaced by a newer one, and
+ * a running job is interrupted, the newer one starting only once the running
+ * one has terminated, so that an older job never writes over a newer one.
+ * Replaced and interrupted jobs produce no finished event, and their futures
+ * are cancelled. A job that has started writing its output is no longer
+ * interrupted: it finishes, and the newer one waits for it.
+ * </p>
+ * <p>
+ * Jobs are admitted in submission order, as long as a worker is free and the
+ * memory estimate of the admitted jobs fits in the memory budget. A job that
+ * does not fit in the budget on its own still runs, alone.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SaveEngine {
+	/**
+	 * The jobs for one output path.
+	 */
+	private static class Slot {
+		/**
+		 * <code>null</code> iff no job waits for this path.
+		 */
+		Submission queued;
+
+		/**
+		 * <code>null</code> iff no job runs for this path.
+		 */
+		Submission running;
+	}
+
+	/**
+	 * A job and what the engine knows about its execution. The flags and the
+	 * thread are guarded by this object.
+	 */
+	private static class Submission {
+		private boolean cancelled;
+
+		/**
+		 * <code>true</code> iff the job has been allowed to write its output.
+		 */
+		private boolean committed;
+
+		/**
+		 * <code>null</code> iff the job is not being executed.
+		 */
+		private Thread thread;
+
+		final long estimate;
+
+		final SaveJob job;
+
+		final Path key;
+
+		final SettableFuture<SaverFinishedEvent> result;
+
+		Submission(Path key, SaveJob job, long estimate) {
+			this.key = requireNonNull(key);
+			this.job = requireNonNull(job);
+			this.estimate = estimate;
+			result = SettableFuture.create();
+			cancelled = false;
+			committed = false;
+			thread = null;
+		}
+
+		/**
+		 * Makes the job stop as soon as possible, interrupting it if it runs.
+		 *
+		 * @return <code>false</code> iff the job had been cancelled already, or is
+		 *         writing its output, in which case it will not stop.
+		 */
+		synchronized boolean cancel() {
+			if (cancelled || committed) {
+				return false;
+			}
+			cancelled = true;
+			if (thread != null) {
+				thread.interrupt();
+			}
+			return true;
+		}
+
+		/**
+		 * Decides the outcome of the job, just before it writes its output.
+		 *
+		 * @return <code>false</code> iff the job has been cancelled, in which case it
+		 *         must not write.
+		 */
+		synchronized boolean commit() {
+			if (cancelled) {
+				return false;
+			}
+			committed = true;
+			return true;
+		}
+
+		/**
+		 * @return <code>false</code> iff the job has been cancelled, in which case it
+		 *         must not run.
+		 */
+		synchronized boolean enter() {
+			if (cancelled) {
+				return false;
+			}
+			thread = Thread.currentThread();
+			return true;
+		}
+
+		/**
+		 * Once exited, the job can no longer be cancelled: its outcome is decided.
+		 * A job that wrote its output has not been cancelled.
+		 *
+		 * @return <code>true</code> iff the job has been cancelled.
+		 */
+		synchronized boolean exit() {
+			thread = null;
+			/** Do not leak an interruption to the next job of this worker. */
+			Thread.interrupted();
+			final boolean wasCancelled = cancelled;
+			cancelled = true;
+			return wasCancelled;
+		}
+	}
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(SaveEngine.class);
+
+	/**
+	 * The jobs that may run as soon as admitted, in submission order.
+	 */
+	private final Deque<Submission> admissions;
+
+	/**
+	 * <code>null</code> iff input documents are not cached.
+	 */
+	private DocumentCache documentCache;
+
+	private final EventBus eventBus = new EventBus(SaveEngine.class.getCanonicalName());
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private Executor finishedEventsFiringExecutor;
+
+	private boolean incremental;
+
+	private final long memoryBudget;
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private MemoryPolicy memoryPolicy;
+
+	private final int parallelism;
+
+	private long reservedBytes;
+
+	private int runningCount;
+
+	private final Map<Path, Slot> slots;
+
+	private long supersededCount;
+
+	private final ExecutorService workers;
+
+	/**
+	 * Uses as many workers as available processors, and half the maximal heap
+	 * size of this JVM as memory budget.
+	 */
+	public SaveEngine() {
+		this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory() / 2);
+	}
+
+	/**
+	 * @param parallelism
+	 *            the number of worker threads, at least one.
+	 * @param memoryBudget
+	 *            the sum of the memory estimates of the jobs that may run
+	 *            concurrently, not negative.
+	 */
+	public SaveEngine(int parallelism, long memoryBudget) {
+		checkArgument(parallelism >= 1);
+		checkArgument(memoryBudget >= 0);
+		this.parallelism = parallelism;
+		this.memoryBudget = memoryBudget;
+		workers = Executors.newFixedThreadPool(parallelism,
+				new ThreadFactoryBuilder().setNameFormat("Save engine %d").build());
+		admissions = new ArrayDeque<>();
+		slots = Maps.newHashMap();
+		reservedBytes = 0;
+		runningCount = 0;
+		supersededCount = 0;
+		memoryPolicy = MemoryPolicy.getDefault();
+		documentCache = null;
+		incremental = false;
+		finishedEventsFiringExecutor = MoreExecutors.directExecutor();
+	}
+
+	/**
+	 * Cancels the jobs that have not started and lets the running ones finish.
+	 */
+	public void close() {
+		synchronized (this) {
+			for (Submission submission : admissions) {
+				submission.result.cancel(false);
+			}
+			admissions.clear();
+			final Iterator<Slot> iterator = slots.values().iterator();
+			while (iterator.hasNext()) {
+				final Slot slot = iterator.next();
+				if (slot.queued != null) {
+					slot.queued.result.cancel(false);
+					slot.queued = null;
+				}
+				/** A slot with a running job is removed when the job finishes. */
+				if (slot.running == null) {
+					iterator.remove();
+				}
+			}
+		}
+		workers.shutdown();
+	}
+
+	/**
+	 * @return <code>null</code> iff input documents are not cached.
+	 */
+	public DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	public MemoryPolicy getMemoryPolicy() {
+		return memoryPolicy;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * @return the number of jobs submitted and not finished yet, running or not.
+	 */
+	public synchronized int getPendingCount() {
+		int count = 0;
+		for (Slot slot : slots.values()) {
+			count += (slot.running == null ? 0 : 1) + (slot.queued == null ? 0 : 1);
+		}
+		return count;
+	}
+
+	/**
+	 * @return the sum of the memory estimates of the running jobs.
+	 */
+	public synchronized long getReservedBytes() {
+		return reservedBytes;
+	}
+
+	public synchronized int getRunningCount() {
+		return runningCount;
+	}
+
+	/**
+	 * @return the number of jobs replaced or interrupted by a newer job for the
+	 *         same output path.
+	 */
+	public synchronized long getSupersededCount() {
+		return supersededCount;
+	}
+
+	public boolean isIncremental() {
+		return incremental;
+	}
+
+	public void register(Object listener) {
+		eventBus.register(requireNonNull(listener));
+	}
+
+	/**
+	 * @param documentCache
+	 *            <code>null</code> for no cache. Applies to the jobs started
+	 *            after this call.
+	 */
+	public void setDocumentCache(DocumentCache documentCache) {
+		this.documentCache = documentCache;
+	}
+
+	/**
+	 * @param finishedEventsFiringExecutor
+	 *            the executor the {@link SaverFinishedEvent}s are posted on, not
+	 *            <code>null</code>. Defaults to the worker threads.
+	 */
+	public void setFinishedEventsFiringExecutor(Executor finishedEventsFiringExecutor) {
+		this.finishedEventsFiringExecutor = requireNonNull(finishedEventsFiringExecutor);
+	}
+
+	/**
+	 * Applies to the jobs started after this call.
+	 *
+	 * @see PdfSaver#setIncremental(boolean)
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Applies to the jobs started after this call.
+	 */
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = requireNonNull(memoryPolicy);
+	}
+
+	/**
+	 * Submits the job, superseding any job for the same output path that has not
+	 * finished yet.
+	 *
+	 * @return a future that gives the finished event (also posted to the
+	 *         listeners), or is cancelled iff a newer job for the same output
+	 *         path supersedes this one before it starts writing its output, or
+	 *         the engine is closed before it starts. A cancelled job has not
+	 *         written its output.
+	 */
+	public ListenableFuture<SaverFinishedEvent> submit(SaveJob job) {
+		checkState(!workers.isShutdown());
+		final Path key = job.getOutputPath().toAbsolutePath().normalize();
+		final Submission submission = new Submission(key, job, estimateMemory(job));
+		synchronized (this) {
+			final Slot slot = slots.computeIfAbsent(key, (k) -> new Slot());
+			if (slot.queued != null) {
+				LOGGER.debug("Replacing {}.", slot.queued.job);
+				admissions.remove(slot.queued);
+				slot.queued.result.cancel(false);
+				++supersededCount;
+			}
+			slot.queued = submission;
+			if (slot.running == null) {
+				admissions.add(submission);
+				admit();
+			} else if (slot.running.cancel()) {
+				LOGGER.debug("Interrupted {}.", slot.running.job);
+				++supersededCount;
+			}
+		}
+		return submission.result;
+	}
+
+	/**
+	 * Starts the jobs at the head of the admission queue, as long as workers and
+	 * memory permit.
+	 */
+	private void admit() {
+		assert Thread.holdsLock(this);
+		while (!admissions.isEmpty() && runningCount < parallelism) {
+			final Submission next = admissions.peek();
+			if (runningCount >= 1 && reservedBytes + next.estimate > memoryBudget) {
+				LOGGER.debug("Not enough memory to admit {}.", next.job);
+				break;
+			}
+			admissions.poll();
+			final Slot slot = slots.get(next.key);
+			assert slot.queued == next && slot.running == null;
+			slot.queued = null;
+			slot.running = next;
+			++runningCount;
+			reservedBytes += next.estimate;
+			workers.execute(() -> run(next));
+		}
+	}
+
+	/**
+	 * Estimates the memory that saving the job holds: the size of its input file,
+	 * at most the heap the memory policy allows.
+	 */
+	private long estimateMemory(SaveJob job) {
+		long size;
+		try {
+			size = Files.size(job.getInputPath());
+		} catch (IOException e) {
+			/** The save will fail anyway. */
+			size = 0;
+		}
+		if (memoryPolicy.getMaxHeapBytes().isPresent()) {
+			size = Math.min(size, memoryPolicy.getMaxHeapBytes().get());
+		}
+		return size;
+	}
+
+	private void finished(Submission submission) {
+		synchronized (this) {
+			--runningCount;
+			reservedBytes -= submission.estimate;
+			final Slot slot = slots.get(submission.key);
+			assert slot.running == submission;
+			slot.running = null;
+			if (slot.queued == null) {
+				slots.remove(submission.key);
+			} else {
+				admissions.add(slot.queued);
+			}
+			admit();
+		}
+	}
+
+	private void run(Submission submission) {
+		String errorMessage = null;
+		boolean cancelled;
+		try {
+			if (submission.enter()) {
+				final PdfSaver pdfSaver = new PdfSaver();
+				pdfSaver.setMemoryPolicy(memoryPolicy);
+				pdfSaver.setDocumentCache(documentCache);
+				pdfSaver.setIncremental(incremental);
+				pdfSaver.setOutputGuard(submission::commit);
+				LOGGER.debug("Proceeding to save: {}.", submission.job);
+				pdfSaver.save(submission.job);
+				errorMessage = pdfSaver.getErrorMessage();
+			}
+		} catch (RuntimeException e) {
+			LOGGER.error("Problem while saving.", e);
+			errorMessage = String.valueOf(e.getMessage());
+		} finally {
+			cancelled = submission.exit();
+			finished(submission);
+		}
+		if (cancelled) {
+			submission.result.cancel(false);
+			return;
+		}
+		final SaverFinishedEvent event = new SaverFinishedEvent(submission.job, errorMessage);
+		finishedEventsFiringExecutor.execute(() -> eventBus.post(event));
+		submission.result.set(event);
+	}
+}
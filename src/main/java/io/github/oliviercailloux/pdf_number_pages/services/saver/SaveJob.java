@@ -14,38 +14,55 @@ import com.google.common.base.MoreObjects.ToStringHelper;
 
 import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
 import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineSnapshot;
 import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfPartSnapshot;
 import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
 
 public class SaveJob {
 	@SuppressWarnings("unused")
 	private static final Logger LOGGER = LoggerFactory.getLogger(SaveJob.class);
 
+	/**
+	 * Returns a job that saves a snapshot of the given model, and records its
+	 * revision, so that the saved status can be checked against the model in
+	 * constant time.
+	 */
+	public static SaveJob newSaveJob(PdfPart pdf, Path inputPath, Path outputPath, boolean overwrite) {
+		final SaveJob job = new SaveJob(pdf.snapshot(), inputPath, outputPath, overwrite);
+		job.sourceRevision = pdf.getRevision();
+		return job;
+	}
+
 	private Path inputPath;
 
 	private Path outputPath;
 
 	private boolean overwrite;
 
-	private final PdfPart pdf;
+	private final PdfPartSnapshot pdf;
 
+	/**
+	 * The revision of the model this job copies, or -1 iff unknown.
+	 */
+	private long sourceRevision;
+
+	/**
+	 * Takes snapshots of the given parts, which may thus be modified afterwards.
+	 */
 	public SaveJob(LabelRangesByIndex labelRangesByIndex, Optional<Outline> outline, Optional<BBox> cropBox,
 			Path inputPath, Path outputPath, boolean overwrite) {
-		pdf = new PdfPart();
-		pdf.setLabelRangesByIndex(LabelRangesByIndex.deepImmutableCopy(requireNonNull(labelRangesByIndex)));
-		requireNonNull(outline);
-		if (outline.isPresent()) {
-			final Outline newOutline = new Outline();
-			newOutline.addCopies(outline.get().getChildren());
-			pdf.setOutline(newOutline);
-		}
-		checkArgument(!labelRangesByIndex.isEmpty());
+		this(new PdfPartSnapshot(labelRangesByIndex.snapshot(), outline.map(Outline::snapshotOf), cropBox),
+				inputPath, outputPath, overwrite);
+	}
+
+	private SaveJob(PdfPartSnapshot pdf, Path inputPath, Path outputPath, boolean overwrite) {
+		this.pdf = requireNonNull(pdf);
+		checkArgument(!pdf.getLabelRangesByIndex().isEmpty());
 		this.inputPath = requireNonNull(inputPath);
 		this.outputPath = requireNonNull(outputPath);
 		this.overwrite = overwrite;
-		if (requireNonNull(cropBox).isPresent()) {
-			pdf.setCropBox(cropBox.get());
-		}
+		sourceRevision = -1;
 		LOGGER.debug("Set job: {}.", this);
 	}
 
@@ -61,7 +78,7 @@ public class SaveJob {
 		return pdf.getLabelRangesByIndex();
 	}
 
-	public Optional<Outline> getOutline() {
+	public Optional<OutlineSnapshot> getOutline() {
 		return pdf.getOutline();
 	}
 
@@ -73,10 +90,17 @@ public class SaveJob {
 		return overwrite;
 	}
 
-	public PdfPart getPdf() {
+	public PdfPartSnapshot getPdf() {
 		return pdf;
 	}
 
+	/**
+	 * @return the revision of the model this job copies, or -1 if unknown.
+	 */
+	public long getSourceRevision() {
+		return sourceRevision;
+	}
+
 	@Override
 	public String toString() {
 		final ToStringHelper helper = MoreObjects.toStringHelper(this);
@@ -21,8 +21,9 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.MemoryPolicy;
 import io.github.oliviercailloux.pdf_number_pages.services.Reader;
-import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
 
 /**
  * Controls a saver thread: whenever a job is in the queue, the saver thread
@@ -38,9 +39,21 @@ public class Saver {
 	@SuppressWarnings("unused")
 	static final Logger LOGGER = LoggerFactory.getLogger(Saver.class);
 
+	/**
+	 * <code>null</code> iff input documents are not cached.
+	 */
+	private DocumentCache documentCache;
+
 	private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(
 			Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("Saver").build()));
 
+	private boolean incremental;
+
+	/**
+	 * Not <code>null</code>.
+	 */
+	private MemoryPolicy memoryPolicy;
+
 	/**
 	 * Not <code>null</code>, not empty.
 	 */
@@ -73,6 +86,9 @@ public class Saver {
 		overwrite = false;
 		savedEventsFiringExecutor = MoreExecutors.directExecutor();
 		submittedJobCallback = null;
+		memoryPolicy = MemoryPolicy.getDefault();
+		documentCache = null;
+		incremental = false;
 	}
 
 	public void close() {
@@ -80,6 +96,13 @@ public class Saver {
 		executor.shutdown();
 	}
 
+	/**
+	 * @return <code>null</code> iff input documents are not cached.
+	 */
+	public DocumentCache getDocumentCache() {
+		return documentCache;
+	}
+
 	public Optional<SaverFinishedEvent> getLastFinishedJobResult() {
 		return lastSaveJobResult;
 	}
@@ -94,6 +117,10 @@ public class Saver {
 		return Optional.ofNullable(submittedJob);
 	}
 
+	public MemoryPolicy getMemoryPolicy() {
+		return memoryPolicy;
+	}
+
 	public Path getOutputPath() {
 		return outputPath;
 	}
@@ -106,6 +133,10 @@ public class Saver {
 		return reader;
 	}
 
+	public boolean isIncremental() {
+		return incremental;
+	}
+
 	public boolean isRunning() {
 		return submittedJob != null && !submittedJob.isDone();
 	}
@@ -124,15 +155,38 @@ public class Saver {
 		}
 		LOGGER.debug("Attempting save.");
 		final Path inputPath = reader.getInputPath();
-		final Optional<BBox> currentBox = pdf.getBoundingBoxKeeper().getCropBox();
-		final SaveJob saveJob = new SaveJob(pdf.getLabelRangesByIndex(), pdf.getOutline(), currentBox, inputPath,
-				outputPath, overwrite);
-		submittedJob = executor.submit(new SaverRunnable(saveJob));
+		final SaveJob saveJob = SaveJob.newSaveJob(pdf, inputPath, outputPath, overwrite);
+		submittedJob = executor.submit(new SaverRunnable(saveJob, memoryPolicy, documentCache, incremental));
 		submittedJobCallback = new SaverRunnableCallback(this, saveJob);
 		Futures.addCallback(submittedJob, submittedJobCallback, savedEventsFiringExecutor);
 		eventBus.post(new StartedSavingEvent());
 	}
 
+	/**
+	 * @param documentCache
+	 *            the cache shared with the reader, or <code>null</code> for no
+	 *            cache. Applies to the jobs submitted after this call.
+	 */
+	public void setDocumentCache(DocumentCache documentCache) {
+		this.documentCache = documentCache;
+	}
+
+	/**
+	 * Applies to the jobs submitted after this call.
+	 *
+	 * @see PdfSaver#setIncremental(boolean)
+	 */
+	public void setIncremental(boolean incremental) {
+		this.incremental = incremental;
+	}
+
+	/**
+	 * Applies to the jobs submitted after this call.
+	 */
+	public void setMemoryPolicy(MemoryPolicy memoryPolicy) {
+		this.memoryPolicy = requireNonNull(memoryPolicy);
+	}
+
 	public void setOutputPath(Path outputPath) {
 		final Path oldOutputPath = this.outputPath;
 		if (oldOutputPath.equals(outputPath)) {
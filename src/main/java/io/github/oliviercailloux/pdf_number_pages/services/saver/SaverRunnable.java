@@ -7,6 +7,9 @@ import java.util.concurrent.Callable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.MemoryPolicy;
+
 /**
  * <p>
  * If error during save, this runnable terminates.
@@ -23,8 +26,17 @@ public class SaverRunnable implements Callable<Void> {
 
 	private final PdfSaver pdfSaver = new PdfSaver();
 
-	public SaverRunnable(SaveJob job) {
+	/**
+	 * @param documentCache
+	 *            <code>null</code> for no cache.
+	 * @param incremental
+	 *            see {@link PdfSaver#setIncremental(boolean)}.
+	 */
+	public SaverRunnable(SaveJob job, MemoryPolicy memoryPolicy, DocumentCache documentCache, boolean incremental) {
 		this.job = requireNonNull(job);
+		pdfSaver.setMemoryPolicy(memoryPolicy);
+		pdfSaver.setDocumentCache(documentCache);
+		pdfSaver.setIncremental(incremental);
 	}
 
 	@Override
@@ -0,0 +1,44 @@
+package io.github.oliviercailloux.pdf_number_pages.services.saver;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Discards the given number of first bytes written to it, and forwards the
+ * rest. An incremental save writes the original document then the update:
+ * when appending to the original file, only the update must reach the file.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+class SkippingOutputStream extends FilterOutputStream {
+	private long toSkip;
+
+	SkippingOutputStream(OutputStream out, long toSkip) {
+		super(out);
+		checkArgument(toSkip >= 0);
+		this.toSkip = toSkip;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		final int skipped = (int) Math.min(toSkip, len);
+		toSkip -= skipped;
+		if (skipped < len) {
+			out.write(b, off + skipped, len - skipped);
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (toSkip > 0) {
+			--toSkip;
+		} else {
+			out.write(b);
+		}
+	}
+
+}
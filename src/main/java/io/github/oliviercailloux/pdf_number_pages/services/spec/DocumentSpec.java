@@ -0,0 +1,93 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Optional;
+
+import com.google.common.base.MoreObjects;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * <p>
+ * What to apply to a document: page labels, an outline and a crop box, each
+ * one optional. An absent part is left as it is in the document, whereas an
+ * empty outline removes the outline of the document.
+ * </p>
+ * <p>
+ * The text form of a spec is written by {@link SpecWriter} and read by
+ * {@link SpecParser}. It is line oriented and made of the header line, then
+ * any of the following sections, in this order.
+ * </p>
+ *
+ * <pre>
+ * pdf-number-pages spec 1
+ * crop 0 0 200 300
+ * labels
+ * 0 ROMAN_LOWER 1
+ * 4 DECIMAL 1 Chapter-
+ * outline
+ * 4 Introduction
+ * 	5 A section
+ * 		6 A sub-section
+ * =Chapter-9 Conclusion
+ * </pre>
+ * <p>
+ * The crop line gives the lower left then the upper right corner. A label line
+ * gives the index of the first page of the range (from zero, and the first
+ * range starts at zero), its
+ * {@link io.github.oliviercailloux.pdf_number_pages.model.RangeStyle} name, its
+ * start value, then, after one space, the prefix, if any. An outline line gives
+ * the physical page index (from zero), or <code>=</code> followed by the label
+ * of the page, then, after one space, the title. A label designates the first
+ * page that has it, according to the labels section, or, if the spec has none,
+ * to the labels of the document. The depth of an item in the outline is its
+ * number of leading tabs. In prefixes, page labels and titles, backslashes, tabs
+ * and line breaks are escaped as <code>\\</code>, <code>\t</code>,
+ * <code>\n</code> and <code>\r</code>; <code>\s</code> reads as a space, which
+ * page labels must use. Blank lines and lines starting with <code>#</code> are
+ * ignored.
+ * </p>
+ * <p>
+ * Holds the given parts, does not copy them.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class DocumentSpec {
+	public static final String HEADER = "pdf-number-pages spec 1";
+
+	private final Optional<BBox> cropBox;
+
+	private final Optional<LabelRangesByIndex> labelRangesByIndex;
+
+	private final Optional<Outline> outline;
+
+	public DocumentSpec(Optional<LabelRangesByIndex> labelRangesByIndex, Optional<Outline> outline,
+			Optional<BBox> cropBox) {
+		this.labelRangesByIndex = requireNonNull(labelRangesByIndex);
+		this.outline = requireNonNull(outline);
+		this.cropBox = requireNonNull(cropBox);
+	}
+
+	public Optional<BBox> getCropBox() {
+		return cropBox;
+	}
+
+	public Optional<LabelRangesByIndex> getLabelRangesByIndex() {
+		return labelRangesByIndex;
+	}
+
+	public Optional<Outline> getOutline() {
+		return outline;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Labels", labelRangesByIndex).add("Outline", outline)
+				.add("Crop box", cropBox).toString();
+	}
+}
@@ -0,0 +1,122 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.Lists;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * Builds a {@link DocumentSpec} from the content a parser gives. The outline
+ * nodes are built bottom-up: a node joins its parent only once its own children
+ * are complete, at which point nothing listens to it, so that building the tree
+ * posts no event that anybody receives.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SpecBuilder implements SpecHandler {
+	/**
+	 * <code>null</code> iff no crop box has been given.
+	 */
+	private BBox cropBox;
+
+	/**
+	 * <code>null</code> iff no labels section has started.
+	 */
+	private LabelRangesByIndex labelRangesByIndex;
+
+	/**
+	 * The nodes whose children may still come, from the top level down to the
+	 * last node given.
+	 */
+	private final List<OutlineNode> openNodes;
+
+	/**
+	 * <code>null</code> iff no outline section has started.
+	 */
+	private Outline outline;
+
+	/**
+	 * <code>null</code> iff the end has not been reached.
+	 */
+	private DocumentSpec spec;
+
+	public SpecBuilder() {
+		cropBox = null;
+		labelRangesByIndex = null;
+		openNodes = Lists.newArrayList();
+		outline = null;
+		spec = null;
+	}
+
+	@Override
+	public void cropBox(BBox cropBox) {
+		this.cropBox = cropBox;
+	}
+
+	@Override
+	public void end() {
+		if (outline != null) {
+			closeOutlineNodes(0);
+		}
+		spec = new DocumentSpec(Optional.ofNullable(labelRangesByIndex), Optional.ofNullable(outline),
+				Optional.ofNullable(cropBox));
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the end has not been reached.
+	 */
+	public DocumentSpec getSpec() {
+		checkState(spec != null);
+		return spec;
+	}
+
+	@Override
+	public void labelRange(int pageIndex, PDPageLabelRangeWithEquals range) {
+		labelRangesByIndex.put(pageIndex, range);
+	}
+
+	@Override
+	public void outlineItem(int depth, PdfBookmark bookmark) {
+		closeOutlineNodes(depth);
+		openNodes.add(OutlineNode.newOutline(bookmark));
+	}
+
+	@Override
+	public void startLabels() {
+		labelRangesByIndex = new LabelRangesByIndex();
+	}
+
+	@Override
+	public void startOutline() {
+		outline = new Outline();
+	}
+
+	/**
+	 * Attaches to their parents the open nodes at the given depth and deeper, the
+	 * deepest first.
+	 *
+	 * @param depth
+	 *            from zero, the depth of the top level nodes.
+	 */
+	private void closeOutlineNodes(int depth) {
+		for (int i = openNodes.size() - 1; i >= depth; --i) {
+			final OutlineNode node = openNodes.remove(i);
+			if (i == 0) {
+				outline.addAsLastChild(node);
+			} else {
+				openNodes.get(i - 1).addAsLastChild(node);
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Thrown when a spec text is malformed or describes an invalid spec.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SpecFormatException extends Exception {
+
+	private final int lineNumber;
+
+	/**
+	 * @param lineNumber
+	 *            the number of the offending line, from one.
+	 */
+	public SpecFormatException(int lineNumber, String message) {
+		super("Line " + lineNumber + ": " + message);
+		checkArgument(lineNumber >= 1);
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * @param lineNumber
+	 *            the number of the offending line, from one.
+	 */
+	public SpecFormatException(int lineNumber, String message, Throwable cause) {
+		super("Line " + lineNumber + ": " + message, cause);
+		checkArgument(lineNumber >= 1);
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * @return the number of the offending line, from one.
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+
+}
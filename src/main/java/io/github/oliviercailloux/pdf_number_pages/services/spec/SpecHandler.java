@@ -0,0 +1,49 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * Receives the content of a spec from a {@link SpecParser}, in the order of the
+ * text, once each entry has been validated. The parser guarantees that the
+ * calls follow the structure of a valid spec, except that it may stop at any
+ * point by throwing a {@link SpecFormatException} if the rest of the text is
+ * invalid.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public interface SpecHandler {
+	public void cropBox(BBox cropBox);
+
+	/**
+	 * Called once the whole text has been read and found valid.
+	 */
+	public void end();
+
+	/**
+	 * @param pageIndex
+	 *            greater than at the previous call.
+	 */
+	public void labelRange(int pageIndex, PDPageLabelRangeWithEquals range);
+
+	/**
+	 * @param depth
+	 *            from zero, for a top level item, to one more than the depth of
+	 *            the previous item.
+	 */
+	public void outlineItem(int depth, PdfBookmark bookmark);
+
+	/**
+	 * Called when the labels section starts, before its ranges. The section has
+	 * at least one range.
+	 */
+	public void startLabels();
+
+	/**
+	 * Called when the outline section starts, before its items. The section may
+	 * have no item.
+	 */
+	public void startOutline();
+}
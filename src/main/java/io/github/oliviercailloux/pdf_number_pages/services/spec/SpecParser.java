@@ -0,0 +1,491 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+import io.github.oliviercailloux.pdf_number_pages.services.PageLabelIndex;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfReader;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * <p>
+ * Reads specs in the text form described in {@link DocumentSpec}, and
+ * validates them.
+ * </p>
+ * <p>
+ * Reads line by line and hands each entry, once validated, to a
+ * {@link SpecHandler}, without any intermediate representation of the text, so
+ * that the time it takes is proportional to the size of the spec and the memory
+ * it takes is bounded by the length of a line, plus the label ranges, kept to
+ * resolve the page labels the outline refers to. Parsing with a handler that
+ * does nothing validates a spec without building it.
+ * </p>
+ * <p>
+ * Not thread safe. A parser keeps nothing from one parsing to the next, apart
+ * from its settings.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SpecParser {
+	private static enum Section {
+		CROP, LABELS, OUTLINE
+	}
+
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(SpecParser.class);
+
+	/**
+	 * Reads a non negative decimal integer that spans the whole given part of the
+	 * line.
+	 */
+	private static int parseIndex(String line, int begin, int end, int lineNumber, String what)
+			throws SpecFormatException {
+		if (begin == end) {
+			throw new SpecFormatException(lineNumber, "Missing " + what + ".");
+		}
+		int value = 0;
+		for (int i = begin; i < end; ++i) {
+			final char c = line.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new SpecFormatException(lineNumber, "Invalid " + what + ": " + line.substring(begin, end) + ".");
+			}
+			if (value > (Integer.MAX_VALUE - (c - '0')) / 10) {
+				throw new SpecFormatException(lineNumber,
+						"Too large " + what + ": " + line.substring(begin, end) + ".");
+			}
+			value = value * 10 + (c - '0');
+		}
+		return value;
+	}
+
+	private static String unescape(String text, int lineNumber) throws SpecFormatException {
+		final int firstEscape = text.indexOf('\\');
+		if (firstEscape == -1) {
+			return text;
+		}
+		final StringBuilder unescaped = new StringBuilder(text.length());
+		unescaped.append(text, 0, firstEscape);
+		for (int i = firstEscape; i < text.length(); ++i) {
+			final char c = text.charAt(i);
+			if (c != '\\') {
+				unescaped.append(c);
+				continue;
+			}
+			++i;
+			if (i == text.length()) {
+				throw new SpecFormatException(lineNumber, "Dangling backslash.");
+			}
+			final char escaped = text.charAt(i);
+			switch (escaped) {
+			case '\\':
+				unescaped.append('\\');
+				break;
+			case 't':
+				unescaped.append('\t');
+				break;
+			case 'n':
+				unescaped.append('\n');
+				break;
+			case 'r':
+				unescaped.append('\r');
+				break;
+			case 's':
+				unescaped.append(' ');
+				break;
+			default:
+				throw new SpecFormatException(lineNumber, "Unknown escape: \\" + escaped + ".");
+			}
+		}
+		return unescaped.toString();
+	}
+
+	/**
+	 * <code>null</code> iff not set.
+	 */
+	private LabelRangesByIndex documentLabels;
+
+	/**
+	 * <code>null</code> iff not parsing.
+	 */
+	private SpecHandler handler;
+
+	/**
+	 * <code>null</code> iff no outline item of the spec being parsed referred to
+	 * a page by its label yet.
+	 */
+	private PageLabelIndex labelIndex;
+
+	/**
+	 * The label ranges of the spec being parsed, as read so far.
+	 */
+	private LabelRangesByIndex labels;
+
+	/**
+	 * The page index of the last label range read, or -1 if none.
+	 */
+	private int lastLabelIndex;
+
+	/**
+	 * The number of the line being parsed, from one.
+	 */
+	private int lineNumber;
+
+	private int maxOutlineDepth;
+
+	private int maxOutlineNodes;
+
+	/**
+	 * The depth of the last outline item read plus one, thus, zero if none.
+	 */
+	private int outlineDepth;
+
+	private int outlineNodesCount;
+
+	/**
+	 * -1 iff unknown.
+	 */
+	private int pageCount;
+
+	public SpecParser() {
+		documentLabels = null;
+		handler = null;
+		labelIndex = null;
+		labels = new LabelRangesByIndex();
+		lastLabelIndex = -1;
+		lineNumber = 0;
+		maxOutlineDepth = PdfReader.DEFAULT_MAX_OUTLINE_DEPTH;
+		maxOutlineNodes = PdfReader.DEFAULT_MAX_OUTLINE_NODES;
+		outlineDepth = 0;
+		outlineNodesCount = 0;
+		pageCount = -1;
+	}
+
+	/**
+	 * @return <code>null</code> iff not set.
+	 */
+	public LabelRangesByIndex getDocumentLabels() {
+		return documentLabels;
+	}
+
+	public int getMaxOutlineDepth() {
+		return maxOutlineDepth;
+	}
+
+	public int getMaxOutlineNodes() {
+		return maxOutlineNodes;
+	}
+
+	/**
+	 * @return the number of pages of the document the specs are meant for, or -1
+	 *         if unknown.
+	 */
+	public int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * Parses the given UTF-8 file.
+	 */
+	public DocumentSpec parse(Path path) throws IOException, SpecFormatException {
+		try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+			return parse(reader);
+		}
+	}
+
+	/**
+	 * Parses the text the given reader gives, up to its end. Does not close the
+	 * reader.
+	 *
+	 * @throws SpecFormatException
+	 *             if the text is not a valid spec.
+	 */
+	public DocumentSpec parse(Reader reader) throws IOException, SpecFormatException {
+		final SpecBuilder builder = new SpecBuilder();
+		parse(reader, builder);
+		return builder.getSpec();
+	}
+
+	/**
+	 * Parses the text the given reader gives, up to its end, and hands its content
+	 * to the given handler as it goes. Does not close the reader.
+	 *
+	 * @throws SpecFormatException
+	 *             if the text is not a valid spec, in which case the handler may
+	 *             have received the content that precedes the error.
+	 */
+	public void parse(Reader reader, SpecHandler handler) throws IOException, SpecFormatException {
+		requireNonNull(reader);
+		final BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		this.handler = requireNonNull(handler);
+		labelIndex = null;
+		labels = new LabelRangesByIndex();
+		lastLabelIndex = -1;
+		lineNumber = 0;
+		outlineDepth = 0;
+		outlineNodesCount = 0;
+		try {
+			boolean headerRead = false;
+			Section section = null;
+			for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+				++lineNumber;
+				if (line.isEmpty() || line.charAt(0) == '#' || line.trim().isEmpty()) {
+					continue;
+				}
+				if (!headerRead) {
+					if (!line.equals(DocumentSpec.HEADER)) {
+						throw new SpecFormatException(lineNumber,
+								"Expected the header “" + DocumentSpec.HEADER + "”.");
+					}
+					headerRead = true;
+					continue;
+				}
+				final char first = line.charAt(0);
+				if (first == '\t' || first == '=' || (first >= '0' && first <= '9')) {
+					if (section == Section.LABELS) {
+						parseLabelRange(line);
+					} else if (section == Section.OUTLINE) {
+						parseOutlineItem(line);
+					} else {
+						throw new SpecFormatException(lineNumber, "Entry outside a labels or outline section.");
+					}
+					continue;
+				}
+				final Section next = parseSectionName(line);
+				if (section != null && next.compareTo(section) <= 0) {
+					throw new SpecFormatException(lineNumber, "Section " + next.name().toLowerCase()
+							+ " repeated or out of order (expected: crop, labels, outline).");
+				}
+				if (section == Section.LABELS) {
+					checkLabelsNotEmpty();
+				}
+				section = next;
+				startSection(section, line);
+			}
+			if (!headerRead) {
+				throw new SpecFormatException(Math.max(lineNumber, 1), "Empty spec.");
+			}
+			if (section == Section.LABELS) {
+				checkLabelsNotEmpty();
+			}
+			LOGGER.debug("Parsed {} lines, {} outline items.", lineNumber, outlineNodesCount);
+			handler.end();
+		} finally {
+			this.handler = null;
+			labelIndex = null;
+		}
+	}
+
+	/**
+	 * @param documentLabels
+	 *            the label ranges of the document the specs are meant for,
+	 *            against which the outline items of a spec that has no labels
+	 *            section resolve the page labels they refer to; not copied.
+	 */
+	public void setDocumentLabels(LabelRangesByIndex documentLabels) {
+		this.documentLabels = requireNonNull(documentLabels);
+	}
+
+	/**
+	 * @param maxOutlineDepth
+	 *            the number of nesting levels beyond which parsing an outline
+	 *            fails; at least one.
+	 */
+	public void setMaxOutlineDepth(int maxOutlineDepth) {
+		checkArgument(maxOutlineDepth >= 1);
+		this.maxOutlineDepth = maxOutlineDepth;
+	}
+
+	/**
+	 * @param maxOutlineNodes
+	 *            the number of outline items beyond which parsing an outline
+	 *            fails; non negative.
+	 */
+	public void setMaxOutlineNodes(int maxOutlineNodes) {
+		checkArgument(maxOutlineNodes >= 0);
+		this.maxOutlineNodes = maxOutlineNodes;
+	}
+
+	/**
+	 * @param pageCount
+	 *            the number of pages of the document the specs are meant for,
+	 *            against which the page indices are validated; or -1 if unknown,
+	 *            which is the default.
+	 */
+	public void setPageCount(int pageCount) {
+		checkArgument(pageCount >= -1);
+		this.pageCount = pageCount;
+	}
+
+	private void checkLabelsNotEmpty() throws SpecFormatException {
+		if (lastLabelIndex == -1) {
+			throw new SpecFormatException(lineNumber, "The labels section has no range.");
+		}
+	}
+
+	private void checkPageIndex(int pageIndex) throws SpecFormatException {
+		if (pageCount != -1 && pageIndex >= pageCount) {
+			throw new SpecFormatException(lineNumber,
+					"Page index " + pageIndex + " beyond the " + pageCount + " pages of the document.");
+		}
+	}
+
+	private BBox parseCropBox(String line) throws SpecFormatException {
+		final String[] coordinates = line.substring("crop".length()).trim().split(" +");
+		if (coordinates.length != 4) {
+			throw new SpecFormatException(lineNumber, "Expected four coordinates after crop.");
+		}
+		final float[] values = new float[4];
+		for (int i = 0; i < 4; ++i) {
+			try {
+				values[i] = Float.parseFloat(coordinates[i]);
+			} catch (NumberFormatException e) {
+				throw new SpecFormatException(lineNumber, "Invalid coordinate: " + coordinates[i] + ".", e);
+			}
+			if (Float.isNaN(values[i]) || Float.isInfinite(values[i])) {
+				throw new SpecFormatException(lineNumber, "Invalid coordinate: " + coordinates[i] + ".");
+			}
+		}
+		if (values[0] > values[2] || values[1] > values[3]) {
+			throw new SpecFormatException(lineNumber, "The lower left corner must come first.");
+		}
+		return new BBox(new BBPoint(values[0], values[1]), new BBPoint(values[2], values[3]));
+	}
+
+	private void parseLabelRange(String line) throws SpecFormatException {
+		final int indexEnd = line.indexOf(' ');
+		if (indexEnd == -1) {
+			throw new SpecFormatException(lineNumber, "Expected: index style start [prefix].");
+		}
+		final int index = parseIndex(line, 0, indexEnd, lineNumber, "page index");
+		final int styleEnd = line.indexOf(' ', indexEnd + 1);
+		if (styleEnd == -1) {
+			throw new SpecFormatException(lineNumber, "Expected: index style start [prefix].");
+		}
+		final RangeStyle style;
+		final String styleName = line.substring(indexEnd + 1, styleEnd);
+		try {
+			style = RangeStyle.valueOf(styleName);
+		} catch (IllegalArgumentException e) {
+			throw new SpecFormatException(lineNumber, "Unknown style: " + styleName + ".", e);
+		}
+		final int prefixSeparator = line.indexOf(' ', styleEnd + 1);
+		final int startEnd = prefixSeparator == -1 ? line.length() : prefixSeparator;
+		final int start = parseIndex(line, styleEnd + 1, startEnd, lineNumber, "start");
+		if (start < 1) {
+			throw new SpecFormatException(lineNumber, "The start must be at least one.");
+		}
+		if (lastLabelIndex == -1 && index != 0) {
+			throw new SpecFormatException(lineNumber, "The first range must start at page index 0.");
+		}
+		if (index <= lastLabelIndex) {
+			throw new SpecFormatException(lineNumber, "Page indices must increase.");
+		}
+		checkPageIndex(index);
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(style.toPdfBoxStyle());
+		range.setStart(start);
+		if (prefixSeparator != -1 && prefixSeparator + 1 < line.length()) {
+			range.setPrefix(unescape(line.substring(prefixSeparator + 1), lineNumber));
+		}
+		lastLabelIndex = index;
+		labels.putNew(index, range);
+		handler.labelRange(index, range);
+	}
+
+	private void parseOutlineItem(String line) throws SpecFormatException {
+		int depth = 0;
+		while (depth < line.length() && line.charAt(depth) == '\t') {
+			++depth;
+		}
+		if (depth > outlineDepth) {
+			throw new SpecFormatException(lineNumber, "At most one level deeper than the previous item.");
+		}
+		if (depth + 1 > maxOutlineDepth) {
+			throw new SpecFormatException(lineNumber, "This outline is deeper than " + maxOutlineDepth + " levels.");
+		}
+		++outlineNodesCount;
+		if (outlineNodesCount > maxOutlineNodes) {
+			throw new SpecFormatException(lineNumber, "This outline has more than " + maxOutlineNodes + " items.");
+		}
+		final int titleSeparator = line.indexOf(' ', depth);
+		final int pageEnd = titleSeparator == -1 ? line.length() : titleSeparator;
+		final int pageIndex;
+		if (depth < pageEnd && line.charAt(depth) == '=') {
+			pageIndex = resolveLabel(unescape(line.substring(depth + 1, pageEnd), lineNumber));
+		} else {
+			pageIndex = parseIndex(line, depth, pageEnd, lineNumber, "page index");
+		}
+		checkPageIndex(pageIndex);
+		final String title = titleSeparator == -1 ? "" : unescape(line.substring(titleSeparator + 1), lineNumber);
+		outlineDepth = depth + 1;
+		handler.outlineItem(depth, new PdfBookmark(title, pageIndex));
+	}
+
+	private Section parseSectionName(String line) throws SpecFormatException {
+		if (line.equals("labels")) {
+			return Section.LABELS;
+		}
+		if (line.equals("outline")) {
+			return Section.OUTLINE;
+		}
+		if (line.startsWith("crop ")) {
+			return Section.CROP;
+		}
+		throw new SpecFormatException(lineNumber, "Unknown section: " + line + ".");
+	}
+
+	/**
+	 * Uses the labels of the spec if it has any, those of the document otherwise.
+	 * Builds the index at the first label, once the labels section, which comes
+	 * before the outline, is complete.
+	 */
+	private int resolveLabel(String label) throws SpecFormatException {
+		if (labelIndex == null) {
+			final LabelRangesByIndex ranges = lastLabelIndex == -1 ? documentLabels : labels;
+			if (ranges == null) {
+				throw new SpecFormatException(lineNumber, "No labels against which to find the page labelled "
+						+ label + ": the spec has no labels section, and the document labels are not set.");
+			}
+			labelIndex = new PageLabelIndex(ranges, pageCount);
+		}
+		final int pageIndex = labelIndex.indexOf(label);
+		if (pageIndex == -1) {
+			throw new SpecFormatException(lineNumber, "No page labelled " + label + ".");
+		}
+		return pageIndex;
+	}
+
+	private void startSection(Section section, String line) throws SpecFormatException {
+		switch (section) {
+		case CROP:
+			handler.cropBox(parseCropBox(line));
+			break;
+		case LABELS:
+			handler.startLabels();
+			break;
+		case OUTLINE:
+			handler.startOutline();
+			break;
+		default:
+			throw new AssertionError();
+		}
+	}
+}
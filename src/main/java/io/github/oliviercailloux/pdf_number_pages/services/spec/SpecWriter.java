@@ -0,0 +1,160 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+/**
+ * Writes specs in the text form described in {@link DocumentSpec}, as a stream:
+ * the outline is written while it is walked, without building the text in
+ * memory.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class SpecWriter {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(SpecWriter.class);
+
+	static String escape(String text) {
+		int i = 0;
+		while (i < text.length() && !needsEscape(text.charAt(i))) {
+			++i;
+		}
+		if (i == text.length()) {
+			return text;
+		}
+		final StringBuilder escaped = new StringBuilder(text.length() + 8);
+		escaped.append(text, 0, i);
+		for (; i < text.length(); ++i) {
+			final char c = text.charAt(i);
+			switch (c) {
+			case '\\':
+				escaped.append("\\\\");
+				break;
+			case '\t':
+				escaped.append("\\t");
+				break;
+			case '\n':
+				escaped.append("\\n");
+				break;
+			case '\r':
+				escaped.append("\\r");
+				break;
+			default:
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static boolean needsEscape(char c) {
+		return c == '\\' || c == '\t' || c == '\n' || c == '\r';
+	}
+
+	/**
+	 * Writes the spec to the given file, in UTF-8, replacing its content if it
+	 * exists.
+	 */
+	public void write(DocumentSpec spec, Path path) throws IOException {
+		try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			write(spec, writer);
+		}
+	}
+
+	/**
+	 * Writes the spec to the given writer, which this method does not close. The
+	 * writer should be buffered.
+	 */
+	public void write(DocumentSpec spec, Writer writer) throws IOException {
+		requireNonNull(spec);
+		requireNonNull(writer);
+		writer.write(DocumentSpec.HEADER);
+		writer.write('\n');
+		if (spec.getCropBox().isPresent()) {
+			writeCropBox(spec.getCropBox().get(), writer);
+		}
+		if (spec.getLabelRangesByIndex().isPresent()) {
+			writeLabels(spec.getLabelRangesByIndex().get(), writer);
+		}
+		if (spec.getOutline().isPresent()) {
+			writeOutline(spec.getOutline().get(), writer);
+		}
+		writer.flush();
+	}
+
+	private void writeCropBox(BBox cropBox, Writer writer) throws IOException {
+		writer.write("crop " + cropBox.getMin().getX() + " " + cropBox.getMin().getY() + " " + cropBox.getMax().getX()
+				+ " " + cropBox.getMax().getY());
+		writer.write('\n');
+	}
+
+	private void writeLabels(LabelRangesByIndex labelRangesByIndex, Writer writer) throws IOException {
+		writer.write("labels");
+		writer.write('\n');
+		for (Entry<Integer, PDPageLabelRangeWithEquals> entry : labelRangesByIndex.entrySet()) {
+			final PDPageLabelRangeWithEquals range = entry.getValue();
+			writer.write(entry.getKey().toString());
+			writer.write(' ');
+			writer.write(RangeStyle.fromPdfBoxStyle(range.getStyle()).name());
+			writer.write(' ');
+			writer.write(Integer.toString(range.getStart()));
+			final String prefix = range.getPrefix();
+			if (prefix != null && !prefix.isEmpty()) {
+				writer.write(' ');
+				writer.write(escape(prefix));
+			}
+			writer.write('\n');
+		}
+	}
+
+	/**
+	 * Walks the outline in pre-order with an explicit stack rather than
+	 * recursion, so that a deep outline can’t overflow the stack.
+	 */
+	private void writeOutline(Outline outline, Writer writer) throws IOException {
+		writer.write("outline");
+		writer.write('\n');
+		/** The siblings remaining to write, at each depth. */
+		final Deque<Iterator<OutlineNode>> toWrite = new ArrayDeque<>();
+		toWrite.push(outline.getChildren().iterator());
+		while (!toWrite.isEmpty()) {
+			final Iterator<OutlineNode> siblings = toWrite.peek();
+			if (!siblings.hasNext()) {
+				toWrite.pop();
+				continue;
+			}
+			final OutlineNode node = siblings.next();
+			final PdfBookmark bookmark = node.getBookmark().get();
+			for (int i = 1; i < toWrite.size(); ++i) {
+				writer.write('\t');
+			}
+			writer.write(Integer.toString(bookmark.getPhysicalPageNumber()));
+			writer.write(' ');
+			writer.write(escape(bookmark.getTitle()));
+			writer.write('\n');
+			if (!node.getChildren().isEmpty()) {
+				toWrite.push(node.getChildren().iterator());
+			}
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package io.github.oliviercailloux.pdf_number_pages.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+
+/**
+ * A file source that fails with an {@link InterruptedIOException} when the
+ * reading thread has been interrupted, so that parsing (which seeks to each
+ * object) and copying (which reads in bulk) stop soon after a cancellation.
+ * Single byte reads, which stay within the current page, are not checked.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class InterruptibleFileSource extends RandomAccessBufferedFileInputStream {
+	public InterruptibleFileSource(File file) throws IOException {
+		super(file);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkInterrupted();
+		return super.read(b, off, len);
+	}
+
+	@Override
+	public void seek(long newOffset) throws IOException {
+		checkInterrupted();
+		super.seek(newOffset);
+	}
+
+	private static void checkInterrupted() throws InterruptedIOException {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new InterruptedIOException("Interrupted.");
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package io.github.oliviercailloux.pdf_number_pages.utils;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * <p>
+ * An index from the named destinations of a document to the physical indices
+ * of the pages they target, built with a single walk over the catalog’s
+ * <code>/Dests</code> dictionary and the <code>/Names/Dests</code> name tree.
+ * </p>
+ * <p>
+ * Resolving a name through PDFBox walks the name tree each time; this object
+ * answers in constant time. When a name is defined in both structures, the
+ * <code>/Dests</code> dictionary wins, as in PDFBox. Names whose destination
+ * targets no page of the document are not indexed.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class NamedDestinationIndex {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(NamedDestinationIndex.class);
+
+	private static COSBase dereference(COSBase base) {
+		return base instanceof COSObject ? ((COSObject) base).getObject() : base;
+	}
+
+	private final PageIndex pageIndex;
+
+	private final Map<String, Integer> pageIndices;
+
+	public NamedDestinationIndex(PDDocumentCatalog catalog, PageIndex pageIndex) {
+		this.pageIndex = requireNonNull(pageIndex);
+		pageIndices = new HashMap<>();
+		final COSDictionary root = catalog.getCOSObject();
+		final COSBase names = dereference(root.getDictionaryObject(COSName.NAMES));
+		if (names instanceof COSDictionary) {
+			final COSBase tree = dereference(((COSDictionary) names).getDictionaryObject(COSName.DESTS));
+			if (tree instanceof COSDictionary) {
+				putNameTree((COSDictionary) tree);
+			}
+		}
+		final COSBase dests = dereference(root.getDictionaryObject(COSName.DESTS));
+		if (dests instanceof COSDictionary) {
+			final COSDictionary destsDict = (COSDictionary) dests;
+			for (COSName name : destsDict.keySet()) {
+				put(name.getName(), destsDict.getDictionaryObject(name));
+			}
+		}
+		LOGGER.debug("Indexed {} named destinations.", pageIndices.size());
+	}
+
+	/**
+	 * @return the physical index of the page targeted by the given named
+	 *         destination, or -1 if that name is unknown or targets no page of
+	 *         the document.
+	 */
+	public int indexOf(String name) {
+		final Integer index = pageIndices.get(name);
+		return index == null ? -1 : index;
+	}
+
+	public int size() {
+		return pageIndices.size();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Size", pageIndices.size()).toString();
+	}
+
+	/**
+	 * @param destination
+	 *            an explicit destination: an array whose first element is a page,
+	 *            or a dictionary whose entry D is such an array.
+	 */
+	private void put(String name, COSBase destination) {
+		final COSBase dest = dereference(destination);
+		final COSBase array = dest instanceof COSDictionary
+				? dereference(((COSDictionary) dest).getDictionaryObject(COSName.D))
+				: dest;
+		if (!(array instanceof COSArray) || ((COSArray) array).size() == 0) {
+			return;
+		}
+		final COSBase page = dereference(((COSArray) array).get(0));
+		final int index;
+		if (page instanceof COSDictionary) {
+			index = pageIndex.indexOf((COSDictionary) page);
+		} else if (page instanceof COSNumber) {
+			/** Malformed, but PDFBox reads this as a page index. */
+			final int number = ((COSNumber) page).intValue();
+			index = number >= 0 && number < pageIndex.size() ? number : -1;
+		} else {
+			index = -1;
+		}
+		if (index != -1) {
+			pageIndices.put(name, index);
+		}
+	}
+
+	/**
+	 * Walks the name tree with an explicit stack, ignoring nodes already visited.
+	 */
+	private void putNameTree(COSDictionary tree) {
+		final Set<COSDictionary> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+		final Deque<COSDictionary> toVisit = new ArrayDeque<>();
+		toVisit.push(tree);
+		while (!toVisit.isEmpty()) {
+			final COSDictionary node = toVisit.pop();
+			if (!visited.add(node)) {
+				continue;
+			}
+			final COSBase namesArray = dereference(node.getDictionaryObject(COSName.NAMES));
+			if (namesArray instanceof COSArray) {
+				final COSArray entries = (COSArray) namesArray;
+				for (int i = 0; i + 1 < entries.size(); i += 2) {
+					final COSBase key = dereference(entries.get(i));
+					if (key instanceof COSString) {
+						put(((COSString) key).getString(), entries.get(i + 1));
+					}
+				}
+			}
+			final COSBase kids = dereference(node.getDictionaryObject(COSName.KIDS));
+			if (kids instanceof COSArray) {
+				for (COSBase kid : (COSArray) kids) {
+					final COSBase kidDict = dereference(kid);
+					if (kidDict instanceof COSDictionary) {
+						toVisit.push((COSDictionary) kidDict);
+					}
+				}
+			}
+		}
+	}
+}
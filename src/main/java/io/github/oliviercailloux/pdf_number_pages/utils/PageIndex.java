@@ -0,0 +1,79 @@
+package io.github.oliviercailloux.pdf_number_pages.utils;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.collect.Lists;
+
+/**
+ * <p>
+ * A bidirectional index between the pages of a document (identified by their
+ * COS dictionary) and their physical indices, built with a single walk over the
+ * page tree.
+ * </p>
+ * <p>
+ * {@link PDPageTree#indexOf(PDPage)} and {@link PDPageTree#get(int)} each walk
+ * the page tree, which costs, when called once per bookmark, a time
+ * proportional to the number of pages times the number of bookmarks. This
+ * object answers both questions in constant time.
+ * </p>
+ * <p>
+ * Reflects the page tree at the time of construction: must be rebuilt if pages
+ * are added, removed or moved.
+ * </p>
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class PageIndex {
+	private final Map<COSDictionary, Integer> indices;
+
+	private final List<PDPage> pages;
+
+	public PageIndex(PDPageTree pageTree) {
+		pages = Lists.newArrayList(pageTree);
+		indices = new IdentityHashMap<>(pages.size());
+		for (int i = 0; i < pages.size(); ++i) {
+			indices.put(pages.get(i).getCOSObject(), i);
+		}
+	}
+
+	public PDPage getPage(int index) {
+		checkElementIndex(index, pages.size());
+		return pages.get(index);
+	}
+
+	/**
+	 * @return the physical index of the given page, or -1 if it does not belong to
+	 *         the page tree.
+	 */
+	public int indexOf(COSDictionary pageDictionary) {
+		final Integer index = indices.get(pageDictionary);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the physical index of the given page, or -1 if it does not belong to
+	 *         the page tree.
+	 */
+	public int indexOf(PDPage page) {
+		return indexOf(page.getCOSObject());
+	}
+
+	public int size() {
+		return pages.size();
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this).add("Size", pages.size()).toString();
+	}
+}
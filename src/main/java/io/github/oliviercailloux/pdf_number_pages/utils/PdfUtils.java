@@ -1,6 +1,13 @@
 package io.github.oliviercailloux.pdf_number_pages.utils;
 
+import java.io.File;
+import java.io.IOException;
+
 import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
 
 public class PdfUtils {
@@ -14,4 +21,25 @@ public class PdfUtils {
 		return new BoundingBox(source.getLowerLeftX(), source.getLowerLeftY(), source.getUpperRightX(),
 				source.getUpperRightY());
 	}
+
+	/**
+	 * Loads the whole document, as {@link PDDocument#load(File)} does, but
+	 * buffering in the given scratch file. The returned document owns the scratch
+	 * file and closes it when closed. If loading fails, the scratch file is
+	 * closed. Loading stops with an {@link java.io.InterruptedIOException} if the
+	 * current thread is interrupted.
+	 */
+	public static PDDocument load(File file, ScratchFile scratchFile) throws IOException {
+		InterruptibleFileSource source = null;
+		try {
+			source = new InterruptibleFileSource(file);
+			final PDFParser parser = new PDFParser(source, scratchFile);
+			parser.parse();
+			return parser.getPDDocument();
+		} catch (IOException e) {
+			IOUtils.closeQuietly(scratchFile);
+			IOUtils.closeQuietly(source);
+			throw e;
+		}
+	}
 }
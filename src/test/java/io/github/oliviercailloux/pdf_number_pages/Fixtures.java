@@ -0,0 +1,103 @@
+package io.github.oliviercailloux.pdf_number_pages;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+
+/**
+ * Sample documents and label ranges shared by the tests.
+ *
+ * @author Olivier Cailloux
+ *
+ */
+public class Fixtures {
+	/**
+	 * @return a document with the given number of pages, each with some content,
+	 *         that the caller must close.
+	 */
+	public static PDDocument newDocument(int nbPages) throws IOException {
+		final PDDocument document = new PDDocument();
+		for (int i = 0; i < nbPages; ++i) {
+			final PDPage page = new PDPage();
+			document.addPage(page);
+			try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+				content.addRect(10, 10, 100, 100);
+				content.stroke();
+			}
+		}
+		return document;
+	}
+
+	/**
+	 * @return a range with the given style, from the first page of its range.
+	 */
+	public static PDPageLabelRangeWithEquals newRange(String style) {
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(style);
+		return range;
+	}
+
+	/**
+	 * @return lower roman labels for the first four pages, then decimal ones.
+	 */
+	public static LabelRangesByIndex newRanges() {
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		ranges.put(0, newRange(PDPageLabelRange.STYLE_ROMAN_LOWER));
+		ranges.put(4, newRange(PDPageLabelRange.STYLE_DECIMAL));
+		return ranges;
+	}
+
+	/**
+	 * @return labels of the given style for all pages.
+	 */
+	public static LabelRangesByIndex newRanges(String style) {
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		ranges.put(0, newRange(style));
+		return ranges;
+	}
+
+	/**
+	 * Writes, possibly over an existing file, a document with the given number of
+	 * pages and no labels.
+	 *
+	 * @return the given path.
+	 */
+	public static Path write(Path path, int nbPages) throws IOException {
+		return write(path, nbPages, null);
+	}
+
+	/**
+	 * Writes, possibly over an existing file, a document with the given number of
+	 * pages.
+	 *
+	 * @param style
+	 *            the style of the labels of all pages, or <code>null</code> for no
+	 *            labels.
+	 * @return the given path.
+	 */
+	public static Path write(Path path, int nbPages, String style) throws IOException {
+		try (PDDocument document = newDocument(nbPages)) {
+			if (style != null) {
+				final PDPageLabels labels = new PDPageLabels(document);
+				final PDPageLabelRange range = new PDPageLabelRange();
+				range.setStyle(style);
+				labels.setLabelItem(0, range);
+				document.getDocumentCatalog().setPageLabels(labels);
+			}
+			document.save(path.toFile());
+		}
+		return path;
+	}
+
+	private Fixtures() {
+		/** Static methods only. */
+	}
+}
@@ -0,0 +1,94 @@
+package io.github.oliviercailloux.pdf_number_pages.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveEngine;
+import io.github.oliviercailloux.pdf_number_pages.services.spec.DocumentSpec;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+public class TestBatch {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReaderFailure() throws Exception {
+		final File outputs = folder.newFolder("out");
+		final Path good = Fixtures.write(folder.newFile("good.pdf").toPath(), 3);
+		final Path bad = folder.newFile("bad.pdf").toPath();
+		try (PDDocument document = Fixtures.newDocument(3)) {
+			/** PDFBox expects a dictionary, and fails with a ClassCastException. */
+			document.getDocumentCatalog().getCOSObject().setItem(COSName.PAGE_LABELS, COSInteger.ONE);
+			document.save(bad.toFile());
+		}
+
+		final SaveEngine engine = new SaveEngine(2, Long.MAX_VALUE);
+		final BatchSummary summary = new Batch(engine).run(ImmutableList.of(bad, good), outputs.toPath());
+		engine.close();
+
+		assertEquals(2, summary.getOutcomes().size());
+		assertEquals(1, summary.getNbSucceeded());
+		assertEquals(bad, summary.getFailures().get(0).getInput());
+		assertTrue(summary.getFailures().get(0).getErrorMessage().contains("ClassCastException"));
+		assertTrue(new File(outputs, "good.pdf").exists());
+	}
+
+	@Test
+	public void testRun() throws Exception {
+		final File inputs = folder.newFolder("in");
+		final File templates = folder.newFolder("templates");
+		final File outputs = folder.newFolder("out");
+		final List<Path> paths = Lists.newArrayList();
+		for (int i = 0; i < 6; ++i) {
+			paths.add(Fixtures.write(new File(inputs, "doc" + i + ".pdf").toPath(), 3));
+		}
+		final Path shared = Fixtures.write(folder.newFile("shared.pdf").toPath(), 3,
+				PDPageLabelRange.STYLE_ROMAN_LOWER);
+		Fixtures.write(new File(templates, "doc2.pdf").toPath(), 3, PDPageLabelRange.STYLE_LETTERS_UPPER);
+		Files.write(new File(inputs, "doc3.pdf" + Batch.SPEC_EXTENSION).toPath(),
+				ImmutableList.of(DocumentSpec.HEADER, "crop 0 0 100 100", "labels", "0 UPPER 1"));
+		paths.add(folder.newFile("missing.pdf").toPath());
+
+		final SaveEngine engine = new SaveEngine(3, Long.MAX_VALUE);
+		final Batch batch = new Batch(engine);
+		batch.setTemplate(shared);
+		batch.setTemplatesDirectory(templates.toPath());
+		batch.setCropBox(new BBox(new BBPoint(0, 0), new BBPoint(200, 300)));
+		final BatchSummary summary = batch.run(paths, outputs.toPath());
+		engine.close();
+
+		assertEquals(7, summary.getOutcomes().size());
+		assertEquals(6, summary.getNbSucceeded());
+		assertEquals(1, summary.getFailures().size());
+		assertTrue(summary.getLatencyNanos(0.5d) <= summary.getLatencyNanos(1d));
+		assertTrue(summary.toString().contains("Processed 7 files (6 succeeded, 1 failed)"));
+		for (int i = 0; i < 6; ++i) {
+			try (PDDocument document = PDDocument.load(new File(outputs, "doc" + i + ".pdf"))) {
+				final String expected = i == 2 || i == 3 ? PDPageLabelRange.STYLE_LETTERS_UPPER
+						: PDPageLabelRange.STYLE_ROMAN_LOWER;
+				assertEquals(expected, document.getDocumentCatalog().getPageLabels().getPageLabelRange(0).getStyle());
+				assertEquals(i == 3 ? 100f : 300f, document.getPage(1).getCropBox().getHeight(), 0f);
+			}
+		}
+	}
+
+}
@@ -2,11 +2,19 @@ package io.github.oliviercailloux.pdf_number_pages.model;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.junit.Test;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.eventbus.Subscribe;
+
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
 
 public class TestOutline {
 
@@ -89,6 +97,255 @@ public class TestOutline {
 		assertFalse(n0prime.equals(n1prime));
 	}
 
+	@Test
+	public void testEvents() {
+		final List<Object> events = new ArrayList<>();
+		final Object listener = new Object() {
+			@Subscribe
+			public void modelChanged(ModelChanged event) {
+				events.add(event);
+			}
+
+			@Subscribe
+			public void outlineChanged(OutlineChanged event) {
+				events.add(event);
+			}
+		};
+		final Outline outline = new Outline();
+		final OutlineNode n0 = OutlineNode.newOutline(new PdfBookmark("n0", 0));
+		final OutlineNode n00 = OutlineNode.newOutline(new PdfBookmark("n00", 0));
+		n0.addAsLastChild(n00);
+		outline.addAsLastChild(n0);
+		outline.register(listener);
+		n00.setBookmark(new PdfBookmark("n00", 1));
+		assertEquals(1, events.size());
+		final OutlineChanged bookmarkSet = (OutlineChanged) events.get(0);
+		assertEquals(OutlineOperation.SET_BOOKMARK, bookmarkSet.getOp());
+		assertSame(n00, bookmarkSet.getNode());
+		n0.remove(0);
+		assertEquals(2, events.size());
+		final OutlineChanged removal = (OutlineChanged) events.get(1);
+		assertEquals(OutlineOperation.REMOVE, removal.getOp());
+		assertTrue(removal.getParent() == n0);
+		assertSame(n00, removal.getNode());
+
+		/** The removed node no longer belongs to the outline. */
+		n00.setBookmark(new PdfBookmark("n00", 2));
+		assertEquals(2, events.size());
+		n00.register(listener);
+		n00.setBookmark(new PdfBookmark("n00", 3));
+		assertEquals(3, events.size());
+		/** Listening to a node does not tell about changes to its parent. */
+		outline.unregister(listener);
+		n0.addAsLastChild(n00);
+		assertEquals(3, events.size());
+		n00.setBookmark(new PdfBookmark("n00", 4));
+		assertEquals(4, events.size());
+
+		outline.register(listener);
+		final OutlineNode n01 = OutlineNode.newOutline(new PdfBookmark("n01", 0));
+		n0.addAsLastChild(n01);
+		assertEquals(5, events.size());
+		final OutlineChanged addition = (OutlineChanged) events.get(4);
+		assertEquals(OutlineOperation.ADD, addition.getOp());
+		assertSame(n0, addition.getParent());
+		assertEquals(1, addition.getChildNb());
+		assertSame(n01, addition.getNode());
+	}
+
+	@Test
+	public void testHashes() {
+		final Outline outline = new Outline();
+		final Outline other = new Outline();
+		for (Outline o : ImmutableList.of(outline, other)) {
+			final OutlineNode n0 = OutlineNode.newOutline(new PdfBookmark("n0", 0));
+			n0.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("n00", 1)));
+			o.addAsLastChild(n0);
+			o.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("n1", 2)));
+		}
+		assertEquals(outline, other);
+		assertEquals(outline.hashCode(), other.hashCode());
+
+		/** Changing a node deep down changes the cached hashes of its ancestors. */
+		final OutlineNode n00 = outline.getChildren().get(0).getChildren().get(0);
+		n00.setBookmark(new PdfBookmark("n00", 3));
+		assertFalse(outline.equals(other));
+		assertFalse(outline.hashCode() == other.hashCode());
+		n00.setBookmark(new PdfBookmark("n00", 1));
+		assertEquals(outline, other);
+		assertEquals(outline.hashCode(), other.hashCode());
+
+		final OutlineNode n1 = other.getChildren().get(1);
+		n1.changeParent(other.getChildren().get(0));
+		assertFalse(outline.equals(other));
+		n1.changeParent(other);
+		assertEquals(outline, other);
+		assertEquals(outline.hashCode(), other.hashCode());
+		outline.clear();
+		assertEquals(new Outline().hashCode(), outline.hashCode());
+	}
+
+	@Test
+	public void testManySiblings() {
+		final int nbSiblings = 100_000;
+		final Outline outline = new Outline();
+		for (int i = 0; i < nbSiblings; ++i) {
+			outline.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("n" + i, i)));
+		}
+		final OutlineNode first = outline.getChildren().get(0);
+		/**
+		 * Indents siblings spread over the list under their previous sibling, as the
+		 * GUI does, which asks for local orders after each change.
+		 */
+		final int nbIndented = 1000;
+		for (int i = 0; i < nbIndented; ++i) {
+			final OutlineNode node = outline.getChildren().get(1 + (i * 97) % (outline.getChildren().size() - 1));
+			final OutlineNode previous = outline.getChildren().get(node.getLocalOrder().get() - 1);
+			node.changeParent(previous);
+			assertEquals(previous.getChildren().size() - 1, node.getLocalOrder().get().intValue());
+		}
+		assertEquals(nbSiblings - nbIndented, outline.getChildren().size());
+		for (int i = 0; i < outline.getChildren().size(); ++i) {
+			assertEquals(i, outline.getChildren().get(i).getLocalOrder().get().intValue());
+		}
+		final OutlineNode firstChild = first.getChildren().get(0);
+		assertEquals(ImmutableList.of(first, firstChild), firstChild.getAscendants());
+
+		first.setAsNextSiblingOf(outline.getChildren().get(nbSiblings / 2));
+		assertEquals(first, outline.getChildren().get(nbSiblings / 2));
+		assertEquals(nbSiblings / 2, first.getLocalOrder().get().intValue());
+	}
+
+	@Test
+	public void testRevisions() {
+		final PdfPart pdf = new PdfPart();
+		final Outline outline = new Outline();
+		pdf.setOutline(outline);
+		final long start = pdf.getRevision();
+		final OutlineNode n0 = OutlineNode.newOutline(new PdfBookmark("n0", 0));
+		outline.addAsLastChild(n0);
+		final OutlineNode n01 = OutlineNode.newOutline(new PdfBookmark("n01", 1));
+		n0.addAsLastChild(n01);
+		final long added = pdf.getRevision();
+		assertTrue(added > start);
+		n01.setBookmark(new PdfBookmark("n01", 2));
+		assertTrue(pdf.getRevision() > added);
+		final long changed = pdf.getRevision();
+
+		/** Replacing a part, even by one with a lower revision, increases the revision. */
+		pdf.setOutline(new Outline());
+		assertEquals(changed + 1, pdf.getRevision());
+		pdf.setOutline(outline);
+		assertEquals(changed + 2, pdf.getRevision());
+		pdf.setCropBox(new BBox(new BBPoint(0, 0), new BBPoint(10, 10)));
+		assertTrue(pdf.getRevision() > changed + 2);
+
+		/** Edits that cancel out change the revision, but not the hash. */
+		final int hash = pdf.hashCode();
+		final long before = pdf.getRevision();
+		n01.setBookmark(new PdfBookmark("n01", 1));
+		n01.setBookmark(new PdfBookmark("n01", 2));
+		assertTrue(pdf.getRevision() > before);
+		assertEquals(hash, pdf.hashCode());
+	}
+
+	@Test
+	public void testSnapshots() {
+		final PdfPart pdf = new PdfPart();
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(RangeStyle.DECIMAL.toPdfBoxStyle());
+		pdf.getLabelRangesByIndex().putNew(0, range);
+		final Outline outline = new Outline();
+		pdf.setOutline(outline);
+		for (int i = 0; i < 3; ++i) {
+			final OutlineNode chapter = OutlineNode.newOutline(new PdfBookmark("c" + i, i));
+			chapter.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("s" + i, i)));
+			outline.addAsLastChild(chapter);
+		}
+		final PdfPartSnapshot before = pdf.snapshot();
+		assertEquals(outline.hashCode(), before.getOutline().get().hashCode());
+		assertSame(before.getOutline().get(), Outline.snapshotOf(outline));
+
+		outline.getChildren().get(1).getChildren().get(0).setBookmark(new PdfBookmark("edited", 1));
+		pdf.getLabelRangesByIndex().setPrefix(0, "p-");
+		final PdfPartSnapshot after = pdf.snapshot();
+		assertFalse(after.equals(before));
+		assertEquals("s1", before.getOutline().get().getChildren().get(1).getChildren().get(0).getBookmark().get()
+				.getTitle());
+		assertEquals(null, before.getLabelRangesByIndex().get(0).getPrefix());
+		assertEquals("p-", after.getLabelRangesByIndex().get(0).getPrefix());
+		/** Only the path from the change to the root is new. */
+		assertSame(before.getOutline().get().getChildren().get(0), after.getOutline().get().getChildren().get(0));
+		assertSame(before.getOutline().get().getChildren().get(2), after.getOutline().get().getChildren().get(2));
+
+		final Outline copy = new Outline();
+		copy.addCopies(after.getOutline().get());
+		assertEquals(outline, copy);
+		assertSame(after.getOutline().get().getChildren().get(1), Outline.snapshotOf(copy.getChildren().get(1)));
+		assertEquals(after.getOutline().get(), Outline.snapshotOf(copy));
+	}
+
+	@Test
+	public void testTransactions() {
+		final List<Object> events = new ArrayList<>();
+		final Object listener = new Object() {
+			@Subscribe
+			public void modelChanged(ModelChanged event) {
+				events.add(event);
+			}
+
+			@Subscribe
+			public void outlineChanged(OutlineChanged event) {
+				events.add(event);
+			}
+		};
+		final PdfPart pdf = new PdfPart();
+		final Outline outline = new Outline();
+		pdf.setOutline(outline);
+		pdf.register(listener);
+
+		final Outline source = new Outline();
+		for (int i = 0; i < 10000; ++i) {
+			source.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("n" + i, i)));
+		}
+		outline.addCopies(Outline.snapshotOf(source));
+		assertEquals(1, events.size());
+		assertEquals(ModelOperation.ALL, ((ModelChanged) events.get(0)).getOp());
+
+		/** A single change is told as such, once the outermost transaction commits. */
+		pdf.beginTransaction();
+		try {
+			outline.beginTransaction();
+			try {
+				outline.remove(5);
+			} finally {
+				outline.commit();
+			}
+			assertEquals(1, events.size());
+		} finally {
+			pdf.commit();
+		}
+		assertEquals(2, events.size());
+		assertEquals(OutlineOperation.REMOVE, ((OutlineChanged) events.get(1)).getOp());
+
+		pdf.beginTransaction();
+		try {
+			pdf.getLabelRangesByIndex().add();
+			pdf.getLabelRangesByIndex().add();
+			pdf.getLabelRangesByIndex().move(2, 5);
+			outline.clear();
+		} finally {
+			pdf.commit();
+		}
+		assertEquals(4, events.size());
+		assertEquals(ModelOperation.ALL, ((ModelChanged) events.get(2)).getOp());
+		assertTrue(outline.getChildren().isEmpty());
+
+		pdf.beginTransaction();
+		pdf.commit();
+		assertEquals(4, events.size());
+	}
+
 	@Test
 	public void testWithEmpty() {
 		/**
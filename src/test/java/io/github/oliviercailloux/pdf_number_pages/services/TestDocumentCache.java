@@ -0,0 +1,82 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.PdfSaver;
+import io.github.oliviercailloux.pdf_number_pages.services.saver.SaveJob;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+public class TestDocumentCache {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testEviction() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 3);
+		final DocumentCache cache = new DocumentCache(0);
+		try (DocumentLease lease = cache.acquire(input, MemoryPolicy.mainMemoryOnly())) {
+			assertFalse(lease.isCached());
+		}
+		assertEquals(0, cache.getTotalBytes());
+		assertFalse(cache.acquireIfPresent(input).isPresent());
+	}
+
+	@Test
+	public void testSavesReuseTheParse() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 3);
+		final DocumentCache cache = new DocumentCache();
+		final PdfSaver saver = new PdfSaver();
+		saver.setDocumentCache(cache);
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		final PDPageLabelRangeWithEquals roman = new PDPageLabelRangeWithEquals();
+		roman.setStyle(PDPageLabelRange.STYLE_ROMAN_LOWER);
+		ranges.put(0, roman);
+
+		final Path cropped = folder.getRoot().toPath().resolve("cropped.pdf");
+		final BBox box = new BBox(new BBPoint(10, 10), new BBPoint(100, 100));
+		saver.save(new SaveJob(ranges, Optional.empty(), Optional.of(box), input, cropped, false));
+		assertTrue(saver.getErrorMessage(), saver.succeeded());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0, cache.getHits());
+
+		final Path plain = folder.getRoot().toPath().resolve("plain.pdf");
+		saver.save(new SaveJob(ranges, Optional.empty(), Optional.empty(), input, plain, false));
+		assertTrue(saver.getErrorMessage(), saver.succeeded());
+		assertEquals(1, cache.getHits());
+		try (PDDocument document = PDDocument.load(cropped.toFile())) {
+			assertEquals(90f, document.getPage(0).getCropBox().getWidth(), 0f);
+		}
+		try (PDDocument document = PDDocument.load(plain.toFile())) {
+			/** The crop box of the previous save has been undone. */
+			assertNull(document.getPage(0).getCOSObject().getItem(COSName.CROP_BOX));
+			assertEquals(PDPageLabelRange.STYLE_ROMAN_LOWER,
+					document.getDocumentCatalog().getPageLabels().getPageLabelRange(0).getStyle());
+		}
+
+		/** The input changes: the entry is invalidated and the file parsed again. */
+		Fixtures.write(input, 5);
+		try (DocumentLease lease = cache.acquire(input, MemoryPolicy.mainMemoryOnly())) {
+			assertTrue(lease.isCached());
+			assertEquals(5, lease.getDocument().getNumberOfPages());
+		}
+		assertEquals(2, cache.getMisses());
+	}
+}
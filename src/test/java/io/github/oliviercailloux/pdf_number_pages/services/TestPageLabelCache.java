@@ -0,0 +1,91 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+
+public class TestPageLabelCache {
+	private static final int NB_PAGES = 100;
+
+	private static void assertLabels(PageLabelCache cache, LabelRangesByIndex ranges) {
+		final PdfPageLabelComputer computer = new PdfPageLabelComputer();
+		for (int i = 0; i < NB_PAGES; ++i) {
+			assertEquals(computer.getLabelFromPageIndex(i, ranges), cache.getLabel(i));
+		}
+	}
+
+	@Test
+	public void testFarPages() {
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		final PDPageLabelRangeWithEquals first = new PDPageLabelRangeWithEquals();
+		first.setStyle(RangeStyle.DECIMAL.toPdfBoxStyle());
+		ranges.putNew(0, first);
+
+		final PageLabelCache cache = PageLabelCache.newPageLabelCache(ranges);
+		assertEquals("1000000000", cache.getLabel(999_999_999));
+		assertEquals("1000000000", cache.getLabel(999_999_999));
+		assertEquals(1, cache.getHits());
+		assertLabels(cache, ranges);
+
+		/** Pages 0 to 99 stay in the first range. */
+		final PDPageLabelRangeWithEquals second = new PDPageLabelRangeWithEquals();
+		second.setStyle(RangeStyle.ROMAN_LOWER.toPdfBoxStyle());
+		ranges.putNew(NB_PAGES, second);
+		assertEquals(1, cache.getInvalidations());
+		assertEquals("cmxcix", cache.getLabel(NB_PAGES + 998));
+		assertLabels(cache, ranges);
+		ranges.clear();
+		assertEquals(1 + NB_PAGES + 1, cache.getInvalidations());
+	}
+
+	@Test
+	public void testInvalidation() {
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		final PDPageLabelRangeWithEquals first = new PDPageLabelRangeWithEquals();
+		first.setStyle(RangeStyle.ROMAN_LOWER.toPdfBoxStyle());
+		ranges.putNew(0, first);
+		final PDPageLabelRangeWithEquals second = new PDPageLabelRangeWithEquals();
+		second.setStyle(RangeStyle.DECIMAL.toPdfBoxStyle());
+		ranges.putNew(10, second);
+		final PDPageLabelRangeWithEquals third = new PDPageLabelRangeWithEquals();
+		third.setStyle(RangeStyle.UPPER.toPdfBoxStyle());
+		ranges.putNew(90, third);
+
+		final PageLabelCache cache = PageLabelCache.newPageLabelCache(ranges);
+		assertLabels(cache, ranges);
+		assertEquals(0, cache.getHits());
+		assertEquals(NB_PAGES, cache.getMisses());
+		assertEquals("1", cache.getLabel(10));
+		assertEquals(1, cache.getHits());
+
+		ranges.setPrefix(10, "P-");
+		assertEquals(80, cache.getInvalidations());
+		assertLabels(cache, ranges);
+		assertEquals("P-1", cache.getLabel(10));
+		assertEquals(NB_PAGES + 80, cache.getMisses());
+
+		/** Pages 50 to 89 move from the second range to the new one. */
+		final PDPageLabelRangeWithEquals added = new PDPageLabelRangeWithEquals();
+		added.setStyle(RangeStyle.ROMAN_UPPER.toPdfBoxStyle());
+		ranges.putNew(50, added);
+		assertEquals(80 + 40, cache.getInvalidations());
+		assertEquals("IV", cache.getLabel(53));
+
+		ranges.setStart(0, 5);
+		assertEquals(80 + 40 + 10, cache.getInvalidations());
+		assertLabels(cache, ranges);
+
+		/** Pages 50 to 89 go back to the second range. */
+		ranges.removeExisting(50);
+		assertEquals(80 + 40 + 10 + 40, cache.getInvalidations());
+		assertEquals("P-44", cache.getLabel(53));
+		assertLabels(cache, ranges);
+
+		ranges.clear();
+		assertEquals(80 + 40 + 10 + 40 + NB_PAGES, cache.getInvalidations());
+	}
+}
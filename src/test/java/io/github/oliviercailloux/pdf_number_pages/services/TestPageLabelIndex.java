@@ -0,0 +1,63 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
+
+public class TestPageLabelIndex {
+	private static final int NB_PAGES = 300;
+
+	private static PDPageLabelRangeWithEquals newRange(RangeStyle style, String prefix, int start) {
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(style.toPdfBoxStyle());
+		range.setPrefix(prefix);
+		range.setStart(start);
+		return range;
+	}
+
+	@Test
+	public void testAgainstLabels() {
+		final LabelRangesByIndex ranges = new LabelRangesByIndex();
+		ranges.putNew(0, newRange(RangeStyle.LOWER, null, 1));
+		ranges.putNew(10, newRange(RangeStyle.ROMAN_LOWER, null, 1));
+		ranges.putNew(20, newRange(RangeStyle.DECIMAL, null, 1));
+		ranges.putNew(100, newRange(RangeStyle.DECIMAL, "A-", 1));
+		ranges.putNew(150, newRange(RangeStyle.DECIMAL, null, 50));
+		ranges.putNew(200, newRange(RangeStyle.NONE, "Cover", 1));
+		ranges.putNew(210, newRange(RangeStyle.ROMAN_UPPER, "A-", 10));
+		ranges.putNew(250, newRange(RangeStyle.DECIMAL, "A", 7));
+
+		final PdfPageLabelComputer computer = new PdfPageLabelComputer();
+		final Map<String, Integer> firstPages = new HashMap<>();
+		for (int i = 0; i < NB_PAGES; ++i) {
+			firstPages.putIfAbsent(computer.getLabelFromPageIndex(i, ranges), i);
+		}
+		final PageLabelIndex index = new PageLabelIndex(ranges, NB_PAGES);
+		for (Map.Entry<String, Integer> entry : firstPages.entrySet()) {
+			assertEquals(entry.getKey(), entry.getValue().intValue(), index.indexOf(entry.getKey()));
+		}
+		/**
+		 * “i” is both a letter, in page 8, and a numeral, in page 10; “50” to “80” are
+		 * both in pages 20 to 99 and 150 to 180.
+		 */
+		assertEquals(8, index.indexOf("i"));
+		assertEquals(69, index.indexOf("50"));
+		assertEquals(181, index.indexOf("81"));
+		assertEquals(256, index.indexOf("A13"));
+		assertEquals(-1, index.indexOf("A57"));
+		assertEquals(-1, index.indexOf("007"));
+		assertEquals(-1, index.indexOf("iiii"));
+		assertEquals(-1, index.indexOf("Cover1"));
+		assertEquals(-1, index.indexOf(""));
+
+		/** Without the number of pages, the last range goes on. */
+		assertEquals(1000 - 7 + 250, new PageLabelIndex(ranges, -1).indexOf("A1000"));
+	}
+}
@@ -2,11 +2,20 @@ package io.github.oliviercailloux.pdf_number_pages.services;
 
 import static org.junit.Assert.assertEquals;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
 import org.junit.Test;
 
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
 import io.github.oliviercailloux.pdf_number_pages.model.RangeStyle;
 
 public class TestPdfPageLabelComputer {
+	/**
+	 * The number of labels PDFBox computes at once.
+	 */
+	private static final int WINDOW = 1000;
 
 	@Test
 	public void test() {
@@ -31,4 +40,54 @@ public class TestPdfPageLabelComputer {
 		assertEquals("XXVII", comp.getLabel(27, RangeStyle.ROMAN_UPPER));
 	}
 
+	/**
+	 * Compares with the labels that PDFBox computes, for millions of pages, by
+	 * windows of consecutive pages starting at increasing numbers, in a document
+	 * with one range per window. Letter and roman labels get long quickly (a
+	 * thousand letters at 26,000, a thousand m at 1,000,000, each inserted at the
+	 * front by PDFBox), hence are compared on fewer numbers.
+	 */
+	@Test
+	public void testAgainstPdfBox() throws Exception {
+		final PdfPageLabelComputer comp = new PdfPageLabelComputer();
+		final StringBuilder builder = new StringBuilder();
+		int nbCompared = 0;
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < WINDOW; ++i) {
+				document.addPage(new PDPage());
+			}
+			for (RangeStyle style : RangeStyle.values()) {
+				final int max;
+				switch (style) {
+				case LOWER:
+				case UPPER:
+					max = 50_000;
+					break;
+				case ROMAN_LOWER:
+				case ROMAN_UPPER:
+					max = 200_000;
+					break;
+				default:
+					max = 2_000_000;
+				}
+				for (int start = 1; start <= max; start += WINDOW) {
+					final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+					range.setStyle(style.toPdfBoxStyle());
+					range.setStart(start);
+					range.setPrefix((start / WINDOW) % 2 == 0 ? "p" + start + "-" : null);
+					final LabelRangesByIndex ranges = new LabelRangesByIndex();
+					ranges.put(0, range);
+					final PDPageLabels labels = ranges.toPDPageLabel(document);
+					final String[] expected = labels.getLabelsByPageIndices();
+					for (int i = 0; i < WINDOW; ++i) {
+						builder.setLength(0);
+						comp.appendLabelFromPageIndex(builder, i, ranges);
+						assertEquals(expected[i], builder.toString());
+					}
+					nbCompared += WINDOW;
+				}
+			}
+		}
+		assertEquals(2 * 50_000 + 2 * 200_000 + 2 * 2_000_000, nbCompared);
+	}
 }
@@ -0,0 +1,252 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentNameDictionary;
+import org.apache.pdfbox.pdmodel.PDDestinationNameTreeNode;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDNamedDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineNode;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableMap;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+
+public class TestPdfReader {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCatalogOnly() throws Exception {
+		final Path input = writeSample();
+
+		final PdfReader full = new PdfReader();
+		full.setCatalogOnly(false);
+		final LabelRangesByIndex fullRanges = full.readLabelRanges(input);
+		assertTrue(full.succeeded());
+		assertTrue(full.outlineReadSucceeded());
+
+		final PdfReader catalogOnly = new PdfReader();
+		assertTrue(catalogOnly.isCatalogOnly());
+		final LabelRangesByIndex ranges = catalogOnly.readLabelRanges(input);
+		assertTrue(catalogOnly.succeeded());
+		assertTrue(catalogOnly.outlineReadSucceeded());
+
+		final PDPageLabelRangeWithEquals roman = new PDPageLabelRangeWithEquals();
+		roman.setStyle(PDPageLabelRange.STYLE_ROMAN_LOWER);
+		final PDPageLabelRangeWithEquals decimal = new PDPageLabelRangeWithEquals();
+		decimal.setStyle(PDPageLabelRange.STYLE_DECIMAL);
+		decimal.setPrefix("P-");
+		assertEquals(2, ranges.size());
+		assertEquals(roman, ranges.get(0));
+		assertEquals(decimal, ranges.get(3));
+		assertEquals(fullRanges, ranges);
+
+		final Outline expected = new Outline();
+		final OutlineNode chapter = OutlineNode.newOutline(new PdfBookmark("Chapter", 3));
+		chapter.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Section", 5)));
+		expected.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Preface", 1)));
+		expected.addAsLastChild(chapter);
+		assertEquals(expected, catalogOnly.getOutline().get());
+		assertEquals(full.getOutline().get(), catalogOnly.getOutline().get());
+
+		/** The contents of the pages, written as streams, stay unresolved. */
+		final CatalogParser parser = new CatalogParser(new RandomAccessBufferedFileInputStream(input.toFile()));
+		parser.parse();
+		try (PDDocument document = parser.getPDDocument()) {
+			final COSBase contents = document.getPage(0).getCOSObject().getItem(COSName.CONTENTS);
+			assertTrue(contents instanceof COSObject);
+			assertNull(((COSObject) contents).getObject());
+			assertTrue(parser.getNbResolved() + 10 <= document.getDocument().getXrefTable().size());
+		}
+	}
+
+	@Test
+	public void testHostileOutlines() throws Exception {
+		final File loop = folder.newFile("loop.pdf");
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage());
+			final PDDocumentOutline outline = new PDDocumentOutline();
+			final PDOutlineItem first = newItem(document, "First", 0);
+			final PDOutlineItem second = newItem(document, "Second", 0);
+			outline.addLast(first);
+			outline.addLast(second);
+			second.getCOSObject().setItem(COSName.NEXT, first);
+			document.getDocumentCatalog().setDocumentOutline(outline);
+			document.save(loop);
+		}
+		final PdfReader loopReader = new PdfReader();
+		loopReader.readLabelRanges(loop.toPath());
+		assertTrue(loopReader.succeeded());
+		assertFalse(loopReader.outlineReadSucceeded());
+		assertEquals("This outline contains a loop.", loopReader.getOutlineErrorMessage());
+
+		final File deep = folder.newFile("deep.pdf");
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage());
+			final PDDocumentOutline outline = new PDDocumentOutline();
+			PDOutlineNode parent = outline;
+			for (int i = 0; i < 10; ++i) {
+				final PDOutlineItem item = newItem(document, "Level " + i, 0);
+				parent.addLast(item);
+				parent = item;
+			}
+			document.getDocumentCatalog().setDocumentOutline(outline);
+			document.save(deep);
+		}
+		final PdfReader deepReader = new PdfReader();
+		deepReader.readLabelRanges(deep.toPath());
+		assertTrue(deepReader.outlineReadSucceeded());
+		deepReader.setMaxOutlineDepth(9);
+		deepReader.readLabelRanges(deep.toPath());
+		assertFalse(deepReader.outlineReadSucceeded());
+		assertEquals("This outline is deeper than 9 levels.", deepReader.getOutlineErrorMessage());
+		deepReader.setMaxOutlineDepth(10);
+		deepReader.setMaxOutlineNodes(9);
+		deepReader.readLabelRanges(deep.toPath());
+		assertFalse(deepReader.outlineReadSucceeded());
+		assertEquals("This outline has more than 9 items.", deepReader.getOutlineErrorMessage());
+	}
+
+	@Test
+	public void testMemoryPolicy() throws Exception {
+		final Path input = writeSample();
+
+		final PdfReader heap = new PdfReader();
+		heap.setCatalogOnly(false);
+		heap.setMemoryPolicy(MemoryPolicy.mainMemoryOnly());
+		heap.readLabelRanges(input);
+		assertTrue(heap.succeeded());
+		final MemoryUsage heapUsage = heap.getLastMemoryUsage().get();
+		assertTrue(heapUsage.getHeapBytes() > 0);
+		assertEquals(0, heapUsage.getScratchBytes());
+
+		final PdfReader scratch = new PdfReader();
+		scratch.setCatalogOnly(false);
+		scratch.setMemoryPolicy(MemoryPolicy.scratchFileOnly(folder.newFolder().toPath()));
+		scratch.readLabelRanges(input);
+		assertTrue(scratch.succeeded());
+		final MemoryUsage scratchUsage = scratch.getLastMemoryUsage().get();
+		assertEquals(0, scratchUsage.getHeapBytes());
+		assertEquals(heapUsage.getHeapBytes(), scratchUsage.getScratchBytes());
+	}
+
+	@Test
+	public void testNamedDestinations() throws Exception {
+		final File file = folder.newFile("named.pdf");
+		try (PDDocument document = new PDDocument()) {
+			for (int i = 0; i < 4; ++i) {
+				document.addPage(new PDPage());
+			}
+			final PDDocumentCatalog catalog = document.getDocumentCatalog();
+			final PDDestinationNameTreeNode tree = new PDDestinationNameTreeNode();
+			tree.setNames(ImmutableMap.of("sec", newDestination(document, 2)));
+			final PDDocumentNameDictionary names = new PDDocumentNameDictionary(catalog);
+			names.setDests(tree);
+			catalog.setNames(names);
+			/** After the name tree, as PDFBox then removes the catalog’s dests. */
+			final COSDictionary dests = new COSDictionary();
+			dests.setItem(COSName.getPDFName("chap"), newDestination(document, 1));
+			catalog.getCOSObject().setItem(COSName.DESTS, dests);
+
+			final PDDocumentOutline outline = new PDDocumentOutline();
+			final PDOutlineItem chapter = new PDOutlineItem();
+			chapter.setTitle("Chapter");
+			chapter.setDestination(new PDNamedDestination(COSName.getPDFName("chap")));
+			outline.addLast(chapter);
+			final PDOutlineItem section = new PDOutlineItem();
+			section.setTitle("Section");
+			final PDActionGoTo goToSection = new PDActionGoTo();
+			goToSection.setDestination(new PDNamedDestination("sec"));
+			section.setAction(goToSection);
+			outline.addLast(section);
+			final PDOutlineItem end = new PDOutlineItem();
+			end.setTitle("End");
+			final PDActionGoTo goToEnd = new PDActionGoTo();
+			goToEnd.setDestination(newDestination(document, 3));
+			end.setAction(goToEnd);
+			outline.addLast(end);
+			catalog.setDocumentOutline(outline);
+			document.save(file);
+		}
+
+		final Outline expected = new Outline();
+		expected.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Chapter", 1)));
+		expected.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Section", 2)));
+		expected.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("End", 3)));
+		for (boolean catalogOnly : new boolean[] { true, false }) {
+			final PdfReader reader = new PdfReader();
+			reader.setCatalogOnly(catalogOnly);
+			reader.readLabelRanges(file.toPath());
+			assertTrue(reader.outlineReadSucceeded());
+			assertEquals(expected, reader.getOutline().get());
+		}
+	}
+
+	private Path writeSample() throws IOException {
+		final File file = folder.newFile("sample.pdf");
+		try (PDDocument document = Fixtures.newDocument(10)) {
+			final PDPageLabels labels = new PDPageLabels(document);
+			final PDPageLabelRange roman = new PDPageLabelRange();
+			roman.setStyle(PDPageLabelRange.STYLE_ROMAN_LOWER);
+			labels.setLabelItem(0, roman);
+			final PDPageLabelRange decimal = new PDPageLabelRange();
+			decimal.setStyle(PDPageLabelRange.STYLE_DECIMAL);
+			decimal.setPrefix("P-");
+			labels.setLabelItem(3, decimal);
+			document.getDocumentCatalog().setPageLabels(labels);
+
+			final PDDocumentOutline outline = new PDDocumentOutline();
+			outline.addLast(newItem(document, "Preface", 1));
+			final PDOutlineItem chapter = newItem(document, "Chapter", 3);
+			chapter.addLast(newItem(document, "Section", 5));
+			outline.addLast(chapter);
+			document.getDocumentCatalog().setDocumentOutline(outline);
+			document.save(file);
+		}
+		return file.toPath();
+	}
+
+	private static PDPageDestination newDestination(PDDocument document, int pageIndex) {
+		final PDPageFitDestination destination = new PDPageFitDestination();
+		destination.setPage(document.getPage(pageIndex));
+		return destination;
+	}
+
+	private static PDOutlineItem newItem(PDDocument document, String title, int pageIndex) {
+		final PDOutlineItem item = new PDOutlineItem();
+		item.setTitle(title);
+		item.setDestination(document.getPage(pageIndex));
+		return item;
+	}
+}
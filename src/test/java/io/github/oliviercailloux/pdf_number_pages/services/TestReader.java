@@ -0,0 +1,127 @@
+package io.github.oliviercailloux.pdf_number_pages.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+
+public class TestReader {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReadCancelled() throws Exception {
+		final Path first = Fixtures.write(folder.newFile("first.pdf").toPath(), 3, PDPageLabelRange.STYLE_ROMAN_LOWER);
+		final Path second = Fixtures.write(folder.newFile("second.pdf").toPath(), 3,
+				PDPageLabelRange.STYLE_LETTERS_UPPER);
+
+		final Reader reader = new Reader();
+		final LabelRangesByIndex labelRangesByIndex = new LabelRangesByIndex();
+		reader.setLabelRangesByIndex(labelRangesByIndex);
+		reader.setOutline(new Outline());
+		/** The test thread plays the UI thread. */
+		final BlockingQueue<Runnable> uiQueue = new LinkedBlockingQueue<>();
+		reader.setReadEventsFiringExecutor(uiQueue::add);
+		final List<Object> received = Lists.newArrayList();
+		reader.register(new Object() {
+			@Subscribe
+			public void readEvent(ReadEvent event) {
+				received.add(event);
+			}
+
+			@Subscribe
+			public void readProgress(ReadProgressEvent event) {
+				received.add(event);
+			}
+		});
+		reader.setInputPath(first);
+		/** The first job has started once it has posted some progress. */
+		final Runnable firstProgress = uiQueue.poll(10, TimeUnit.SECONDS);
+		assertNotNull(firstProgress);
+		reader.setInputPath(second);
+		firstProgress.run();
+		/**
+		 * The jobs run one after the other, so the first one has posted everything
+		 * before the second one finishes.
+		 */
+		while (!reader.getLastReadEvent().isPresent()) {
+			final Runnable next = uiQueue.poll(10, TimeUnit.SECONDS);
+			assertNotNull(next);
+			next.run();
+		}
+		for (Runnable remaining = uiQueue.poll(); remaining != null; remaining = uiQueue.poll()) {
+			remaining.run();
+		}
+		reader.close();
+
+		assertEquals(4, received.size());
+		for (Object event : received.subList(0, 3)) {
+			assertEquals(second, ((ReadProgressEvent) event).getInputPath());
+		}
+		assertEquals(reader.getLastReadEvent().get(), received.get(3));
+		assertTrue(reader.getLastReadEvent().get().succeeded());
+		assertFalse(reader.isReading());
+		assertEquals(1, labelRangesByIndex.size());
+		assertEquals(PDPageLabelRange.STYLE_LETTERS_UPPER, labelRangesByIndex.get(0).getStyle());
+	}
+
+	@Test
+	public void testReadInBackground() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("sample.pdf").toPath(), 3, PDPageLabelRange.STYLE_ROMAN_LOWER);
+
+		final Reader reader = new Reader();
+		final LabelRangesByIndex labelRangesByIndex = new LabelRangesByIndex();
+		reader.setLabelRangesByIndex(labelRangesByIndex);
+		reader.setOutline(new Outline());
+		final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+		reader.register(new Object() {
+			@Subscribe
+			public void readEvent(ReadEvent event) {
+				events.add(event);
+			}
+
+			@Subscribe
+			public void readProgress(ReadProgressEvent event) {
+				events.add(event.getStage());
+			}
+		});
+		reader.setInputPath(input);
+		final List<Object> received = Lists.newArrayList();
+		Object event;
+		do {
+			event = events.poll(10, TimeUnit.SECONDS);
+			received.add(event);
+		} while (event != null && !(event instanceof ReadEvent));
+		reader.close();
+
+		assertEquals(
+				Lists.newArrayList(ReadStage.LOADING, ReadStage.READING_LABELS, ReadStage.READING_OUTLINE, event),
+				received);
+		final ReadEvent readEvent = (ReadEvent) event;
+		assertTrue(readEvent.succeeded());
+		assertTrue(readEvent.getMemoryUsage().isPresent());
+		assertFalse(reader.isReading());
+		assertEquals(1, labelRangesByIndex.size());
+		assertEquals(PDPageLabelRange.STYLE_ROMAN_LOWER, labelRangesByIndex.get(0).getStyle());
+		assertEquals(readEvent.getLabelRangesByIndex(), labelRangesByIndex);
+	}
+}
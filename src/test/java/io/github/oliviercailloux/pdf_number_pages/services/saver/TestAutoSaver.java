@@ -0,0 +1,144 @@
+package io.github.oliviercailloux.pdf_number_pages.services.saver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.eventbus.Subscribe;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfPart;
+import io.github.oliviercailloux.pdf_number_pages.services.ReadEvent;
+import io.github.oliviercailloux.pdf_number_pages.services.Reader;
+
+public class TestAutoSaver {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Stands for the UI thread.
+	 */
+	private final ExecutorService ui = Executors.newSingleThreadExecutor();
+
+	@After
+	public void shutdown() {
+		ui.shutdownNow();
+	}
+
+	@Test
+	public void testCoalesces() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 3);
+		final Path output = folder.getRoot().toPath().resolve("out.pdf");
+
+		final PdfPart pdf = new PdfPart();
+		final Outline outline = new Outline();
+		pdf.setOutline(outline);
+		final LabelRangesByIndex labels = pdf.getLabelRangesByIndex();
+		final Reader reader = new Reader();
+		reader.setLabelRangesByIndex(labels);
+		reader.setOutline(outline);
+		reader.setReadEventsFiringExecutor(ui);
+		final Saver saver = new Saver();
+		saver.setPdf(pdf);
+		saver.setReader(reader);
+		saver.setOutputPath(output);
+		saver.setOverwrite(true);
+		saver.setSavedEventsFiringExecutor(ui);
+		final AutoSaver autoSaver = new AutoSaver();
+		autoSaver.setPdf(pdf);
+		autoSaver.setReader(reader);
+		autoSaver.setSaver(saver);
+		autoSaver.setAutoSavesExecutor(ui);
+		autoSaver.setQuietPeriod(Duration.ofMillis(200));
+		autoSaver.setMaxStaleness(Duration.ofSeconds(60));
+
+		final CountDownLatch read = new CountDownLatch(1);
+		reader.register(new Object() {
+			@Subscribe
+			public void readEvent(@SuppressWarnings("unused") ReadEvent event) {
+				read.countDown();
+			}
+		});
+		reader.setInputPath(input);
+		assertTrue(read.await(10, TimeUnit.SECONDS));
+		assertFalse(labels.isEmpty());
+
+		/** Enabling auto save saves at once. */
+		onUi(() -> autoSaver.setAutoSave(true));
+		waitFor(() -> autoSaver.getWrittenCount() == 1);
+		assertEquals(1, autoSaver.getRequestedCount());
+		assertEquals(0, autoSaver.getCoalescedCount());
+
+		/** A burst of changes gives a single save. */
+		onUi(() -> {
+			for (int i = 1; i <= 10; ++i) {
+				labels.putNew(i, Fixtures.newRange(PDPageLabelRange.STYLE_DECIMAL));
+			}
+		});
+		waitFor(() -> autoSaver.getWrittenCount() == 2);
+		assertEquals(11, autoSaver.getRequestedCount());
+		assertEquals(9, autoSaver.getCoalescedCount());
+		assertFalse(autoSaver.isPending());
+
+		/**
+		 * Changes that keep coming are saved after the maximum staleness. The quiet
+		 * period never elapses, and a change comes at each check, so the saves happen
+		 * while the changes keep coming.
+		 */
+		onUi(() -> {
+			autoSaver.setQuietPeriod(Duration.ofSeconds(60));
+			autoSaver.setMaxStaleness(Duration.ofMillis(300));
+		});
+		final int[] nextIndex = { 11 };
+		waitFor(() -> {
+			labels.putNew(nextIndex[0]++, Fixtures.newRange(PDPageLabelRange.STYLE_DECIMAL));
+			return autoSaver.getWrittenCount() >= 4;
+		});
+
+		/** An explicit save absorbs the pending auto save. */
+		waitFor(() -> !autoSaver.isPending() && !saver.isRunning());
+		final long coalesced = autoSaver.getCoalescedCount();
+		onUi(() -> {
+			labels.putNew(nextIndex[0], Fixtures.newRange(PDPageLabelRange.STYLE_DECIMAL));
+			assertTrue(autoSaver.isPending());
+			saver.save();
+			assertFalse(autoSaver.isPending());
+		});
+		assertEquals(coalesced + 1, autoSaver.getCoalescedCount());
+
+		onUi(() -> autoSaver.close());
+		waitFor(() -> !saver.isRunning());
+		saver.close();
+		reader.close();
+	}
+
+	private void onUi(Runnable runnable) throws Exception {
+		ui.submit(runnable).get();
+	}
+
+	private void waitFor(BooleanSupplier condition) throws Exception {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (!ui.submit(() -> condition.getAsBoolean()).get()) {
+			assertTrue(System.nanoTime() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+}
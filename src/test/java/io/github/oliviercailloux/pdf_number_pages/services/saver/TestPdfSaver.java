@@ -0,0 +1,106 @@
+package io.github.oliviercailloux.pdf_number_pages.services.saver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.ImmutableSet;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.services.DocumentCache;
+import io.github.oliviercailloux.pdf_number_pages.services.PdfReader;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+public class TestPdfSaver {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testCancelled() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 20);
+		final Path output = folder.getRoot().toPath().resolve("out.pdf");
+		final byte[] previous = new byte[] { 1, 2, 3 };
+		Files.write(output, previous);
+		final PdfSaver saver = new PdfSaver();
+		Thread.currentThread().interrupt();
+		try {
+			saver.save(new SaveJob(Fixtures.newRanges(), Optional.empty(), Optional.empty(), input, output, true));
+		} finally {
+			Thread.interrupted();
+		}
+		assertFalse(saver.succeeded());
+		assertEquals("Interrupted.", saver.getErrorMessage());
+		/** The previous output is intact and no temporary file remains. */
+		assertArrayEquals(previous, Files.readAllBytes(output));
+		try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+			assertEquals(ImmutableSet.of(input, output), files.collect(ImmutableSet.toImmutableSet()));
+		}
+
+		saver.save(new SaveJob(Fixtures.newRanges(), Optional.empty(), Optional.empty(), input, output, true));
+		assertTrue(saver.getErrorMessage(), saver.succeeded());
+		try (PDDocument document = PDDocument.load(output.toFile())) {
+			assertEquals(20, document.getNumberOfPages());
+		}
+	}
+
+	@Test
+	public void testIncremental() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 20);
+		final byte[] original = Files.readAllBytes(input);
+
+		final LabelRangesByIndex ranges = Fixtures.newRanges();
+		final Outline outline = new Outline();
+		outline.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Chapter", 4)));
+		final BBox box = new BBox(new BBPoint(10, 10), new BBPoint(100, 100));
+
+		final PdfSaver saver = new PdfSaver();
+		saver.setIncremental(true);
+		saver.setDocumentCache(new DocumentCache());
+		final Path output = folder.getRoot().toPath().resolve("out.pdf");
+		saver.save(new SaveJob(ranges, Optional.of(outline), Optional.of(box), input, output, false));
+		assertTrue(saver.getErrorMessage(), saver.succeeded());
+		final byte[] saved = Files.readAllBytes(output);
+		assertArrayEquals(original, Arrays.copyOf(saved, original.length));
+		assertRead(output, ranges, outline);
+		try (PDDocument document = PDDocument.load(output.toFile())) {
+			assertEquals(90f, document.getPage(19).getCropBox().getWidth(), 0f);
+		}
+
+		/** In place: only the update is appended to the input. */
+		saver.save(new SaveJob(ranges, Optional.of(outline), Optional.empty(), input, input, true));
+		assertTrue(saver.getErrorMessage(), saver.succeeded());
+		final byte[] appended = Files.readAllBytes(input);
+		assertArrayEquals(original, Arrays.copyOf(appended, original.length));
+		assertTrue(appended.length - original.length < saved.length - original.length);
+		assertRead(input, ranges, outline);
+	}
+
+	private static void assertRead(Path path, LabelRangesByIndex ranges, Outline outline) {
+		for (boolean catalogOnly : new boolean[] { true, false }) {
+			final PdfReader reader = new PdfReader();
+			reader.setCatalogOnly(catalogOnly);
+			assertEquals(ranges, reader.readLabelRanges(path));
+			assertTrue(reader.outlineReadSucceeded());
+			assertEquals(outline, reader.getOutline().get());
+		}
+	}
+
+}
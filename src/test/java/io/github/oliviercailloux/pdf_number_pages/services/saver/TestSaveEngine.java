@@ -0,0 +1,97 @@
+package io.github.oliviercailloux.pdf_number_pages.services.saver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.common.collect.Lists;
+import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import io.github.oliviercailloux.pdf_number_pages.Fixtures;
+
+public class TestSaveEngine {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testAdmission() throws Exception {
+		final Path input = Fixtures.write(folder.newFile("in.pdf").toPath(), 5);
+		final SaveEngine engine = new SaveEngine(4, 0);
+		final List<ListenableFuture<SaverFinishedEvent>> results = Lists.newArrayList();
+		for (int i = 0; i < 4; ++i) {
+			final Path output = folder.getRoot().toPath().resolve("out" + i + ".pdf");
+			results.add(engine.submit(new SaveJob(Fixtures.newRanges(PDPageLabelRange.STYLE_DECIMAL), Optional.empty(),
+					Optional.empty(), input, output, false)));
+			/** No job fits in the budget: they run one at a time. */
+			assertTrue(engine.getRunningCount() <= 1);
+		}
+		for (ListenableFuture<SaverFinishedEvent> result : results) {
+			assertEquals("", result.get(10, TimeUnit.SECONDS).getErrorMessage());
+		}
+		assertEquals(0, engine.getPendingCount());
+		assertEquals(0, engine.getReservedBytes());
+		engine.close();
+	}
+
+	@Test
+	public void testParallelLatestWins() throws Exception {
+		final SaveEngine engine = new SaveEngine(3, Long.MAX_VALUE);
+		final BlockingQueue<SaverFinishedEvent> events = new LinkedBlockingQueue<>();
+		engine.register(new Object() {
+			@Subscribe
+			public void saverFinished(SaverFinishedEvent event) {
+				events.add(event);
+			}
+		});
+		final String[] styles = new String[] { PDPageLabelRange.STYLE_DECIMAL, PDPageLabelRange.STYLE_LETTERS_LOWER,
+				PDPageLabelRange.STYLE_LETTERS_UPPER, PDPageLabelRange.STYLE_ROMAN_LOWER,
+				PDPageLabelRange.STYLE_ROMAN_UPPER };
+		final List<Path> outputs = Lists.newArrayList();
+		final List<ListenableFuture<SaverFinishedEvent>> lasts = Lists.newArrayList();
+		for (int doc = 0; doc < 4; ++doc) {
+			final Path input = Fixtures.write(folder.newFile("in" + doc + ".pdf").toPath(), 5);
+			final Path output = folder.getRoot().toPath().resolve("out" + doc + ".pdf");
+			outputs.add(output);
+			ListenableFuture<SaverFinishedEvent> last = null;
+			for (String style : styles) {
+				last = engine.submit(new SaveJob(Fixtures.newRanges(style), Optional.empty(), Optional.empty(), input,
+						output, true));
+			}
+			lasts.add(last);
+		}
+		for (ListenableFuture<SaverFinishedEvent> last : lasts) {
+			assertEquals("", last.get(10, TimeUnit.SECONDS).getErrorMessage());
+		}
+		assertEquals(0, engine.getPendingCount());
+		engine.close();
+
+		/** Each path got the latest job, and every job either finished or was superseded. */
+		for (Path output : outputs) {
+			try (PDDocument document = PDDocument.load(output.toFile())) {
+				assertEquals(PDPageLabelRange.STYLE_ROMAN_UPPER,
+						document.getDocumentCatalog().getPageLabels().getPageLabelRange(0).getStyle());
+			}
+		}
+		assertEquals(4 * styles.length, events.size() + engine.getSupersededCount());
+		try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+			assertEquals(8, files.count());
+		}
+	}
+
+}
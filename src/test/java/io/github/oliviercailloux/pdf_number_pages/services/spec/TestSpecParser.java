@@ -0,0 +1,198 @@
+package io.github.oliviercailloux.pdf_number_pages.services.spec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Optional;
+
+import org.apache.pdfbox.pdmodel.common.PDPageLabelRange;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.oliviercailloux.pdf_number_pages.model.LabelRangesByIndex;
+import io.github.oliviercailloux.pdf_number_pages.model.Outline;
+import io.github.oliviercailloux.pdf_number_pages.model.OutlineNode;
+import io.github.oliviercailloux.pdf_number_pages.model.PDPageLabelRangeWithEquals;
+import io.github.oliviercailloux.pdf_number_pages.model.PdfBookmark;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBPoint;
+import io.github.oliviercailloux.pdf_number_pages.utils.BBox;
+
+public class TestSpecParser {
+	@SuppressWarnings("unused")
+	private static final Logger LOGGER = LoggerFactory.getLogger(TestSpecParser.class);
+
+	@Test
+	public void testInvalid() throws Exception {
+		assertInvalid("labels\n0 DECIMAL 1\n", 1);
+		assertInvalid(DocumentSpec.HEADER + "\nlabels\n0 DECIMAL 1\n2 DECIMAL 1\n1 DECIMAL 1\n", 5);
+		assertInvalid(DocumentSpec.HEADER + "\nlabels\n0 ARABIC 1\n", 3);
+		assertInvalid(DocumentSpec.HEADER + "\nlabels\n0 DECIMAL 0\n", 3);
+		assertInvalid(DocumentSpec.HEADER + "\n# Comment\nlabels\n2 DECIMAL 1\n4 DECIMAL 1\n", 4);
+		assertInvalid(DocumentSpec.HEADER + "\noutline\n0 A\n\t\t1 B\n", 4);
+		assertInvalid(DocumentSpec.HEADER + "\noutline\n0 A\nlabels\n0 DECIMAL 1\n", 4);
+		assertInvalid(DocumentSpec.HEADER + "\noutline\n0 Bad \\escape\n", 3);
+		assertInvalid(DocumentSpec.HEADER + "\ncrop 0 0 -1 10\n", 2);
+
+		final SpecParser parser = new SpecParser();
+		parser.setPageCount(10);
+		try {
+			parser.parse(new StringReader(DocumentSpec.HEADER + "\n# Comment\n\noutline\n9 Last\n10 Beyond\n"));
+			fail();
+		} catch (SpecFormatException e) {
+			assertEquals(6, e.getLineNumber());
+		}
+		parser.setMaxOutlineDepth(2);
+		try {
+			parser.parse(new StringReader(DocumentSpec.HEADER + "\noutline\n0 A\n\t0 B\n\t\t0 C\n"));
+			fail();
+		} catch (SpecFormatException e) {
+			assertEquals(5, e.getLineNumber());
+		}
+	}
+
+	@Test
+	public void testPageLabels() throws Exception {
+		final SpecParser parser = new SpecParser();
+		final DocumentSpec spec = parser.parse(new StringReader(DocumentSpec.HEADER
+				+ "\nlabels\n0 ROMAN_LOWER 1\n4 DECIMAL 1 Chapter\\s\noutline\n=iii Preface\n=Chapter\\s9 Conclusion\n"));
+		final Outline outline = spec.getOutline().get();
+		assertEquals(2, outline.getChildren().get(0).getBookmark().get().getPhysicalPageNumber());
+		assertEquals(12, outline.getChildren().get(1).getBookmark().get().getPhysicalPageNumber());
+		assertInvalid(DocumentSpec.HEADER + "\noutline\n=iii Preface\n", 3);
+		assertInvalid(DocumentSpec.HEADER + "\nlabels\n0 DECIMAL 1\noutline\n=iii Preface\n", 5);
+
+		final LabelRangesByIndex documentLabels = new LabelRangesByIndex();
+		documentLabels.putNew(0, newRange(PDPageLabelRange.STYLE_ROMAN_LOWER, 1, null));
+		parser.setDocumentLabels(documentLabels);
+		assertEquals(2, parser.parse(new StringReader(DocumentSpec.HEADER + "\noutline\n=iii Preface\n")).getOutline()
+				.get().getChildren().get(0).getBookmark().get().getPhysicalPageNumber());
+	}
+
+	@Test
+	public void testLargeOutline() throws Exception {
+		final int nbNodes = 100_000;
+		final StringBuilder text = new StringBuilder(DocumentSpec.HEADER).append("\noutline\n");
+		/** Chapters of ten sections, each one followed by its sub-sections. */
+		for (int i = 0; i < nbNodes; ++i) {
+			final int depth = i % 100 == 0 ? 0 : (i % 10 == 1 ? 1 : 2);
+			for (int d = 0; d < depth; ++d) {
+				text.append('\t');
+			}
+			text.append(i).append(" Item ").append(i).append('\n');
+		}
+		final SpecParser parser = new SpecParser();
+		/** The number of items at each depth, then the number of ends. */
+		final int[] counts = new int[4];
+		final long startValidating = System.nanoTime();
+		parser.parse(new StringReader(text.toString()), new SpecHandler() {
+			@Override
+			public void cropBox(BBox cropBox) {
+				fail();
+			}
+
+			@Override
+			public void end() {
+				++counts[3];
+			}
+
+			@Override
+			public void labelRange(int pageIndex, PDPageLabelRangeWithEquals range) {
+				fail();
+			}
+
+			@Override
+			public void outlineItem(int depth, PdfBookmark bookmark) {
+				++counts[depth];
+			}
+
+			@Override
+			public void startLabels() {
+				fail();
+			}
+
+			@Override
+			public void startOutline() {
+				/** Nothing to do. */
+			}
+		});
+		LOGGER.info("Validated {} outline items in {} ms.", nbNodes, (System.nanoTime() - startValidating) / 1_000_000);
+		assertEquals(nbNodes / 100, counts[0]);
+		assertEquals(nbNodes / 10, counts[1]);
+		assertEquals(1, counts[3]);
+		final long start = System.nanoTime();
+		final DocumentSpec spec = parser.parse(new StringReader(text.toString()));
+		LOGGER.info("Parsed {} outline items in {} ms.", nbNodes, (System.nanoTime() - start) / 1_000_000);
+		final Outline outline = spec.getOutline().get();
+		assertEquals(nbNodes / 100, outline.getChildren().size());
+		final OutlineNode lastChapter = outline.getChildren().get(nbNodes / 100 - 1);
+		assertEquals(new PdfBookmark("Item " + (nbNodes - 100), nbNodes - 100), lastChapter.getBookmark().get());
+		assertEquals(10, lastChapter.getChildren().size());
+		assertEquals(8, lastChapter.getChildren().get(9).getChildren().size());
+		assertEquals(nbNodes - 1, lastChapter.getChildren().get(9).getChildren().get(7).getBookmark().get()
+				.getPhysicalPageNumber());
+
+		parser.setMaxOutlineNodes(nbNodes - 1);
+		try {
+			parser.parse(new StringReader(text.toString()));
+			fail();
+		} catch (SpecFormatException e) {
+			assertEquals(nbNodes + 2, e.getLineNumber());
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final LabelRangesByIndex labels = new LabelRangesByIndex();
+		labels.put(0, newRange(PDPageLabelRange.STYLE_ROMAN_LOWER, 1, null));
+		labels.put(4, newRange(PDPageLabelRange.STYLE_DECIMAL, 3, " Chap\\ter\t"));
+		labels.put(20, newRange(null, 1, "Index"));
+		final Outline outline = new Outline();
+		final OutlineNode intro = OutlineNode.newOutline(new PdfBookmark("Introduction", 4));
+		intro.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Two\nlines", 5)));
+		intro.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("", 6)));
+		outline.addAsLastChild(intro);
+		outline.addAsLastChild(OutlineNode.newOutline(new PdfBookmark("Conclusion ", 19)));
+		final DocumentSpec spec = new DocumentSpec(Optional.of(labels), Optional.of(outline),
+				Optional.of(new BBox(new BBPoint(0f, 1.5f), new BBPoint(200f, 300f))));
+
+		final StringWriter text = new StringWriter();
+		new SpecWriter().write(spec, text);
+		LOGGER.debug("Written: {}.", text);
+		final DocumentSpec read = new SpecParser().parse(new StringReader(text.toString()));
+		assertEquals(labels, read.getLabelRangesByIndex().get());
+		assertEquals(outline, read.getOutline().get());
+		final BBox cropBox = read.getCropBox().get();
+		assertEquals(1.5f, cropBox.getMin().getY(), 0f);
+		assertEquals(300f, cropBox.getMax().getY(), 0f);
+
+		final DocumentSpec onlyOutline = new SpecParser()
+				.parse(new StringReader(DocumentSpec.HEADER + "\r\noutline\r\n"));
+		assertFalse(onlyOutline.getLabelRangesByIndex().isPresent());
+		assertFalse(onlyOutline.getCropBox().isPresent());
+		assertTrue(onlyOutline.getOutline().get().getChildren().isEmpty());
+	}
+
+	private void assertInvalid(String text, int lineNumber) throws Exception {
+		try {
+			new SpecParser().parse(new StringReader(text));
+			fail();
+		} catch (SpecFormatException e) {
+			LOGGER.debug("Invalid as expected.", e);
+			assertEquals(lineNumber, e.getLineNumber());
+		}
+	}
+
+	private PDPageLabelRangeWithEquals newRange(String style, int start, String prefix) {
+		final PDPageLabelRangeWithEquals range = new PDPageLabelRangeWithEquals();
+		range.setStyle(style);
+		range.setStart(start);
+		range.setPrefix(prefix);
+		return range;
+	}
+
+}